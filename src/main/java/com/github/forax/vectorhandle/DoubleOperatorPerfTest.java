@@ -0,0 +1,143 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the operators on arrays of doubles, the unary operators use only the array {@code a}.
+ * Each fork runs only one operator, so the call sites of the lambdas stay monomorphic,
+ * the benchmarks can not run without fork because a vector handle caches at most 8 lambdas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class DoubleOperatorPerfTest {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorHandle VH = VectorHandle.of(lookup());
+
+  @Param({"7", "100", "1003", "100000", "10000000"})
+  private int size;
+
+  @Param({"neg", "div_constant", "conditional", "add", "sub", "mul", "div", "min", "max"})
+  private String operator;
+
+  private double[] dest;
+  private double[] a;
+  private double[] b;
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    a = random.doubles(size, 1, 100).toArray();
+    b = random.doubles(size, 1, 100).toArray();
+    dest = new double[size];
+  }
+
+  @Benchmark
+  public double[] vector_handle() {
+    switch (operator) {
+      case "neg" -> VH.apply(dest, a, x -> -x);
+      case "div_constant" -> VH.apply(dest, a, x -> x / 3.0);
+      case "conditional" -> VH.apply(dest, a, x -> x < 50.0? -x: x);
+      case "add" -> VH.apply(dest, a, b, (x, y) -> x + y);
+      case "sub" -> VH.apply(dest, a, b, (x, y) -> x - y);
+      case "mul" -> VH.apply(dest, a, b, (x, y) -> x * y);
+      case "div" -> VH.apply(dest, a, b, (x, y) -> x / y);
+      case "min" -> VH.apply(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> VH.apply(dest, a, b, (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public double[] handwritten() {
+    switch (operator) {
+      case "neg" -> handwritten(dest, a, v -> v.neg(), x -> -x);
+      case "div_constant" -> handwritten(dest, a, v -> v.div(3.0), x -> x / 3.0);
+      case "conditional" -> handwritten(dest, a, v -> v.blend(v.neg(), v.compare(VectorOperators.LT, 50.0)), x -> x < 50.0? -x: x);
+      case "add" -> handwritten(dest, a, b, (v, w) -> v.add(w), (x, y) -> x + y);
+      case "sub" -> handwritten(dest, a, b, (v, w) -> v.sub(w), (x, y) -> x - y);
+      case "mul" -> handwritten(dest, a, b, (v, w) -> v.mul(w), (x, y) -> x * y);
+      case "div" -> handwritten(dest, a, b, (v, w) -> v.div(w), (x, y) -> x / y);
+      case "min" -> handwritten(dest, a, b, (v, w) -> v.min(w), (x, y) -> Math.min(x, y));
+      case "max" -> handwritten(dest, a, b, (v, w) -> v.max(w), (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public double[] no_vector() {
+    switch (operator) {
+      case "neg" -> noVector(dest, a, x -> -x);
+      case "div_constant" -> noVector(dest, a, x -> x / 3.0);
+      case "conditional" -> noVector(dest, a, x -> x < 50.0? -x: x);
+      case "add" -> noVector(dest, a, b, (x, y) -> x + y);
+      case "sub" -> noVector(dest, a, b, (x, y) -> x - y);
+      case "mul" -> noVector(dest, a, b, (x, y) -> x * y);
+      case "div" -> noVector(dest, a, b, (x, y) -> x / y);
+      case "min" -> noVector(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> noVector(dest, a, b, (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  private static void handwritten(double[] dest, double[] a, UnaryOperator<DoubleVector> vectorOp, VectorHandle.DDOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = DoubleVector.fromArray(SPECIES, a, i);
+      vectorOp.apply(va).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void handwritten(double[] dest, double[] a, double[] b, BinaryOperator<DoubleVector> vectorOp, VectorHandle.DDDOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = DoubleVector.fromArray(SPECIES, a, i);
+      var vb = DoubleVector.fromArray(SPECIES, b, i);
+      vectorOp.apply(va, vb).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static void noVector(double[] dest, double[] a, VectorHandle.DDOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void noVector(double[] dest, double[] a, double[] b, VectorHandle.DDDOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+}
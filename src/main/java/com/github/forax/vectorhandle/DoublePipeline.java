@@ -0,0 +1,257 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.github.forax.vectorhandle.Impl.DOUBLE_SPECIES;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A lazy sequence of operators on doubles, the operators are recorded by {@link #map(VectorHandle.DDOp)}
+ * and fused into one operation on vectors when a terminal operation
+ * ({@link #into(double[], double[])}, {@link #sum(double[])}, {@link #min(double[])} or {@link #max(double[])})
+ * is called, so the whole pipeline is done in one pass on the arrays without any intermediary array.
+ * The terminal operations {@link #into(WritableByteChannel, ReadableByteChannel)}, {@link #sum(ReadableByteChannel)},
+ * {@link #min(ReadableByteChannel)} and {@link #max(ReadableByteChannel)} read the doubles from a channel
+ * chunk by chunk instead of from an array.
+ *
+ * <p>Example
+ * <pre>
+ *   private static final VectorHandle VH = VectorHandle.of(lookup());
+ *   ...
+ *   var pipeline = VH.doublePipeline()
+ *       .map(x -> x * 2)
+ *       .map(x -> Math.min(x, 100));
+ *   pipeline.into(dest, a);
+ * </pre>
+ *
+ * A pipeline is immutable, {@code map} returns a new pipeline.
+ * The same restrictions as {@link VectorHandle#apply(double[], double[], VectorHandle.DDOp)}
+ * apply to the lambdas.
+ *
+ * @see VectorHandle#doublePipeline()
+ */
+public final class DoublePipeline {
+  private final VectorHandle vectorHandle;
+  private final VectorHandle.DDOp[] operators;
+  private final Impl.Fused fused;
+
+  DoublePipeline(VectorHandle vectorHandle, VectorHandle.DDOp... operators) {
+    this.vectorHandle = vectorHandle;
+    this.operators = operators;
+    this.fused = operators.length == 0? null: new Impl.Fused((Object[]) operators);
+  }
+
+  /**
+   * Returns a new pipeline that applies the {@code operator} after the operators of this pipeline.
+   * @param operator a lambda that specify the operator.
+   * @return a new pipeline.
+   */
+  public DoublePipeline map(VectorHandle.DDOp operator) {
+    requireNonNull(operator);
+    var operators = Arrays.copyOf(this.operators, this.operators.length + 1);
+    operators[this.operators.length] = operator;
+    return new DoublePipeline(vectorHandle, operators);
+  }
+
+  private DoubleVector applyAsVector(DoubleVector va) {
+    if (fused == null) {
+      return va;
+    }
+    return (DoubleVector) vectorHandle.invoke(fused, va, null, null, null);
+  }
+
+  private double applyAsScalar(double a) {
+    for(var operator: operators) {
+      a = operator.apply(a);
+    }
+    return a;
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(double[] dest, double[] a) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var vb = applyAsVector(va);
+      vb.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = applyAsScalar(a[i]);
+    }
+  }
+
+  /**
+   * Reads the doubles of the channel {@code in} in little endian, apply the operators on each value
+   * and writes each result in little endian in the channel {@code out}.
+   * The values are read by chunks into a direct buffer reused by the calls of the same thread and the results are computed
+   * in place before being written, so the memory used does not depend on the length of the stream.
+   * An {@link java.io.InputStream} or an {@link java.io.OutputStream} can be seen as a channel using
+   * {@link java.nio.channels.Channels}.
+   * @param out the channel the results are written to.
+   * @param in the channel the values are read from.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Double#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(WritableByteChannel out, ReadableByteChannel in) throws IOException {
+    requireNonNull(out);
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Double.BYTES;
+        int i = 0;
+        int bound = DOUBLE_SPECIES.loopBound(limit / Double.BYTES) * Double.BYTES;
+        Impl.recordCall(limit / Double.BYTES, (limit - bound) / Double.BYTES);
+        for (; i < bound; i += DOUBLE_SPECIES.vectorByteSize()) {
+          var va = DoubleVector.fromByteBuffer(DOUBLE_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          var vb = applyAsVector(va);
+          vb.intoByteBuffer(buffer, i, ByteOrder.LITTLE_ENDIAN);
+        }
+        for (; i < limit; i += Double.BYTES) {
+          buffer.putDouble(i, applyAsScalar(buffer.getDouble(i)));
+        }
+        Impl.flushChunk(buffer, limit, out);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  private double reduce(double[] a, VectorOperators.Associative operator, double identity, VectorHandle.DDDOp combiner) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var acc = DoubleVector.broadcast(DOUBLE_SPECIES, identity);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      acc = acc.lanewise(operator, applyAsVector(va));
+    }
+    var result = acc.reduceLanes(operator);
+    for (; i < a.length; i++) {
+      var value = applyAsScalar(a[i]);
+      result = combiner.apply(result, value);
+    }
+    return result;
+  }
+
+  private double reduce(ReadableByteChannel in, VectorOperators.Associative operator, double identity, VectorHandle.DDDOp combiner) throws IOException {
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      var acc = DoubleVector.broadcast(DOUBLE_SPECIES, identity);
+      var result = identity;
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Double.BYTES;
+        int i = 0;
+        int bound = DOUBLE_SPECIES.loopBound(limit / Double.BYTES) * Double.BYTES;
+        Impl.recordCall(limit / Double.BYTES, (limit - bound) / Double.BYTES);
+        for (; i < bound; i += DOUBLE_SPECIES.vectorByteSize()) {
+          var va = DoubleVector.fromByteBuffer(DOUBLE_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          acc = acc.lanewise(operator, applyAsVector(va));
+        }
+        for (; i < limit; i += Double.BYTES) {
+          var value = applyAsScalar(buffer.getDouble(i));
+          result = combiner.apply(result, value);
+        }
+        Impl.flushChunk(buffer, limit, null);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+      return combiner.apply(acc.reduceLanes(operator), result);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the sum of the results.
+   * The values are not added in the same order as a loop would do, so the result may be
+   * slightly different due to the rounding errors.
+   * @param a the array of parameters.
+   * @return the sum of the results.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double sum(double[] a) {
+    return reduce(a, VectorOperators.ADD, 0, Double::sum);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the minimum of the results.
+   * @param a the array of parameters.
+   * @return the minimum of the results or {@link Double#POSITIVE_INFINITY} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double min(double[] a) {
+    return reduce(a, VectorOperators.MIN, Double.POSITIVE_INFINITY, Math::min);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the maximum of the results.
+   * @param a the array of parameters.
+   * @return the maximum of the results or {@link Double#NEGATIVE_INFINITY} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double max(double[] a) {
+    return reduce(a, VectorOperators.MAX, Double.NEGATIVE_INFINITY, Math::max);
+  }
+
+  /**
+   * Reads the doubles of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the sum of the results.
+   * The values are not added in the same order as a loop would do, so the result may be
+   * slightly different due to the rounding errors.
+   * @param in the channel the values are read from.
+   * @return the sum of the results.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Double#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double sum(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.ADD, 0, Double::sum);
+  }
+
+  /**
+   * Reads the doubles of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the minimum of the results.
+   * @param in the channel the values are read from.
+   * @return the minimum of the results or {@link Double#POSITIVE_INFINITY} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Double#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double min(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MIN, Double.POSITIVE_INFINITY, Math::min);
+  }
+
+  /**
+   * Reads the doubles of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the maximum of the results.
+   * @param in the channel the values are read from.
+   * @return the maximum of the results or {@link Double#NEGATIVE_INFINITY} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Double#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double max(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MAX, Double.NEGATIVE_INFINITY, Math::max);
+  }
+}
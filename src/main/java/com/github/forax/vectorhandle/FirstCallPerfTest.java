@@ -0,0 +1,60 @@
+package com.github.forax.vectorhandle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the latency of the first call of a vector handle,
+ * each call uses a new vector handle so the lambda is compiled to a kernel each time.
+ *
+ * The warmup measures the compilation once the JIT has compiled the compiler,
+ * use {@code -wi 0 -i 1 -f 20} to measure the first call of a cold JVM.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(value = 3, jvmArgs = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class FirstCallPerfTest {
+  private final int[] intDest = new int[1_003];
+  private final int[] intA = new int[1_003];
+  private final int[] intB = new int[1_003];
+  private final float[] floatDest = new float[1_003];
+  private final float[] floatA = new float[1_003];
+
+  @Benchmark
+  public int[] int_binary() {
+    var vh = VectorHandle.of(lookup());
+    vh.apply(intDest, intA, intB, (x, y) -> x + y * 2);
+    return intDest;
+  }
+
+  @Benchmark
+  public float[] float_conditional() {
+    var vh = VectorHandle.of(lookup());
+    vh.apply(floatDest, floatA, x -> x < 0f? -x: x * 2f);
+    return floatDest;
+  }
+
+  @Benchmark
+  public int[] int_pipeline() {
+    var vh = VectorHandle.of(lookup());
+    vh.intPipeline()
+        .map(x -> x + 1)
+        .map(x -> x * 3)
+        .into(intDest, intA);
+    return intDest;
+  }
+}
@@ -0,0 +1,147 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.UnaryOperator;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the operators on arrays of floats, the unary operators use only the array {@code a}.
+ * Each fork runs only one operator, so the call sites of the lambdas stay monomorphic,
+ * the benchmarks can not run without fork because a vector handle caches at most 8 lambdas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class FloatOperatorPerfTest {
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+  private static final VectorHandle VH = VectorHandle.of(lookup());
+
+  @Param({"7", "100", "1003", "100000", "10000000"})
+  private int size;
+
+  @Param({"neg", "div_constant", "conditional", "add", "sub", "mul", "div", "min", "max"})
+  private String operator;
+
+  private float[] dest;
+  private float[] a;
+  private float[] b;
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    a = new float[size];
+    b = new float[size];
+    for(var i = 0; i < size; i++) {
+      a[i] = 1 + random.nextFloat() * 99;
+      b[i] = 1 + random.nextFloat() * 99;
+    }
+    dest = new float[size];
+  }
+
+  @Benchmark
+  public float[] vector_handle() {
+    switch (operator) {
+      case "neg" -> VH.apply(dest, a, x -> -x);
+      case "div_constant" -> VH.apply(dest, a, x -> x / 3f);
+      case "conditional" -> VH.apply(dest, a, x -> x < 50f? -x: x);
+      case "add" -> VH.apply(dest, a, b, (x, y) -> x + y);
+      case "sub" -> VH.apply(dest, a, b, (x, y) -> x - y);
+      case "mul" -> VH.apply(dest, a, b, (x, y) -> x * y);
+      case "div" -> VH.apply(dest, a, b, (x, y) -> x / y);
+      case "min" -> VH.apply(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> VH.apply(dest, a, b, (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public float[] handwritten() {
+    switch (operator) {
+      case "neg" -> handwritten(dest, a, v -> v.neg(), x -> -x);
+      case "div_constant" -> handwritten(dest, a, v -> v.div(3f), x -> x / 3f);
+      case "conditional" -> handwritten(dest, a, v -> v.blend(v.neg(), v.compare(VectorOperators.LT, 50f)), x -> x < 50f? -x: x);
+      case "add" -> handwritten(dest, a, b, (v, w) -> v.add(w), (x, y) -> x + y);
+      case "sub" -> handwritten(dest, a, b, (v, w) -> v.sub(w), (x, y) -> x - y);
+      case "mul" -> handwritten(dest, a, b, (v, w) -> v.mul(w), (x, y) -> x * y);
+      case "div" -> handwritten(dest, a, b, (v, w) -> v.div(w), (x, y) -> x / y);
+      case "min" -> handwritten(dest, a, b, (v, w) -> v.min(w), (x, y) -> Math.min(x, y));
+      case "max" -> handwritten(dest, a, b, (v, w) -> v.max(w), (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public float[] no_vector() {
+    switch (operator) {
+      case "neg" -> noVector(dest, a, x -> -x);
+      case "div_constant" -> noVector(dest, a, x -> x / 3f);
+      case "conditional" -> noVector(dest, a, x -> x < 50f? -x: x);
+      case "add" -> noVector(dest, a, b, (x, y) -> x + y);
+      case "sub" -> noVector(dest, a, b, (x, y) -> x - y);
+      case "mul" -> noVector(dest, a, b, (x, y) -> x * y);
+      case "div" -> noVector(dest, a, b, (x, y) -> x / y);
+      case "min" -> noVector(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> noVector(dest, a, b, (x, y) -> Math.max(x, y));
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  private static void handwritten(float[] dest, float[] a, UnaryOperator<FloatVector> vectorOp, VectorHandle.FFOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = FloatVector.fromArray(SPECIES, a, i);
+      vectorOp.apply(va).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void handwritten(float[] dest, float[] a, float[] b, BinaryOperator<FloatVector> vectorOp, VectorHandle.FFFOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = FloatVector.fromArray(SPECIES, a, i);
+      var vb = FloatVector.fromArray(SPECIES, b, i);
+      vectorOp.apply(va, vb).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static void noVector(float[] dest, float[] a, VectorHandle.FFOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void noVector(float[] dest, float[] a, float[] b, VectorHandle.FFFOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+}
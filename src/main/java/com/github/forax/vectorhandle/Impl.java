@@ -1,38 +1,82 @@
 package com.github.forax.vectorhandle;
 
+import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.DoubleVector;
 import jdk.incubator.vector.FloatVector;
 import jdk.incubator.vector.IntVector;
 import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
 import jdk.incubator.vector.Vector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
 import jdk.incubator.vector.VectorSpecies;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.MutableCallSite;
 import java.lang.invoke.SerializedLambda;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.UnaryOperator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.explicitCastArguments;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
 import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodHandles.permuteArguments;
 import static java.lang.invoke.MethodType.methodType;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
 import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
 import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
+import static org.objectweb.asm.Opcodes.AALOAD;
 import static org.objectweb.asm.Opcodes.ACC_FINAL;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
@@ -40,7 +84,15 @@ import static org.objectweb.asm.Opcodes.ACC_SUPER;
 import static org.objectweb.asm.Opcodes.ALOAD;
 import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.D2L;
 import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.DCMPG;
+import static org.objectweb.asm.Opcodes.DCMPL;
 import static org.objectweb.asm.Opcodes.DCONST_0;
 import static org.objectweb.asm.Opcodes.DCONST_1;
 import static org.objectweb.asm.Opcodes.DDIV;
@@ -49,7 +101,12 @@ import static org.objectweb.asm.Opcodes.DMUL;
 import static org.objectweb.asm.Opcodes.DNEG;
 import static org.objectweb.asm.Opcodes.DRETURN;
 import static org.objectweb.asm.Opcodes.DSUB;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F2I;
 import static org.objectweb.asm.Opcodes.FADD;
+import static org.objectweb.asm.Opcodes.FALOAD;
+import static org.objectweb.asm.Opcodes.FCMPG;
+import static org.objectweb.asm.Opcodes.FCMPL;
 import static org.objectweb.asm.Opcodes.FCONST_0;
 import static org.objectweb.asm.Opcodes.FCONST_1;
 import static org.objectweb.asm.Opcodes.FCONST_2;
@@ -60,7 +117,14 @@ import static org.objectweb.asm.Opcodes.FNEG;
 import static org.objectweb.asm.Opcodes.FRETURN;
 import static org.objectweb.asm.Opcodes.FSUB;
 import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.H_INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.I2B;
+import static org.objectweb.asm.Opcodes.I2F;
+import static org.objectweb.asm.Opcodes.I2S;
 import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IAND;
 import static org.objectweb.asm.Opcodes.ICONST_0;
 import static org.objectweb.asm.Opcodes.ICONST_1;
 import static org.objectweb.asm.Opcodes.ICONST_2;
@@ -69,22 +133,48 @@ import static org.objectweb.asm.Opcodes.ICONST_4;
 import static org.objectweb.asm.Opcodes.ICONST_5;
 import static org.objectweb.asm.Opcodes.ICONST_M1;
 import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.IMUL;
 import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IOR;
+import static org.objectweb.asm.Opcodes.IREM;
 import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.L2D;
 import static org.objectweb.asm.Opcodes.LADD;
+import static org.objectweb.asm.Opcodes.LALOAD;
+import static org.objectweb.asm.Opcodes.LAND;
+import static org.objectweb.asm.Opcodes.LCMP;
 import static org.objectweb.asm.Opcodes.LCONST_0;
 import static org.objectweb.asm.Opcodes.LCONST_1;
 import static org.objectweb.asm.Opcodes.LDIV;
 import static org.objectweb.asm.Opcodes.LLOAD;
 import static org.objectweb.asm.Opcodes.LMUL;
 import static org.objectweb.asm.Opcodes.LNEG;
+import static org.objectweb.asm.Opcodes.LOR;
+import static org.objectweb.asm.Opcodes.LREM;
 import static org.objectweb.asm.Opcodes.LRETURN;
 import static org.objectweb.asm.Opcodes.LSUB;
+import static org.objectweb.asm.Opcodes.LXOR;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SALOAD;
+import static org.objectweb.asm.Opcodes.SIPUSH;
 import static org.objectweb.asm.Opcodes.V11;
 
 class Impl {
@@ -92,28 +182,510 @@ class Impl {
   static final VectorSpecies<Long> LONG_SPECIES = LongVector.SPECIES_PREFERRED;
   static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
   static final VectorSpecies<Double> DOUBLE_SPECIES = DoubleVector.SPECIES_PREFERRED;
+  static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+  static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+
+  // minimum number of elements processed by a task of a parallel operation
+  private static final int PARALLEL_MIN_BLOCK_SIZE = 1 << 16;
+
+  static int parallelBlockSize(int length, VectorSpecies<?> species) {
+    var parallelism = ForkJoinPool.getCommonPoolParallelism();
+    var blockSize = Math.max(PARALLEL_MIN_BLOCK_SIZE, (length + parallelism - 1) / parallelism);
+    return species.loopBound(blockSize + species.length() - 1);  // round up to a multiple of the vector length
+  }
+
+  // number of rows processed by a task of a parallel 2D operation
+  static int parallelRowCount(int width, int height) {
+    var parallelism = ForkJoinPool.getCommonPoolParallelism();
+    var blockSize = Math.max(PARALLEL_MIN_BLOCK_SIZE, (int) (((long) width * height + parallelism - 1) / parallelism));
+    return Math.max(1, blockSize / Math.max(1, width));
+  }
+
+  static void checkRows(int length, int offset, int stride, int width, int height) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("negative width or height");
+    }
+    if (stride < width) {
+      throw new IllegalArgumentException("wrong stride");
+    }
+    if (height != 0 && (offset < 0 || offset + (long) (height - 1) * stride + width > length)) {
+      throw new IllegalArgumentException("wrong length");
+    }
+  }
+
+  // sizes of the blocks of a matrix multiplication, a block of the second matrix is
+  // 256 rows x 256 columns so it stays in the L2 cache
+  static final int MATRIX_DEPTH_BLOCK = 256;
+  static final int MATRIX_COLUMN_BLOCK = 256;
+
+  static void checkMatrix(int length, int rows, int columns) {
+    if (rows < 0 || columns < 0) {
+      throw new IllegalArgumentException("negative dimension");
+    }
+    if (length != (long) rows * columns) {
+      throw new IllegalArgumentException("wrong length");
+    }
+  }
+
+  // the result is written while the operands are still read
+  static void checkNotAliased(Object dest, Object a, Object b) {
+    if (dest == a || dest == b) {
+      throw new IllegalArgumentException("the destination is also an operand");
+    }
+  }
+
+  // size in bytes of the buffer used to read a channel, a multiple of the size of any vector
+  private static final int CHUNK_SIZE = 1 << 15;
+
+  // a buffer by thread, reused by the calls reading a channel
+  private static final ThreadLocal<ByteBuffer> CHUNK_BUFFERS = new ThreadLocal<>();
+
+  // the buffer is removed from the thread local until it is released, so a channel
+  // that uses a pipeline when it is read gets another buffer
+  static ByteBuffer takeChunkBuffer() {
+    var buffer = CHUNK_BUFFERS.get();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    CHUNK_BUFFERS.set(null);
+    buffer.clear();
+    return buffer;
+  }
+
+  static void releaseChunkBuffer(ByteBuffer buffer) {
+    CHUNK_BUFFERS.set(buffer);
+  }
+
+  // writes the bytes before limit (if out is not null) and moves the remaining bytes
+  // (the start of a value not fully read) at the beginning of the buffer
+  static void flushChunk(ByteBuffer buffer, int limit, WritableByteChannel out) throws IOException {
+    var end = buffer.position();
+    buffer.position(0).limit(limit);
+    while (out != null && buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.position(limit).limit(end);
+    buffer.compact();
+  }
+
+  static void checkNoTruncatedValue(ByteBuffer buffer) throws EOFException {
+    if (buffer.position() != 0) {
+      throw new EOFException("truncated value");
+    }
+  }
+
+  // global counters, a LongAdder has no contention when updated by several threads
+  private static final LongAdder CALLS = new LongAdder();
+  private static final LongAdder ELEMENTS = new LongAdder();
+  private static final LongAdder TAIL_ELEMENTS = new LongAdder();
+  private static final LongAdder COMPILATIONS = new LongAdder();
+  private static final LongAdder COMPILATION_FAILURES = new LongAdder();
+
+  // the calls are only counted if the system property is true, the counters make the methods calling recordCall()
+  // bigger so the JIT may not inline them anymore in their callers, if false the JIT removes the body of recordCall()
+  static final boolean METRICS = Boolean.getBoolean("com.github.forax.vectorhandle.metrics");
+
+  // one call in SAMPLING_PERIOD (a power of 2) is recorded by the JFR event KernelExecution
+  private static final int SAMPLING_PERIOD = 1_024;
+
+  // called once by each loop using a kernel, the tail elements are the ones not processed using vectors
+  static void recordCall(long elements, long tailElements) {
+    if (!METRICS) {
+      return;
+    }
+    CALLS.increment();
+    ELEMENTS.add(elements);
+    TAIL_ELEMENTS.add(tailElements);
+    if ((ThreadLocalRandom.current().nextInt() & (SAMPLING_PERIOD - 1)) == 0) {
+      var event = new KernelExecutionEvent();
+      if (event.shouldCommit()) {
+        event.elements = elements;
+        event.tailElements = tailElements;
+        event.commit();
+      }
+    }
+  }
+
+  static VectorHandle.Metrics metrics() {
+    return new VectorHandle.Metrics(CALLS.sum(), ELEMENTS.sum(), TAIL_ELEMENTS.sum(), COMPILATIONS.sum(), COMPILATION_FAILURES.sum());
+  }
+
+  // jdk.jfr.Label is fully qualified because of org.objectweb.asm.Label
+  @Name("com.github.forax.vectorhandle.KernelCompilation")
+  @jdk.jfr.Label("Kernel Compilation")
+  @Category("VectorHandle")
+  @Description("Compilation of operator lambdas to a kernel using vectors")
+  static final class KernelCompilationEvent extends Event {
+    @jdk.jfr.Label("Lambdas")
+    String lambdas;
+
+    @jdk.jfr.Label("Species")
+    String species;
+
+    @jdk.jfr.Label("Expression Size")
+    @Description("Number of nodes of the expressions of the lambdas")
+    int exprSize;
+
+    @jdk.jfr.Label("Bytecode Size")
+    @DataAmount
+    int bytecodeSize;
+
+    @jdk.jfr.Label("Failure")
+    String failure;
+  }
+
+  // the stack trace of the event is the caller of the vector handle
+  @Name("com.github.forax.vectorhandle.KernelExecution")
+  @jdk.jfr.Label("Kernel Execution")
+  @Category("VectorHandle")
+  @Description("A sample of the loops using a kernel, one loop in 1024")
+  static final class KernelExecutionEvent extends Event {
+    @jdk.jfr.Label("Elements")
+    long elements;
+
+    @jdk.jfr.Label("Tail Elements")
+    @Description("Elements processed one by one after the vector loop")
+    long tailElements;
+  }
+
+  @Name("com.github.forax.vectorhandle.KernelMetrics")
+  @jdk.jfr.Label("Kernel Metrics")
+  @Category("VectorHandle")
+  @Description("Cumulative number of calls and elements processed by the kernels")
+  @Period("1 s")
+  static final class KernelMetricsEvent extends Event {
+    @jdk.jfr.Label("Calls")
+    long calls;
+
+    @jdk.jfr.Label("Elements")
+    long elements;
+
+    @jdk.jfr.Label("Tail Elements")
+    @Description("Elements processed one by one after the vector loop")
+    long tailElements;
+
+    @jdk.jfr.Label("Compilations")
+    long compilations;
+
+    @jdk.jfr.Label("Compilation Failures")
+    long compilationFailures;
+  }
+
+  static {
+    FlightRecorder.addPeriodicEvent(KernelMetricsEvent.class, () -> {
+      var event = new KernelMetricsEvent();
+      event.calls = CALLS.sum();
+      event.elements = ELEMENTS.sum();
+      event.tailElements = TAIL_ELEMENTS.sum();
+      event.compilations = COMPILATIONS.sum();
+      event.compilationFailures = COMPILATION_FAILURES.sum();
+      event.commit();
+    });
+  }
 
   static MethodHandle createMH(Lookup lookup) {
     requireNonNull(lookup);
     return new CallSiteCache(lookup).dynamicInvoker();
   }
 
+  // the implementation of VectorHandle.of(), the fields of a record are trusted by the JIT,
+  // the handles are the vector handles used by a table, one by lambda class, so each lambda
+  // of a table has its own inline cache
+  record VectorHandleImpl(Lookup lookup, MethodHandle target, ClassValue<VectorHandle> handles) implements VectorHandle {
+    VectorHandleImpl(Lookup lookup) {
+      this(lookup, createMH(lookup), new ClassValue<>() {
+        @Override
+        protected VectorHandle computeValue(Class<?> type) {
+          return new VectorHandleImpl(lookup);
+        }
+      });
+    }
+
+    @Override
+    public Object invoke(Object lambda, Object va, Object vb, Object vc, Object vd) {
+      try {
+        return target.invokeExact(lambda, va, vb, vc, vd);
+      } catch(RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    }
+
+    VectorHandle handle(Object lambda) {
+      return handles.get(lambda.getClass());
+    }
+  }
+
+  static String describe(Lookup lookup, Object operator) {
+    requireNonNull(lookup);
+    requireNonNull(operator);
+    var report = new StringBuilder();
+    try {
+      new CallSiteCache(lookup).compile(operator, new Object[] { operator }, new KernelCompilationEvent(), report, true);
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+    return report.toString();
+  }
+
+  // if true, the description of each kernel is logged when the kernel is compiled
+  private static final boolean DUMP = Boolean.getBoolean("com.github.forax.vectorhandle.dump");
+
+  private static final System.Logger LOGGER = System.getLogger("com.github.forax.vectorhandle");
+
+  // number of elements of the arrays used by the self-check, a multiple of the length of all species
+  private static final int SELF_CHECK_SIZE = 4_096;
+
+  // number of runs of each loop, the first runs are slow until the JIT kicks in
+  private static final int SELF_CHECK_RUNS = 2_000;
+
+  // the JIT may also vectorize the loop of the operator lambda, so the kernel is only reported
+  // if it is several times slower, the Vector API not intrinsified is often 10 times slower
+  private static final int SELF_CHECK_MAX_SLOWDOWN = 2;
+
+  // compare the time of the kernel to the time of the operator lambda on the same arrays,
+  // the Vector API is really slow when not intrinsified (no C2, no vector instructions, etc)
+  private static void selfCheck(Lookup lookup, Object operator, MethodHandle kernel, Expr.Type type, int parameterCount, boolean isPredicate, StringBuilder report) throws ReflectiveOperationException {
+    var species = type.species();
+    var arrayClass = type.elementClass.arrayType();
+    var destClass = isPredicate? boolean[].class: arrayClass;
+
+    var serializedLambda = invokeWriteReplace(operator, lookup);
+    var interfaceClass = lookup.findClass(serializedLambda.getFunctionalInterfaceClass().replace('/', '.'));
+    var interfaceMethodType = MethodType.fromMethodDescriptorString(serializedLambda.getFunctionalInterfaceMethodSignature(), interfaceClass.getClassLoader());
+    var scalarLoop = sampleLoop(
+        lookup.findVirtual(interfaceClass, serializedLambda.getFunctionalInterfaceMethodName(), interfaceMethodType).bindTo(operator),
+        MethodHandles.arrayElementGetter(arrayClass),
+        MethodHandles.arrayElementSetter(destClass),
+        parameterCount, 1);
+
+    var implLookup = lookup();
+    var operation = insertArguments(insertArguments(kernel, 0, operator), parameterCount, new Object[4 - parameterCount]);
+    var load = insertArguments(implLookup.findStatic(type.vectorClass, "fromArray", methodType(type.vectorClass, VectorSpecies.class, arrayClass, int.class)), 0, species)
+        .asType(methodType(Object.class, arrayClass, int.class));
+    var resultClass = isPredicate? VectorMask.class: type.vectorClass;
+    var intoArray = implLookup.findVirtual(resultClass, "intoArray", methodType(void.class, destClass, int.class));
+    var store = permuteArguments(intoArray, methodType(void.class, destClass, int.class, resultClass), 2, 0, 1)
+        .asType(methodType(void.class, destClass, int.class, Object.class));
+    var vectorLoop = sampleLoop(operation, load, store, parameterCount, species.length());
+
+    var arrays = new Object[1 + parameterCount];
+    arrays[0] = Array.newInstance(destClass.componentType(), SELF_CHECK_SIZE);
+    for(var i = 1; i < arrays.length; i++) {
+      var array = Array.newInstance(type.elementClass, SELF_CHECK_SIZE);
+      for(var j = 0; j < SELF_CHECK_SIZE; j++) {
+        Array.setByte(array, j, (byte) (1 + (i + j) % 100));  // widened to the element type
+      }
+      arrays[i] = array;
+    }
+
+    double vectorTime, scalarTime;
+    try {
+      vectorTime = (double) bestTime(vectorLoop, arrays) / SELF_CHECK_SIZE;
+      scalarTime = (double) bestTime(scalarLoop, arrays) / SELF_CHECK_SIZE;
+    } catch(RuntimeException e) {  // e.g. a division by zero
+      report.append("self-check failed ").append(e).append('\n');
+      return;
+    }
+    report.append("self-check vector %.3f ns/element, scalar %.3f ns/element\n".formatted(vectorTime, scalarTime));
+    if (vectorTime > SELF_CHECK_MAX_SLOWDOWN * scalarTime) {
+      report.append("warning the kernel ").append(serializedLambda.getImplMethodName()).append(" using ").append(species)
+          .append(" is slower than the scalar lambda, is the Vector API intrinsified ?\n");
+    }
+  }
+
+  // creates a loop (dest, arrays...) -> void that computes dest[i] = operation(arrays[0][i], arrays[1][i], ...)
+  // with load (array, i) -> value and store (dest, i, value) -> void, i is incremented by lanes
+  private static MethodHandle sampleLoop(MethodHandle operation, MethodHandle load, MethodHandle store, int parameterCount, int lanes) {
+    var body = operation;
+    for(var i = parameterCount; --i >= 0;) {
+      body = MethodHandles.collectArguments(body, i, load);  // (array0, i, array1, i, ...) -> value
+    }
+    body = MethodHandles.collectArguments(store, 2, body);  // (dest, i, array0, i, array1, i, ...) -> void
+    var parameterTypes = new ArrayList<Class<?>>();
+    parameterTypes.add(store.type().parameterType(0));
+    parameterTypes.addAll(Collections.nCopies(parameterCount, load.type().parameterType(0)));
+    var reorder = new int[2 + 2 * parameterCount];
+    reorder[0] = 1;
+    for(var i = 0; i < parameterCount; i++) {
+      reorder[2 + 2 * i] = 2 + i;
+    }
+    body = permuteArguments(body, methodType(void.class, parameterTypes).insertParameterTypes(0, int.class), reorder);
+    if (lanes != 1) {
+      body = filterArguments(body, 0, insertArguments(MULTIPLY_EXACT, 1, lanes));
+    }
+    var iterations = dropArguments(MethodHandles.constant(int.class, SELF_CHECK_SIZE / lanes), 0, parameterTypes);
+    return constantLoop(MethodHandles.countedLoop(iterations, null, body));
+  }
+
+  // returns a method handle (Object[]) -> void that calls the loop with the arrays, the loop is
+  // a constant (the class data of a hidden class) so the JIT inlines the loop and the kernel
+  // like if the kernel was called from a static final field
+  private static MethodHandle constantLoop(MethodHandle loop) {
+    var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(V11, ACC_FINAL | ACC_SUPER, nameFrom(Impl.class) + "$SelfCheck", null, "java/lang/Object", null);
+    var mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "([Ljava/lang/Object;)V", null, null);
+    mv.visitCode();
+    mv.visitLdcInsn(classDataConstant(MethodHandle.class));
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", "([Ljava/lang/Object;)V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+    writer.visitEnd();
+
+    var spreader = loop.asSpreader(Object[].class, loop.type().parameterCount());
+    try {
+      var hiddenLookup = lookup().defineHiddenClassWithClassData(writer.toByteArray(), spreader, true);
+      return hiddenLookup.findStatic(hiddenLookup.lookupClass(), "run", methodType(void.class, Object[].class));
+    } catch (IllegalAccessException | NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final MethodHandle MULTIPLY_EXACT;
+  static {
+    try {
+      MULTIPLY_EXACT = lookup().findStatic(Math.class, "multiplyExact", methodType(int.class, int.class, int.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static long bestTime(MethodHandle loop, Object[] arrays) {
+    var best = Long.MAX_VALUE;
+    for(var i = 0; i < SELF_CHECK_RUNS; i++) {
+      var start = System.nanoTime();
+      try {
+        loop.invokeExact(arrays);
+      } catch(RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  /**
+   * Several operator lambdas compiled into one operation on vectors.
+   */
+  interface Composite {
+    Object[] operators();
+  }
+
+  /**
+   * A sequence of operator lambdas, the result of each lambda is the parameter of the next one.
+   * The lambdas are fused into one operation on vectors.
+   */
+  record Fused(Object... operators) implements Composite {
+    Fused {
+      if (operators.length == 0) {
+        throw new IllegalArgumentException("no operator");
+      }
+    }
+  }
+
+  /**
+   * Several operator lambdas called with the same parameters, the operation on vectors
+   * takes the parameters, the destination arrays and the offset and stores the result
+   * of each lambda in its destination array.
+   */
+  record Multi(Object... operators) implements Composite {
+    Multi {
+      if (operators.length == 0) {
+        throw new IllegalArgumentException("no operator");
+      }
+    }
+  }
+
+  /**
+   * A permutation of the lanes of the concatenation of two or three vectors,
+   * the lanes coming from the third vector are selected by {@code lastMask}.
+   * {@code last} and {@code lastMask} are null if there is no third vector.
+   */
+  record Permutation<E>(VectorShuffle<E> first, VectorShuffle<E> last, VectorMask<E> lastMask) {}
+
+  static <E> Permutation<E> permutation(VectorSpecies<E> species, IntUnaryOperator index) {
+    var length = species.length();
+    // the indexes in [length, 2 * length) are wrapped to exceptional indexes that select the second vector
+    var first = VectorShuffle.fromOp(species, j -> index.applyAsInt(j) < 2 * length? index.applyAsInt(j): 0);
+    var lanes = new boolean[length];
+    for (var j = 0; j < length; j++) {
+      lanes[j] = index.applyAsInt(j) >= 2 * length;
+    }
+    var lastMask = VectorMask.fromArray(species, lanes, 0);
+    if (!lastMask.anyTrue()) {
+      return new Permutation<>(first, null, null);
+    }
+    var last = VectorShuffle.fromOp(species, j -> Math.max(0, index.applyAsInt(j) - 2 * length));
+    return new Permutation<>(first, last, lastMask);
+  }
+
+  static <E> Vector<E> permute(Permutation<E> permutation, Vector<E> v0, Vector<E> v1, Vector<E> v2) {
+    var result = v0.rearrange(permutation.first, v1);
+    if (permutation.last == null) {
+      return result;
+    }
+    return result.blend(v2.rearrange(permutation.last), permutation.lastMask);
+  }
+
+  // the permutations that extract each field from the vectors of records with several fields
+  private static <E> List<Permutation<E>> split(VectorSpecies<E> species, int fields) {
+    return IntStream.range(0, fields)
+        .mapToObj(field -> permutation(species, j -> fields * j + field))
+        .toList();
+  }
+
+  // the permutations that create each vector of records from the vectors of each field
+  private static <E> List<Permutation<E>> merge(VectorSpecies<E> species, int fields) {
+    var length = species.length();
+    return IntStream.range(0, fields)
+        .mapToObj(vector -> permutation(species, j -> {
+          var element = vector * length + j;
+          return (element % fields) * length + element / fields;
+        }))
+        .toList();
+  }
+
+  static final List<Permutation<Float>> FLOAT_SPLIT_2 = split(FLOAT_SPECIES, 2);
+  static final List<Permutation<Float>> FLOAT_SPLIT_3 = split(FLOAT_SPECIES, 3);
+  static final List<Permutation<Float>> FLOAT_MERGE_2 = merge(FLOAT_SPECIES, 2);
+  static final List<Permutation<Float>> FLOAT_MERGE_3 = merge(FLOAT_SPECIES, 3);
+  static final List<Permutation<Double>> DOUBLE_SPLIT_2 = split(DOUBLE_SPECIES, 2);
+  static final List<Permutation<Double>> DOUBLE_SPLIT_3 = split(DOUBLE_SPECIES, 3);
+  static final List<Permutation<Double>> DOUBLE_MERGE_2 = merge(DOUBLE_SPECIES, 2);
+  static final List<Permutation<Double>> DOUBLE_MERGE_3 = merge(DOUBLE_SPECIES, 3);
+
   private static class CallSiteCache extends MutableCallSite {
-    private static final MethodHandle FALLBACK, POINTER_CHECK, ERROR;
+    private static final MethodHandle FALLBACK, CLASS_CHECK, COMPOSITE_CHECK, COMPOSITE_OPERATOR;
     static {
       var lookup = lookup();
       try {
         FALLBACK = lookup.findVirtual(CallSiteCache.class, "fallback",
             methodType(Object.class, Object.class, Object.class, Object.class, Object.class, Object.class));
-        POINTER_CHECK = lookup.findStatic(CallSiteCache.class, "pointerCheck",
-            methodType(boolean.class, Object.class, Object.class));
-        ERROR = lookup.findStatic(CallSiteCache.class, "error", methodType(void.class));
+        CLASS_CHECK = lookup.findStatic(CallSiteCache.class, "classCheck",
+            methodType(boolean.class, Class.class, Object.class));
+        COMPOSITE_CHECK = lookup.findStatic(CallSiteCache.class, "compositeCheck",
+            methodType(boolean.class, Class.class, Class[].class, Object.class));
+        COMPOSITE_OPERATOR = lookup.findStatic(CallSiteCache.class, "compositeOperator",
+            methodType(Object.class, Object.class, int.class));
       } catch (NoSuchMethodException | IllegalAccessException e) {
         throw new AssertionError(e);
       }
     }
 
+    // maximum number of lambdas cached by a call site
+    private static final int MAX_DEPTH = 8;
+
+    // the classes of the operator lambdas of a kernel and the class of the composite (or null)
+    private record Kernel(List<Class<?>> classes, Class<?> compositeClass) {}
+
     private final Lookup lookup;
+    private final ConcurrentHashMap<Kernel, CompletableFuture<MethodHandle>> compilations = new ConcurrentHashMap<>();
+    private int depth;  // guarded by this
 
     private CallSiteCache(Lookup lookup) {
       super(MethodType.genericMethodType(5));
@@ -121,53 +693,300 @@ class Impl {
       setTarget(FALLBACK.bindTo(this));
     }
 
-    private static boolean pointerCheck(Object o1, Object o2) {
-      return o1 == o2;
+    // the lambdas created by the same lambda expression share the same class,
+    // they only differ by their captured values
+    private static boolean classCheck(Class<?> lambdaClass, Object operator) {
+      return operator.getClass() == lambdaClass;
+    }
+
+    private static boolean compositeCheck(Class<?> compositeClass, Class<?>[] lambdaClasses, Object operator) {
+      if (operator.getClass() != compositeClass) {
+        return false;
+      }
+      var operators = ((Composite) operator).operators();
+      if (operators.length != lambdaClasses.length) {
+        return false;
+      }
+      for(var i = 0; i < lambdaClasses.length; i++) {
+        if (operators[i].getClass() != lambdaClasses[i]) {
+          return false;
+        }
+      }
+      return true;
     }
 
-    private static void error() {
-      throw new IllegalStateException("the operator lambda is not constant");
+    private static Object compositeOperator(Object operator, int index) {
+      return ((Composite) operator).operators()[index];
     }
 
     private Object fallback(Object operator, Object va, Object vb, Object vc, Object vd) throws Throwable {
-      var serializedLambda = invokeWriteReplace(operator, lookup);
-      //System.err.println("serializedLambda " + serializedLambda);
+      var operators = operator instanceof Composite composite? composite.operators(): new Object[] { operator };
+      var kernel = new Kernel(Arrays.stream(operators).<Class<?>>map(Object::getClass).toList(),
+          operator instanceof Composite? operator.getClass(): null);
+
+      // only one thread compiles a kernel, the other threads wait for the result
+      var future = new CompletableFuture<MethodHandle>();
+      var existing = compilations.putIfAbsent(kernel, future);
+      if (existing != null) {
+        MethodHandle target;
+        try {
+          target = existing.join();
+        } catch (CompletionException e) {
+          throw e.getCause();
+        }
+        return target.invokeExact(operator, va, vb, vc, vd);
+      }
+
+      synchronized (this) {
+        if (depth == MAX_DEPTH) {
+          compilations.remove(kernel);
+          var exception = new IllegalStateException("too many different operator lambdas, the operator lambdas are not constant ?");
+          future.completeExceptionally(exception);
+          throw exception;
+        }
+        depth++;
+      }
+      var event = new KernelCompilationEvent();
+      event.begin();
+      var report = DUMP? new StringBuilder(): null;
+      MethodHandle target;
+      try {
+        target = compile(operator, operators, event, report, false);
+      } catch (Throwable t) {
+        COMPILATION_FAILURES.increment();
+        event.failure = t.toString();
+        event.commit();
+        synchronized (this) {
+          depth--;
+        }
+        // the next calls will try again
+        compilations.remove(kernel);
+        future.completeExceptionally(t);
+        throw t;
+      }
 
-      if (serializedLambda.getCapturedArgCount() != 0) {
-        throw new IllegalStateException("The operator lambda should not capture any variable value");
+      // polymorphic inline cache, the new lambda is checked first
+      var check = kernel.compositeClass != null?
+          insertArguments(COMPOSITE_CHECK, 0, kernel.compositeClass, kernel.classes.toArray(Class[]::new)):
+          CLASS_CHECK.bindTo(operator.getClass());
+      synchronized (this) {  // the kernels may be compiled concurrently
+        setTarget(guardWithTest(check, target, getTarget()));
+      }
+      // the threads running a stale target see the new guard as soon as possible
+      MutableCallSite.syncAll(new MutableCallSite[] { this });
+      future.complete(target);
+      COMPILATIONS.increment();
+      event.commit();
+      if (report != null) {
+        LOGGER.log(System.Logger.Level.INFO, report);
       }
-      if (serializedLambda.getImplMethodKind() != Opcodes.H_INVOKESTATIC) {
-        throw new IllegalStateException("The operator lambda should be desugared as a static method");
+
+      return target.invokeExact(operator, va, vb, vc, vd);
+    }
+
+    // if report is not null, the expressions and the bytecode are appended to it,
+    // if selfCheck is true, the kernel is also timed and the result of the self-check is appended to the report,
+    // the self-check takes several milliseconds so it is only done by describe() and never on the first call
+    private MethodHandle compile(Object operator, Object[] operators, KernelCompilationEvent event, StringBuilder report, boolean selfCheck) throws ReflectiveOperationException {
+      var exprs = new ArrayList<Expr>();
+      var capturedCounts = new int[operators.length];
+      var capturedExprTypes = new ArrayList<Expr.Type>();
+      var capturedValues = new ArrayList<MethodHandle>();
+      Expr.Type[] parameterExprTypes = null;
+      Expr.Type returnExprType = null;
+      Class<?> returnClass = null;
+      // the lambdas of a multi are not chained, they all take the parameters
+      var multi = operator instanceof Multi;
+      for(var i = 0; i < operators.length; i++) {
+        var lambda = operators[i];
+        var serializedLambda = invokeWriteReplace(lambda, lookup);
+        //System.err.println("serializedLambda " + serializedLambda);
+
+        if (serializedLambda.getImplMethodKind() != Opcodes.H_INVOKESTATIC) {
+          throw new IllegalStateException("The operator lambda should be desugared as a static method");
+        }
+
+        // the captured values are the first parameters of the lambda method
+        var lambdaMethodDesc = serializedLambda.getImplMethodSignature();
+        var lambdaMethodType = MethodType.fromMethodDescriptorString(lambdaMethodDesc, lookup.lookupClass().getClassLoader());
+        var laneType = laneType(lambdaMethodDesc);
+        var capturedCount = serializedLambda.getCapturedArgCount();
+        for(var j = 0; j < capturedCount; j++) {
+          var capturedType = lambdaMethodType.parameterType(j);
+          if (!capturedType.isPrimitive() || capturedType == boolean.class) {
+            throw new IllegalStateException("The operator lambda should only capture numeric values");
+          }
+        }
+        var lambdaMethod = serializedLambda.getImplClass() + "." + serializedLambda.getImplMethodName() + lambdaMethodDesc;
+        event.lambdas = event.lambdas == null? lambdaMethod: event.lambdas + ", " + lambdaMethod;
+        var exactCaptures = new BitSet();
+        exprs.add(walk(lookup, serializedLambda.getImplClass(), serializedLambda.getImplMethodName(), lambdaMethodDesc, laneType, List.of(lambdaMethod), exactCaptures));
+        for(var j = 0; j < capturedCount; j++) {
+          var capturedType = lambdaMethodType.parameterType(j);
+          var capturedExprType = Expr.Type.from(capturedType);
+          if (capturedExprType == Expr.Type.INT) {
+            capturedExprType = laneType;
+          }
+          capturedExprTypes.add(capturedExprType);
+          capturedValues.add(capturedValue(lookup, lambda.getClass(), j, capturedType, capturedExprType, exactCaptures.get(j),
+              operator instanceof Composite? insertArguments(COMPOSITE_OPERATOR, 1, i): null));
+        }
+        capturedCounts[i] = capturedCount;
+
+        var lambdaParameterExprTypes = lambdaMethodType.parameterList().subList(capturedCount, lambdaMethodType.parameterCount()).stream()
+            .map(Expr.Type::from).toArray(Expr.Type[]::new);
+        if (parameterExprTypes == null) {
+          parameterExprTypes = lambdaParameterExprTypes;
+        } else if (multi) {
+          if (!Arrays.equals(lambdaParameterExprTypes, parameterExprTypes) || lambdaMethodType.returnType() != returnExprType.elementClass) {
+            throw new IllegalStateException("The operator lambda " + lambdaMethodType + " does not have the same parameters and return type as the other operators");
+          }
+        } else if (returnExprType == null || lambdaParameterExprTypes.length != 1 || lambdaParameterExprTypes[0] != returnExprType) {
+          throw new IllegalStateException("The operator lambda " + lambdaMethodType + " can not be chained after an operator returning " + returnClass.getSimpleName());
+        }
+        // a predicate returns a mask
+        if (lambdaMethodType.returnType() == boolean.class) {
+          returnExprType = null;
+          returnClass = VectorMask.class;
+        } else {
+          returnExprType = Expr.Type.from(lambdaMethodType.returnType());
+          returnClass = returnExprType.vectorClass;
+        }
       }
+      //System.err.println("exprs " + exprs);
+      event.species = parameterExprTypes[0].species().toString();
 
-      var lambdaMethodDesc = serializedLambda.getImplMethodSignature();
-      var lambdaMethodType = MethodType.fromMethodDescriptorString(lambdaMethodDesc, lookup.lookupClass().getClassLoader());
-      var returnExprType = Expr.Type.from(lambdaMethodType.returnType());
-      var parameterExprTypes = lambdaMethodType.parameterList().stream().map(Expr.Type::from).toArray(Expr.Type[]::new);
+      // the parameters of the generated method are the vectors followed by the captured values
+      // (and the destination arrays and the offset for a multi),
+      // the local variable after the parameters stores the result of the previous lambda
+      var parameterCount = parameterExprTypes.length;
+      var methodParameterExprTypes = new ArrayList<>(List.of(parameterExprTypes));
+      methodParameterExprTypes.addAll(capturedExprTypes);
+      var slot = methodParameterExprTypes.size();
+      var capturedOffset = parameterCount;
+      for(var i = 0; i < exprs.size(); i++) {
+        var capturedCount = capturedCounts[i];
+        var chained = i != 0 && !multi;
+        var variables = new int[capturedCount + (chained? 1: parameterCount)];
+        for(var j = 0; j < variables.length; j++) {
+          variables[j] = j < capturedCount? capturedOffset + j: chained? slot: j - capturedCount;
+        }
+        capturedOffset += capturedCount;
+        exprs.set(i, guard(relocate(exprs.get(i), variables), null));
+      }
 
-      var bytecode = loadBytecode(lookup.lookupClass(), serializedLambda.getImplClass());
-      var expr = walk(bytecode, serializedLambda.getImplMethodName(), lambdaMethodDesc);
-      //System.err.println("expr " + expr);
+      var storeType = multi? returnExprType: null;
+      var classData = gen(lookup.lookupClass(), exprs, returnClass, methodParameterExprTypes.toArray(Expr.Type[]::new), storeType);
+      event.exprSize = exprs.stream().mapToInt(Impl::size).sum();
+      event.bytecodeSize = classData.length;
+      if (report != null) {
+        report.append("lambdas ").append(event.lambdas).append('\n');
+        report.append("species ").append(event.species).append('\n');
+        for(var expr: exprs) {
+          report.append("expr\n");
+          dump(expr, 1, report);
+        }
+        report.append("bytecode\n");
+        textify(classData, report);
+      }
+      var hiddenLookup = lookup.defineHiddenClassWithClassData(classData, GATHER_INDEXES, true, Lookup.ClassOption.NESTMATE, Lookup.ClassOption.STRONG);
+      var lambdaType = methodType(returnClass, methodParameterExprTypes.stream().map(type -> type.vectorClass).toArray(Class[]::new));
+      if (multi) {
+        lambdaType = lambdaType.changeReturnType(void.class).appendParameterTypes(storeType.elementClass.arrayType().arrayType(), int.class);
+      }
+      var mh = hiddenLookup.findStatic(hiddenLookup.lookupClass(), "lambda", lambdaType);
 
-      var classData = gen(lookup.lookupClass(), expr, returnExprType, parameterExprTypes);
-      var hiddenLookup = lookup.defineHiddenClass(classData, true, Lookup.ClassOption.NESTMATE, Lookup.ClassOption.STRONG);
-      var mh = hiddenLookup.findStatic(hiddenLookup.lookupClass(), "lambda",
-            methodType(returnExprType.vectorClass, Arrays.stream(parameterExprTypes).map(type -> type.vectorClass).toArray(Class[]::new)));
+      // the captured values are read from the operator and broadcast
+      var capturedCount = capturedValues.size();
+      mh = filterArguments(mh, parameterCount, capturedValues.toArray(MethodHandle[]::new));
+      var reorder = new int[mh.type().parameterCount()];
+      for(var i = 0; i < reorder.length; i++) {
+        reorder[i] = i < parameterCount? i + 1: i < parameterCount + capturedCount? 0: i - capturedCount + 1;
+      }
+      var target = permuteArguments(mh, mh.type().dropParameterTypes(parameterCount, parameterCount + capturedCount).insertParameterTypes(0, Object.class), reorder);
 
       // adjust if too many vectors
-      if (1 + mh.type().parameterCount() != type().parameterCount()) {
-        mh = dropArguments(mh, mh.type().parameterCount(), Collections.nCopies(type().parameterCount() - mh.type().parameterCount() - 1, Object.class));
+      if (target.type().parameterCount() != type().parameterCount()) {
+        target = dropArguments(target, target.type().parameterCount(), Collections.nCopies(type().parameterCount() - target.type().parameterCount(), Object.class));
+      }
+      target = target.asType(type());  // erase types
+
+      if (selfCheck) {
+        // the self-check only knows how to create arrays of the same type
+        var elementType = parameterExprTypes[0];
+        if (!(operator instanceof Composite)
+            && Arrays.stream(parameterExprTypes).allMatch(type -> type == elementType)
+            && (returnClass == VectorMask.class || returnClass == elementType.vectorClass)) {
+          selfCheck(lookup, operator, target, elementType, parameterExprTypes.length, returnClass == VectorMask.class, report);
+        } else {
+          report.append("self-check not supported\n");
+        }
+      }
+      return target;
+    }
+  }
+
+  private static final MethodHandle[] BROADCASTS;
+  static {
+    var lookup = lookup();
+    var types = Expr.Type.values();
+    BROADCASTS = new MethodHandle[types.length];
+    try {
+      for(var type: types) {
+        var broadcast = lookup.findStatic(type.vectorClass, "broadcast", methodType(type.vectorClass, VectorSpecies.class, type.elementClass));
+        BROADCASTS[type.ordinal()] = insertArguments(broadcast, 0, type.species());
       }
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final MethodHandle CHECK_BYTE_LANES, CHECK_SHORT_LANES;
+  static {
+    var lookup = lookup();
+    try {
+      CHECK_BYTE_LANES = lookup.findStatic(Impl.class, "checkByteLanes", methodType(int.class, int.class));
+      CHECK_SHORT_LANES = lookup.findStatic(Impl.class, "checkShortLanes", methodType(int.class, int.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
 
-      var target =  dropArguments(mh, 0, Object.class);
-      var guard = guardWithTest(POINTER_CHECK.bindTo(operator),
-          target,
-          dropArguments(ERROR, 0, target.type().parameterList()).asType(target.type() /* patch return type */));
+  private static int checkByteLanes(int value) {
+    if (value != (byte) value) {
+      throw new IllegalStateException("the captured value " + value + " does not fit the BYTE lanes");
+    }
+    return value;
+  }
 
-      setTarget(guard.asType(type()));  // erase types
+  private static int checkShortLanes(int value) {
+    if (value != (short) value) {
+      throw new IllegalStateException("the captured value " + value + " does not fit the SHORT lanes");
+    }
+    return value;
+  }
 
-      return mh.invokeWithArguments(va, vb, vc, vd);
+  // returns a method handle that takes the operator and returns a vector of the captured value,
+  // the captured values are stored in the fields arg$1, arg$2, etc of the lambda proxy class,
+  // if exact is true, an int captured by a byte/short lambda is used by an operation that
+  // requires the exact value (a comparison, a division, etc) so it should fit the lanes
+  private static MethodHandle capturedValue(Lookup lookup, Class<?> lambdaClass, int index, Class<?> capturedType, Expr.Type type, boolean exact, MethodHandle compositeOperator) {
+    MethodHandle getter;
+    try {
+      getter = lookup.findGetter(lambdaClass, "arg$" + (index + 1), capturedType);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      throw (IllegalStateException) new IllegalStateException("can not access to the captured values of " + lambdaClass.getName()).initCause(e);
+    }
+    // an int captured by a byte/short lambda is narrowed to the lanes
+    if (exact && capturedType == int.class && type != Expr.Type.INT) {
+      getter = filterReturnValue(getter, type == Expr.Type.BYTE? CHECK_BYTE_LANES: CHECK_SHORT_LANES);
     }
+    getter = explicitCastArguments(getter, methodType(type.elementClass, lambdaClass));
+    var capturedValue = filterReturnValue(getter, BROADCASTS[type.ordinal()]);
+    if (compositeOperator != null) {
+      return filterArguments(capturedValue, 0, compositeOperator.asType(methodType(lambdaClass, Object.class)));
+    }
+    return capturedValue.asType(methodType(type.vectorClass, Object.class));
   }
 
   private static SerializedLambda invokeWriteReplace(Object lambda, Lookup lookup) {
@@ -198,9 +1017,37 @@ class Impl {
     }
   }
 
-  private static Expr walk(byte[] bytecode, String methodName, String methodDescriptor) {
+  // an instruction of the lambda method, the jumps and the returns are interpreted by walk,
+  // the other instructions are replayed on the interpreter
+  private /*sealed*/ interface Insn {
+    record Visit(Consumer<MethodVisitor> consumer) implements Insn {}
+    record Jump(int opcode, Label label) implements Insn {}
+    record Return() implements Insn {}
+  }
+
+  // a path of the lambda method, the value returned if the condition is true
+  private record Path(Expr condition, Expr value) {}
+
+  // a branch of the lambda method not yet interpreted
+  private record Branch(int index, Expr condition, List<Expr> stack) {}
+
+  // maximum number of paths of a lambda method, each conditional jump doubles the number of paths
+  private static final int MAX_PATHS = 64;
+
+  // maximum number of nested calls to static methods that are inlined
+  private static final int MAX_INLINING_DEPTH = 8;
+
+  // maximum number of instructions of a static method that is inlined
+  private static final int MAX_INLINING_SIZE = 128;
+
+  // the callers are the lambda method and the static methods currently inlined,
+  // exactCaptures records the captured ints of a byte/short lambda that should fit the lanes,
+  // it is null for a static method inlined
+  private static Expr walk(Lookup lookup, String className, String methodName, String methodDescriptor, Expr.Type laneType, List<String> callers, BitSet exactCaptures) {
+    var bytecode = loadBytecode(lookup.lookupClass(), className);
     var reader = new ClassReader(bytecode);
-    var stack = new ArrayDeque<Expr>();
+    var code = new ArrayList<Insn>();
+    var labels = new HashMap<Label, Integer>();
     reader.accept(new ClassVisitor(ASM9) {
       @Override
       public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
@@ -212,168 +1059,53 @@ class Impl {
           throw new AssertionError("lambda method " + methodName + methodDescriptor + " is not static");
         }
 
-        // local variables need to be re-numbered because long/double takes two slots
-        var parameterTypes = Type.getArgumentTypes(descriptor);
-        var varIndexArray = new int[Type.getArgumentsAndReturnSizes(descriptor) >> 2];
-        var slot = 0;
-        for(var i = 0; i < parameterTypes.length; i++) {
-          varIndexArray[slot] = i;
-          slot += parameterTypes[i].getSize();
-        }
-
         return new MethodVisitor(ASM9) {
           @Override
-          public void visitVarInsn(int opcode, int var) {
-            stack.push(switch(opcode) {
-              case ILOAD, LLOAD, FLOAD, DLOAD -> new Expr.Load(Expr.Type.of(opcode - ILOAD), varIndexArray[var]);
-              default -> throw new AssertionError("invalid var opcode: " + opcode + " " + var);
-            });
+          public void visitLabel(Label label) {
+            labels.put(label, code.size());
           }
-
           @Override
-          public void visitLdcInsn(Object value) {
-            Expr expr;
-            if (value instanceof Integer) {
-              expr = new Expr.Literal(Expr.Type.INT, value);
-            } else if (value instanceof Long) {
-              expr = new Expr.Literal(Expr.Type.LONG, value);
-            } else if (value instanceof Float) {
-              expr = new Expr.Literal(Expr.Type.FLOAT, value);
-            } else if (value instanceof Double) {
-              expr = new Expr.Literal(Expr.Type.DOUBLE, value);
-            } else {
-              throw new AssertionError("invalid ldc opcode: " + value);
-            }
-            stack.push(expr);
+          public void visitJumpInsn(int opcode, Label label) {
+            code.add(new Insn.Jump(opcode, label));
           }
-
           @Override
           public void visitInsn(int opcode) {
             switch (opcode) {
-              case ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5 -> {
-                stack.push(new Expr.Literal(Expr.Type.INT, opcode - ICONST_0));
-              }
-              case LCONST_0, LCONST_1 -> {
-                stack.push(new Expr.Literal(Expr.Type.LONG, (long) (opcode - LCONST_0)));
-              }
-              case FCONST_0, FCONST_1, FCONST_2 -> {
-                stack.push(new Expr.Literal(Expr.Type.FLOAT, (float) (opcode - FCONST_0)));
-              }
-              case DCONST_0, DCONST_1 -> {
-                stack.push(new Expr.Literal(Expr.Type.DOUBLE, (double) (opcode - DCONST_0)));
-              }
-              case INEG, LNEG, FNEG, DNEG -> {
-                var expr = stack.pop();
-                stack.push(new Expr.UnOp(Expr.Type.of(opcode - INEG), Expr.UnOp.Kind.neg, expr));
-              }
-              case IADD, LADD, FADD, DADD -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.of(opcode - IADD), Expr.BinOp.Kind.add, expr1, expr2));
-              }
-              case ISUB, LSUB, FSUB, DSUB -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.of(opcode - ISUB), Expr.BinOp.Kind.sub, expr1, expr2));
-              }
-              case IMUL, LMUL, FMUL, DMUL -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.of(opcode - IMUL), Expr.BinOp.Kind.mul, expr1, expr2));
-              }
-              case IDIV, LDIV, FDIV, DDIV -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.of(opcode - IDIV), Expr.BinOp.Kind.div, expr1, expr2));
-              }
-              case IRETURN, LRETURN, FRETURN, DRETURN -> {}
-              default -> {
-                throw new AssertionError("invalid insn: " + opcode);
-              }
+              case IRETURN, LRETURN, FRETURN, DRETURN -> code.add(new Insn.Return());
+              default -> code.add(new Insn.Visit(mv -> mv.visitInsn(opcode)));
             }
           }
-
+          @Override
+          public void visitVarInsn(int opcode, int var) {
+            code.add(new Insn.Visit(mv -> mv.visitVarInsn(opcode, var)));
+          }
+          @Override
+          public void visitLdcInsn(Object value) {
+            code.add(new Insn.Visit(mv -> mv.visitLdcInsn(value)));
+          }
           @Override
           public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-            switch(owner + "." + name + descriptor) {
-              case "java/lang/Math.min(II)I" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.INT, Expr.BinOp.Kind.min, expr1, expr2));
-              }
-              case "java/lang/Math.min(JJ)J" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.LONG, Expr.BinOp.Kind.min, expr1, expr2));
-              }
-              case "java/lang/Math.min(FF)F" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.FLOAT, Expr.BinOp.Kind.min, expr1, expr2));
-              }
-              case "java/lang/Math.min(DD)D" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.DOUBLE, Expr.BinOp.Kind.min, expr1, expr2));
-              }
-              case "java/lang/Math.max(II)I" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.INT, Expr.BinOp.Kind.max, expr1, expr2));
-              }
-              case "java/lang/Math.max(JJ)J" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.LONG, Expr.BinOp.Kind.max, expr1, expr2));
-              }
-              case "java/lang/Math.max(FF)F" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.FLOAT, Expr.BinOp.Kind.max, expr1, expr2));
-              }
-              case "java/lang/Math.max(DD)D" -> {
-                var expr2 = stack.pop();
-                var expr1 = stack.pop();
-                stack.push(new Expr.BinOp(Expr.Type.DOUBLE, Expr.BinOp.Kind.max, expr1, expr2));
-              }
-              default -> {
-                throw new AssertionError("invalid method insn: " + opcode + " " + owner + "." + name + descriptor);
-              }
-            }
+            code.add(new Insn.Visit(mv -> mv.visitMethodInsn(opcode, owner, name, descriptor, isInterface)));
           }
-
           @Override
           public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
-            if (opcode != GETSTATIC) {
-              throw new AssertionError("invalid field insn: " + opcode +  " " + owner + "." + name + descriptor);
-            }
-            switch(descriptor) {
-              case "I", "L", "F", "D" -> {
-                stack.push(new Expr.Constant(Expr.Type.from(descriptor), owner, name));
-              }
-              default -> throw new AssertionError("invalid field insn: " + opcode +  " " + owner + "." + name + descriptor);
-            }
+            code.add(new Insn.Visit(mv -> mv.visitFieldInsn(opcode, owner, name, descriptor)));
           }
-
           @Override
           public void visitIntInsn(int opcode, int operand) {
-            throw new AssertionError("invalid int insn: " + opcode + " " + operand);
+            code.add(new Insn.Visit(mv -> mv.visitIntInsn(opcode, operand)));
           }
           @Override
           public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
-            throw new AssertionError("invalid indy insn: " + bootstrapMethodHandle + Arrays.toString(bootstrapMethodArguments));
+            code.add(new Insn.Visit(mv -> mv.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments)));
           }
           @Override
           public void visitIincInsn(int var, int increment) {
-            throw new AssertionError("invalid inc insn: " + var + " " + increment);
-          }
-          @Override
-          public void visitJumpInsn(int opcode, Label label) {
-            throw new AssertionError("invalid jump insn: " + opcode);
+            code.add(new Insn.Visit(mv -> mv.visitIincInsn(var, increment)));
           }
           @Override
           public void visitTypeInsn(int opcode, String type) {
-            throw new AssertionError("invalid type insn: " + opcode + " " + type);
+            code.add(new Insn.Visit(mv -> mv.visitTypeInsn(opcode, type)));
           }
           @Override
           public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
@@ -394,26 +1126,577 @@ class Impl {
         };
       }
     }, SKIP_DEBUG | SKIP_FRAMES);
-    return stack.pop();
-  }
-
+    if (code.isEmpty()) {
+      throw new IllegalStateException("no code for method " + className + "." + methodName + methodDescriptor);
+    }
+    if (callers.size() > 1 && code.size() > MAX_INLINING_SIZE) {
+      throw new IllegalStateException("method " + className + "." + methodName + methodDescriptor + " is too big to be inlined");
+    }
+
+    // local variables need to be re-numbered because long/double takes two slots
+    var parameterTypes = Type.getArgumentTypes(methodDescriptor);
+    var varIndexArray = new int[Type.getArgumentsAndReturnSizes(methodDescriptor) >> 2];
+    var slot = 0;
+    for(var i = 0; i < parameterTypes.length; i++) {
+      varIndexArray[slot] = i;
+      slot += parameterTypes[i].getSize();
+    }
+
+    // javac promotes byte/short values to int, so the int operations of a byte/short lambda
+    // are done on the byte/short lanes, an operation that may overflow the lanes is tracked
+    // until its result is narrowed back by a I2B/I2S, the int operations of a static method
+    // inlined by a byte/short lambda are also done on the lanes of the lambda
+    var intType = laneType;
+    var wrapped = Collections.newSetFromMap(new IdentityHashMap<Expr, Boolean>());
+
+    var stack = new ArrayDeque<Expr>();
+    var interpreter = new MethodVisitor(ASM9) {
+      private Expr.Type typeOf(int offset) {
+        var type = Expr.Type.of(offset);
+        return type == Expr.Type.INT? intType: type;
+      }
+
+      private Expr mayWrap(Expr expr) {
+        if (intType != Expr.Type.INT && expr.type() == intType) {
+          wrapped.add(expr);
+        }
+        return expr;
+      }
+
+      private Expr exact(Expr expr) {
+        // a captured int is checked when the kernel is called
+        if (exactCaptures != null && expr instanceof Expr.Load load && wrapped.contains(load)) {
+          exactCaptures.set(load.variable);
+          return expr;
+        }
+        if (wrapped.contains(expr)) {
+          throw new IllegalStateException("the value of " + expr + " may overflow the " + intType + " lanes, a cast is required");
+        }
+        return expr;
+      }
+
+      // a division by a literal or a static final constant is strength reduced
+      private Expr div(Expr.Type type, Expr expr1, Expr expr2) {
+        if (type != Expr.Type.FLOAT && type != Expr.Type.DOUBLE) {
+          var divisor = expr2 instanceof Expr.Literal literal? (Long) ((Number) literal.constant).longValue():
+              expr2 instanceof Expr.Constant constant? constantValue(lookup, constant): null;
+          if (divisor != null && Expr.DivConstant.isReducible(type, divisor)) {
+            return new Expr.DivConstant(type, expr1, divisor);
+          }
+        }
+        return new Expr.BinOp(type, Expr.BinOp.Kind.div, expr1, expr2);
+      }
+
+      // the bitwise operations commute with the narrowing, so the result only overflows the lanes if an operand does
+      private void bitwise(Expr.Type type, Expr.BinOp.Kind kind) {
+        var expr2 = stack.pop();
+        var expr1 = stack.pop();
+        var expr = new Expr.BinOp(type, kind, expr1, expr2);
+        if (wrapped.contains(expr1) || wrapped.contains(expr2)) {
+          wrapped.add(expr);
+        }
+        stack.push(expr);
+      }
+
+      private Expr intLiteral(int value) {
+        var literal = new Expr.Literal(intType, value);
+        if ((intType == Expr.Type.BYTE && value != (byte) value) || (intType == Expr.Type.SHORT && value != (short) value)) {
+          wrapped.add(literal);
+        }
+        return literal;
+      }
+
+      private void saturated(Expr.Type type, Expr.BinOp.Kind kind) {
+        if (type != intType) {
+          throw new IllegalStateException("invalid saturated operation " + kind + " on " + intType + " lanes");
+        }
+        var expr2 = stack.pop();
+        var expr1 = stack.pop();
+        stack.push(new Expr.BinOp(type, kind, exact(expr1), exact(expr2)));
+      }
+
+      @Override
+      public void visitVarInsn(int opcode, int var) {
+        stack.push(switch(opcode) {
+          case ILOAD, LLOAD, FLOAD, DLOAD -> {
+            var index = varIndexArray[var];
+            var type = Expr.Type.from(parameterTypes[index].getDescriptor());
+            // a captured int of a byte/short lambda is narrowed to the lanes,
+            // the parameters of a static method inlined are replaced by exact arguments
+            yield type != Expr.Type.INT? new Expr.Load(type, index):
+                exactCaptures == null? new Expr.Load(intType, index): mayWrap(new Expr.Load(intType, index));
+          }
+          default -> throw new AssertionError("invalid var opcode: " + opcode + " " + var);
+        });
+      }
+
+      @Override
+      public void visitLdcInsn(Object value) {
+        Expr expr;
+        if (value instanceof Integer integer) {
+          expr = intLiteral(integer);
+        } else if (value instanceof Long) {
+          expr = new Expr.Literal(Expr.Type.LONG, value);
+        } else if (value instanceof Float) {
+          expr = new Expr.Literal(Expr.Type.FLOAT, value);
+        } else if (value instanceof Double) {
+          expr = new Expr.Literal(Expr.Type.DOUBLE, value);
+        } else {
+          throw new AssertionError("invalid ldc opcode: " + value);
+        }
+        stack.push(expr);
+      }
+
+      @Override
+      public void visitInsn(int opcode) {
+        switch (opcode) {
+          case ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5 -> {
+            stack.push(intLiteral(opcode - ICONST_0));
+          }
+          case LCONST_0, LCONST_1 -> {
+            stack.push(new Expr.Literal(Expr.Type.LONG, (long) (opcode - LCONST_0)));
+          }
+          case FCONST_0, FCONST_1, FCONST_2 -> {
+            stack.push(new Expr.Literal(Expr.Type.FLOAT, (float) (opcode - FCONST_0)));
+          }
+          case DCONST_0, DCONST_1 -> {
+            stack.push(new Expr.Literal(Expr.Type.DOUBLE, (double) (opcode - DCONST_0)));
+          }
+          case INEG, LNEG, FNEG, DNEG -> {
+            var expr = stack.pop();
+            stack.push(mayWrap(new Expr.UnOp(typeOf(opcode - INEG), Expr.UnOp.Kind.neg, expr)));
+          }
+          case IADD, LADD, FADD, DADD -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(mayWrap(new Expr.BinOp(typeOf(opcode - IADD), Expr.BinOp.Kind.add, expr1, expr2)));
+          }
+          case ISUB, LSUB, FSUB, DSUB -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(mayWrap(new Expr.BinOp(typeOf(opcode - ISUB), Expr.BinOp.Kind.sub, expr1, expr2)));
+          }
+          case IMUL, LMUL, FMUL, DMUL -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(mayWrap(new Expr.BinOp(typeOf(opcode - IMUL), Expr.BinOp.Kind.mul, expr1, expr2)));
+          }
+          case IDIV, LDIV, FDIV, DDIV -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(mayWrap(div(typeOf(opcode - IDIV), exact(expr1), exact(expr2))));
+          }
+          case IREM, LREM -> {
+            // there is no remainder in the Vector API, x % y == x - (x / y) * y
+            var expr2 = exact(stack.pop());
+            var expr1 = exact(stack.pop());
+            var type = typeOf(opcode - IREM);
+            var quotient = new Expr.BinOp(type, Expr.BinOp.Kind.mul, div(type, expr1, expr2), expr2);
+            stack.push(new Expr.BinOp(type, Expr.BinOp.Kind.sub, expr1, quotient));
+          }
+          case IAND, LAND -> bitwise(typeOf(opcode - IAND), Expr.BinOp.Kind.and);
+          case IOR, LOR -> bitwise(typeOf(opcode - IOR), Expr.BinOp.Kind.or);
+          case IXOR, LXOR -> bitwise(typeOf(opcode - IXOR), Expr.BinOp.Kind.xor);
+          case IALOAD, FALOAD, BALOAD, SALOAD -> {
+            // the indexes and the values of a gather have the same number of lanes,
+            // so an int lambda only supports the tables of 32 bits values or of bytes/shorts widened to int
+            // and a byte/short lambda only supports the tables of bytes/shorts (with its indexes widened to int)
+            var index = stack.pop();
+            var array = stack.pop();
+            if (!(array instanceof Expr.Table table)) {
+              throw new IllegalStateException("invalid array load " + array);
+            }
+            if (index.type() == Expr.Type.INT) {
+              stack.push(new Expr.Gather(opcode == FALOAD? Expr.Type.FLOAT: Expr.Type.INT, table, index, null, false));
+              break;
+            }
+            if (index.type() != intType || intType == Expr.Type.INT) {
+              throw new IllegalStateException("the index of " + table.owner + "." + table.name + " should be an int not a " + index.type());
+            }
+            if (table.type != intType) {
+              throw new IllegalStateException("the table " + table.owner + "." + table.name + " can not be read on " + intType + " lanes, only a table of " + intType + "s");
+            }
+            // TABLE[x & 0xFF] only depends on the bits stored in the lanes, so it does not need to be exact
+            var unsignedIndex = index instanceof Expr.BinOp binOp && binOp.kind == Expr.BinOp.Kind.and
+                && binOp.right instanceof Expr.Literal literal
+                && (int) literal.constant >= 0 && (int) literal.constant <= laneMask(intType);
+            stack.push(new Expr.Gather(intType, table, unsignedIndex? index: exact(index), null, unsignedIndex));
+          }
+          case LALOAD, DALOAD -> throw new IllegalStateException("long/double tables are not supported");
+          case I2F, F2I, L2D, D2L -> {
+            // only the conversions between types of the same size keep the same number of lanes
+            var expr = stack.pop();
+            var from = switch (opcode) { case I2F -> Expr.Type.INT; case F2I -> Expr.Type.FLOAT; case L2D -> Expr.Type.LONG; default -> Expr.Type.DOUBLE; };
+            var to = switch (opcode) { case I2F -> Expr.Type.FLOAT; case F2I -> Expr.Type.INT; case L2D -> Expr.Type.DOUBLE; default -> Expr.Type.LONG; };
+            if (expr.type() != from) {
+              throw new IllegalStateException("invalid conversion from " + expr.type() + " to " + to);
+            }
+            stack.push(new Expr.Conversion(to, expr));
+          }
+          case I2B -> {
+            if (intType != Expr.Type.BYTE) {
+              throw new IllegalStateException("invalid i2b on " + intType + " lanes");
+            }
+            wrapped.remove(stack.peek());
+          }
+          case I2S -> {
+            switch (intType) {
+              case SHORT -> wrapped.remove(stack.peek());
+              case BYTE -> exact(stack.peek());
+              default -> throw new IllegalStateException("invalid i2s on " + intType + " lanes");
+            }
+          }
+          case LCMP, FCMPL, FCMPG, DCMPL, DCMPG -> {
+            // the result is only used by the next conditional jump, it stores the value for NaN
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            var nan = opcode == FCMPL || opcode == DCMPL? -1: opcode == LCMP? 0: 1;
+            stack.push(new Expr.Cmp(expr1.type(), nan, expr1, expr2));
+          }
+          default -> {
+            throw new AssertionError("invalid insn: " + opcode);
+          }
+        }
+      }
+
+      @Override
+      public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        switch(owner + "." + name + descriptor) {
+          case "java/lang/Math.min(II)I" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(intType, Expr.BinOp.Kind.min, exact(expr1), exact(expr2)));
+          }
+          case "java/lang/Math.min(JJ)J" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.LONG, Expr.BinOp.Kind.min, expr1, expr2));
+          }
+          case "java/lang/Math.min(FF)F" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.FLOAT, Expr.BinOp.Kind.min, expr1, expr2));
+          }
+          case "java/lang/Math.min(DD)D" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.DOUBLE, Expr.BinOp.Kind.min, expr1, expr2));
+          }
+          case "java/lang/Math.max(II)I" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(intType, Expr.BinOp.Kind.max, exact(expr1), exact(expr2)));
+          }
+          case "java/lang/Math.max(JJ)J" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.LONG, Expr.BinOp.Kind.max, expr1, expr2));
+          }
+          case "java/lang/Math.max(FF)F" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.FLOAT, Expr.BinOp.Kind.max, expr1, expr2));
+          }
+          case "java/lang/Math.max(DD)D" -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            stack.push(new Expr.BinOp(Expr.Type.DOUBLE, Expr.BinOp.Kind.max, expr1, expr2));
+          }
+          case "com/github/forax/vectorhandle/VectorHandle.saturatedAdd(BB)B" -> saturated(Expr.Type.BYTE, Expr.BinOp.Kind.saturatedAdd);
+          case "com/github/forax/vectorhandle/VectorHandle.saturatedSub(BB)B" -> saturated(Expr.Type.BYTE, Expr.BinOp.Kind.saturatedSub);
+          case "com/github/forax/vectorhandle/VectorHandle.unsignedSaturatedAdd(BB)B" -> saturated(Expr.Type.BYTE, Expr.BinOp.Kind.unsignedSaturatedAdd);
+          case "com/github/forax/vectorhandle/VectorHandle.unsignedSaturatedSub(BB)B" -> saturated(Expr.Type.BYTE, Expr.BinOp.Kind.unsignedSaturatedSub);
+          case "com/github/forax/vectorhandle/VectorHandle.saturatedAdd(SS)S" -> saturated(Expr.Type.SHORT, Expr.BinOp.Kind.saturatedAdd);
+          case "com/github/forax/vectorhandle/VectorHandle.saturatedSub(SS)S" -> saturated(Expr.Type.SHORT, Expr.BinOp.Kind.saturatedSub);
+          case "com/github/forax/vectorhandle/VectorHandle.unsignedSaturatedAdd(SS)S" -> saturated(Expr.Type.SHORT, Expr.BinOp.Kind.unsignedSaturatedAdd);
+          case "com/github/forax/vectorhandle/VectorHandle.unsignedSaturatedSub(SS)S" -> saturated(Expr.Type.SHORT, Expr.BinOp.Kind.unsignedSaturatedSub);
+          default -> {
+            if (opcode != INVOKESTATIC) {
+              throw new AssertionError("invalid method insn: " + opcode + " " + owner + "." + name + descriptor);
+            }
+            inline(owner, name, descriptor);
+          }
+        }
+      }
+
+      // the expression of a static method is inlined, its parameters are replaced by the arguments
+      private void inline(String owner, String name, String descriptor) {
+        var callee = owner + "." + name + descriptor;
+        if (callers.contains(callee)) {
+          throw new IllegalStateException("recursive call to " + callee + " can not be inlined");
+        }
+        if (callers.size() == MAX_INLINING_DEPTH) {
+          throw new IllegalStateException("too many nested calls to inline " + callee);
+        }
+        var calleeLaneType = laneType(descriptor);
+        if (calleeLaneType != Expr.Type.INT && calleeLaneType != intType) {
+          throw new IllegalStateException("can not inline " + callee + " on " + intType + " lanes");
+        }
+        checkAccess(lookup, owner);
+        var arguments = new Expr[Type.getArgumentTypes(descriptor).length];
+        for(var i = arguments.length; --i >= 0;) {
+          arguments[i] = exact(stack.pop());
+        }
+        var calleeCallers = new ArrayList<>(callers);
+        calleeCallers.add(callee);
+        var expr = walk(lookup, owner, name, descriptor, intType, calleeCallers, null);
+        var result = substitute(expr, load -> arguments[load.variable]);
+        stack.push(Type.getReturnType(descriptor) == Type.INT_TYPE? mayWrap(result): result);
+      }
+
+      @Override
+      public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        if (opcode != GETSTATIC) {
+          throw new AssertionError("invalid field insn: " + opcode +  " " + owner + "." + name + descriptor);
+        }
+        // the field is read by the generated code, a nestmate of the lookup class
+        checkFieldAccess(lookup, owner, name, descriptor);
+        switch(descriptor) {
+          case "B", "S", "I" -> {
+            var constant = new Expr.Constant(intType, owner, name, descriptor);
+            stack.push(descriptor.equals("B") || descriptor.equals(intType.descriptor)? constant: mayWrap(constant));
+          }
+          case "J", "F", "D" -> {
+            stack.push(new Expr.Constant(Expr.Type.from(descriptor), owner, name, descriptor));
+          }
+          case "[I", "[J", "[F", "[D", "[B", "[S" -> {
+            stack.push(new Expr.Table(Expr.Type.from(descriptor.substring(1)), owner, name, descriptor));
+          }
+          default -> throw new AssertionError("invalid field insn: " + opcode +  " " + owner + "." + name + descriptor);
+        }
+      }
+
+      @Override
+      public void visitIntInsn(int opcode, int operand) {
+        switch (opcode) {
+          case BIPUSH, SIPUSH -> stack.push(intLiteral(operand));
+          default -> throw new AssertionError("invalid int insn: " + opcode + " " + operand);
+        }
+      }
+      @Override
+      public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+        throw new AssertionError("invalid indy insn: " + bootstrapMethodHandle + Arrays.toString(bootstrapMethodArguments));
+      }
+      @Override
+      public void visitIincInsn(int var, int increment) {
+        throw new AssertionError("invalid inc insn: " + var + " " + increment);
+      }
+
+      // pop the operands of a conditional jump and returns the condition of the jump
+      Expr test(int opcode) {
+        return switch (opcode) {
+          case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE -> {
+            var kind = Expr.Compare.Kind.of(opcode - IFEQ);
+            var expr = stack.pop();
+            if (isMask(expr) && (kind == Expr.Compare.Kind.EQ || kind == Expr.Compare.Kind.NE)) {
+              // the result of a static method returning a boolean
+              yield kind == Expr.Compare.Kind.NE? expr: not(expr);
+            }
+            if (expr instanceof Expr.Cmp cmp) {
+              // a comparison of floating point values is false for NaN,
+              // so if the jump is taken for NaN, the condition is the negation of the complement
+              if (kind.test(cmp.nan)) {
+                yield new Expr.MaskNot(cmp.type, new Expr.Compare(cmp.type, kind.complement(), cmp.left, cmp.right));
+              }
+              yield new Expr.Compare(cmp.type, kind, cmp.left, cmp.right);
+            }
+            if (expr.type() != intType) {
+              throw new AssertionError("invalid jump insn: " + opcode + " on " + expr.type());
+            }
+            yield new Expr.Compare(intType, kind, exact(expr), new Expr.Literal(intType, 0));
+          }
+          case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> {
+            var expr2 = stack.pop();
+            var expr1 = stack.pop();
+            yield new Expr.Compare(intType, Expr.Compare.Kind.of(opcode - IF_ICMPEQ), exact(expr1), exact(expr2));
+          }
+          default -> throw new AssertionError("invalid jump insn: " + opcode);
+        };
+      }
+    };
+
+    // interpret each path of the lambda method, a conditional jump forks the current path
+    var paths = new ArrayList<Path>();
+    var branches = new ArrayDeque<Branch>();
+    branches.push(new Branch(0, null, List.of()));
+    while (!branches.isEmpty()) {
+      var branch = branches.pop();
+      var condition = branch.condition;
+      stack.clear();
+      stack.addAll(branch.stack);
+      for(var index = branch.index;; index++) {
+        var insn = code.get(index);
+        if (insn instanceof Insn.Visit visit) {
+          visit.consumer.accept(interpreter);
+          continue;
+        }
+        if (insn instanceof Insn.Jump jump) {
+          int target = labels.get(jump.label);
+          if (target <= index) {
+            throw new IllegalStateException("loops are not supported");
+          }
+          if (jump.opcode == GOTO) {
+            index = target - 1;
+            continue;
+          }
+          var test = interpreter.test(jump.opcode);
+          if (paths.size() + branches.size() == MAX_PATHS) {
+            throw new IllegalStateException("too many paths in lambda method " + methodName + methodDescriptor);
+          }
+          branches.push(new Branch(target, and(condition, test), List.copyOf(stack)));
+          condition = and(condition, not(test));
+          continue;
+        }
+        paths.add(new Path(condition, stack.pop()));
+        break;
+      }
+    }
+
+    if (Type.getReturnType(methodDescriptor) == Type.BOOLEAN_TYPE) {
+      // a predicate is true on the lanes of the paths returning true
+      var maskType = parameterTypes.length == 0? intType: Expr.Type.from(parameterTypes[0].getDescriptor());
+      if (maskType == Expr.Type.INT) {
+        maskType = intType;
+      }
+      Expr mask = new Expr.MaskLiteral(maskType, false);
+      for(var path: paths) {
+        var value = path.value;
+        if (isMask(value)) {  // the result of a static method returning a boolean
+          mask = or(mask, path.condition == null? value: and(path.condition, value));
+          continue;
+        }
+        if (!(value instanceof Expr.Literal literal)) {
+          throw new AssertionError("invalid boolean value " + value);
+        }
+        if (literal.constant.equals(1)) {
+          mask = or(mask, path.condition == null? new Expr.MaskLiteral(maskType, true): path.condition);
+        }
+      }
+      return mask;
+    }
+
+    // the values of the paths are blended, the paths are mutually exclusive
+    var expr = paths.get(paths.size() - 1).value;
+    for(var i = paths.size() - 2; i >= 0; i--) {
+      var path = paths.get(i);
+      expr = new Expr.Blend(expr.type(), path.condition, path.value, expr);
+    }
+    return expr;
+  }
+
+  private static boolean isMask(Expr expr) {
+    return expr instanceof Expr.Compare || expr instanceof Expr.MaskLiteral || expr instanceof Expr.MaskNot || expr instanceof Expr.MaskOp;
+  }
+
+  // the value of a static final constant or null if the field is not final
+  private static Long constantValue(Lookup lookup, Expr.Constant constant) {
+    var ownerClass = checkAccess(lookup, constant.owner);
+    Field field;
+    try {
+      field = ownerClass.getDeclaredField(constant.name);
+    } catch (NoSuchFieldException e) {
+      return null;  // an inherited field
+    }
+    if (!Modifier.isFinal(field.getModifiers())) {
+      return null;
+    }
+    try {
+      return ((Number) lookup.findStaticGetter(ownerClass, constant.name, field.getType()).invoke()).longValue();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static Class<?> checkAccess(Lookup lookup, String className) {
+    try {
+      return lookup.accessClass(Class.forName(className.replace('/', '.'), false, lookup.lookupClass().getClassLoader()));
+    } catch (ClassNotFoundException | IllegalAccessException e) {
+      throw new IllegalStateException("class " + className + " is not accessible from " + lookup, e);
+    }
+  }
+
+  private static void checkFieldAccess(Lookup lookup, String owner, String name, String descriptor) {
+    var ownerClass = checkAccess(lookup, owner);
+    try {
+      lookup.findStaticGetter(ownerClass, name, MethodType.fromMethodDescriptorString("()" + descriptor, ownerClass.getClassLoader()).returnType());
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      throw new IllegalStateException("field " + owner + "." + name + " is not accessible from " + lookup, e);
+    }
+  }
+
+  private static Expr and(Expr mask1, Expr mask2) {
+    if (mask1 == null) {
+      return mask2;
+    }
+    return new Expr.MaskOp(mask1.type(), Expr.MaskOp.Kind.and, mask1, mask2);
+  }
+
+  private static Expr or(Expr mask1, Expr mask2) {
+    if (mask1 instanceof Expr.MaskLiteral literal && !literal.value) {
+      return mask2;
+    }
+    return new Expr.MaskOp(mask1.type(), Expr.MaskOp.Kind.or, mask1, mask2);
+  }
+
+  private static Expr not(Expr mask) {
+    if (mask instanceof Expr.MaskNot maskNot) {
+      return maskNot.mask;
+    }
+    if (mask instanceof Expr.MaskLiteral literal) {
+      return new Expr.MaskLiteral(literal.type, !literal.value);
+    }
+    // the complement of a comparison on floating point values is not true for NaN
+    if (mask instanceof Expr.Compare compare && compare.type != Expr.Type.FLOAT && compare.type != Expr.Type.DOUBLE) {
+      return new Expr.Compare(compare.type, compare.kind.complement(), compare.left, compare.right);
+    }
+    return new Expr.MaskNot(mask.type(), mask);
+  }
+
+  private static Expr.Type laneType(String methodDescriptor) {
+    var types = new ArrayList<>(List.of(Type.getArgumentTypes(methodDescriptor)));
+    types.add(Type.getReturnType(methodDescriptor));
+    var hasByte = types.contains(Type.BYTE_TYPE);
+    var hasShort = types.contains(Type.SHORT_TYPE);
+    if (hasByte && hasShort) {
+      throw new IllegalStateException("can not mix byte and short in " + methodDescriptor);
+    }
+    return hasByte? Expr.Type.BYTE: hasShort? Expr.Type.SHORT: Expr.Type.INT;
+  }
+
   private /*sealed*/ interface Expr {
     enum Type {
       INT(IntVector.class, int.class),
       LONG(LongVector.class, long.class),
       FLOAT(FloatVector.class, float.class),
-      DOUBLE(DoubleVector.class, double.class);
+      DOUBLE(DoubleVector.class, double.class),
+      BYTE(ByteVector.class, byte.class),
+      SHORT(ShortVector.class, short.class);
 
       private final Class<?> vectorClass;
+      private final Class<?> elementClass;
       private final String vectorName;
       private final String descriptor;
 
       Type(Class<?> vectorClass, Class<?> elementClass) {
         this.vectorClass = vectorClass;
+        this.elementClass = elementClass;
         vectorName = nameFrom(vectorClass);
         descriptor = elementClass.descriptorString();
       }
 
+      public VectorSpecies<?> species() {
+        return switch (this) {
+          case INT -> INT_SPECIES;
+          case LONG -> LONG_SPECIES;
+          case FLOAT -> FLOAT_SPECIES;
+          case DOUBLE -> DOUBLE_SPECIES;
+          case BYTE -> BYTE_SPECIES;
+          case SHORT -> SHORT_SPECIES;
+        };
+      }
+
       private static final Type[] VALUES = values();
 
       public static Type of(int offset) {
@@ -426,6 +1709,8 @@ class Impl {
           case "J" -> Type.LONG;
           case "F" -> Type.FLOAT;
           case "D" -> Type.DOUBLE;
+          case "B" -> Type.BYTE;
+          case "S" -> Type.SHORT;
           default -> throw new IllegalStateException("invalid descriptor " + descriptor);
         };
       }
@@ -435,15 +1720,67 @@ class Impl {
       }
     }
 
+    Type type();
+
     record Literal(Type type, Object constant) implements Expr {}
-    record Constant(Type type, String owner, String name) implements Expr {}
+    record Constant(Type type, String owner, String name, String descriptor) implements Expr {}
     record Load(Type type, int variable) implements Expr {}
     record UnOp(Type type, Kind kind, Expr expr) implements Expr {
       enum Kind { neg; }
     }
     record BinOp(Type type, Kind kind, Expr left, Expr right) implements Expr {
-      enum Kind { add, sub, mul, div, min, max; }
+      enum Kind { add, sub, mul, div, min, max, and, or, xor, saturatedAdd, saturatedSub, unsignedSaturatedAdd, unsignedSaturatedSub; }
+    }
+    record Conversion(Type type, Expr expr) implements Expr {}
+
+    // there is no vectorized integer division on most CPUs, so a division by a constant
+    // is replaced by shifts for a power of two or by a multiplication for the ints
+    record DivConstant(Type type, Expr expr, long divisor) implements Expr {
+      static boolean isReducible(Type type, long divisor) {
+        return divisor != 0 && (Long.bitCount(Math.abs(divisor)) == 1 || type == Type.INT);
+      }
+    }
+
+    // the type of a table is the type of its elements
+    record Table(Type type, String owner, String name, String descriptor) implements Expr {}
+    // only the lanes of the mask are read, all the lanes if the mask is null,
+    // a byte/short index is widened to int, then masked by 0xFF/0xFFFF if unsignedIndex
+    record Gather(Type type, Table table, Expr index, Expr mask, boolean unsignedIndex) implements Expr {}
+
+    // the type of a mask is the type of the compared values
+    record Compare(Type type, Kind kind, Expr left, Expr right) implements Expr {
+      enum Kind {
+        EQ, NE, LT, GE, GT, LE;  // same order as the jump opcodes
+
+        private static final Kind[] VALUES = values();
+
+        public static Kind of(int offset) {
+          return VALUES[offset];
+        }
+
+        public Kind complement() {
+          return VALUES[ordinal() ^ 1];
+        }
+
+        public boolean test(int value) {
+          return switch (this) {
+            case EQ -> value == 0;
+            case NE -> value != 0;
+            case LT -> value < 0;
+            case GE -> value >= 0;
+            case GT -> value > 0;
+            case LE -> value <= 0;
+          };
+        }
+      }
+    }
+    record Cmp(Type type, int nan, Expr left, Expr right) implements Expr {}
+    record MaskLiteral(Type type, boolean value) implements Expr {}
+    record MaskNot(Type type, Expr mask) implements Expr {}
+    record MaskOp(Type type, Kind kind, Expr left, Expr right) implements Expr {
+      enum Kind { and, or; }
     }
+    record Blend(Type type, Expr mask, Expr ifTrue, Expr ifFalse) implements Expr {}
   }
 
   private static String nameFrom(Class<?> clazz) {
@@ -453,16 +1790,41 @@ class Impl {
   private static final String VECTOR_SPECIES_DESC = VectorSpecies.class.descriptorString();
   private static final String VECTOR_DESC = Vector.class.descriptorString();
 
-  private static byte[] gen(Class<?> lookupClass, Expr expr, Expr.Type returnType, Expr.Type[] parameterTypes) {
+  // if storeType is not null, the method takes the destination arrays and the offset as last parameters
+  // and stores the result of each expression in its destination array instead of chaining them
+  private static byte[] gen(Class<?> lookupClass, List<Expr> exprs, Class<?> returnClass, Expr.Type[] parameterTypes, Expr.Type storeType) {
     var className = nameFrom(lookupClass) + "$Template";
     var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
     writer.visit(V11,ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object", null);
     var desc = Arrays.stream(parameterTypes)
         .map(type -> type.vectorClass.descriptorString())
-        .collect(joining("", "(", ")" + returnType.vectorClass.descriptorString()));
+        .collect(joining("", "(", storeType == null? ")" + returnClass.descriptorString(): "[[" + storeType.descriptor + "I)V"));
     var mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "lambda", desc, null, null);
     mv.visitCode();
-    gen(expr, mv);
+    var slot = parameterTypes.length;
+    if (storeType != null) {
+      var destsSlot = slot;
+      var offsetSlot = slot + 1;
+      for(var i = 0; i < exprs.size(); i++) {
+        genShared(exprs.get(i), mv, offsetSlot + 1);
+        mv.visitVarInsn(ALOAD, destsSlot);
+        mv.visitLdcInsn(i);
+        mv.visitInsn(AALOAD);
+        mv.visitVarInsn(ILOAD, offsetSlot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, storeType.vectorName, "intoArray", "([" + storeType.descriptor + "I)V", false);
+      }
+      mv.visitInsn(RETURN);
+      mv.visitMaxs(-1, -1);
+      mv.visitEnd();
+      writer.visitEnd();
+      return writer.toByteArray();
+    }
+    genShared(exprs.get(0), mv, slot + 1);
+    for(var expr: exprs.subList(1, exprs.size())) {
+      // the result of the previous expression is the parameter of the next one (see relocate)
+      mv.visitVarInsn(ASTORE, slot);
+      genShared(expr, mv, slot + 1);
+    }
     mv.visitInsn(ARETURN);
     mv.visitMaxs(-1, -1);
     mv.visitEnd();
@@ -470,28 +1832,675 @@ class Impl {
     return writer.toByteArray();
   }
 
-  private static void gen(Expr expr, MethodVisitor mv) {
+  // an expression is a DAG, the argument of a static method inlined or the mask of a conditional
+  // can be used several times, those expressions are computed once and stored in the local variables
+  // starting at slot, the other local variables are used by gen()
+  private static void genShared(Expr expr, MethodVisitor mv, int slot) {
+    var counts = new IdentityHashMap<Expr, Integer>();
+    var postOrder = new ArrayList<Expr>();
+    countUses(expr, counts, postOrder);
+    var shared = postOrder.stream().filter(e -> counts.get(e) > 1).toList();
+
+    var loads = new IdentityHashMap<Expr, Expr>();
+    var freeSlot = slot + shared.size();
+    for(var i = 0; i < shared.size(); i++) {
+      var sharedExpr = shared.get(i);
+      gen(mapChildren(sharedExpr, child -> replaceShared(child, loads)), mv, freeSlot);
+      mv.visitVarInsn(ASTORE, slot + i);
+      loads.put(sharedExpr, new Expr.Load(sharedExpr.type(), slot + i));
+    }
+    gen(replaceShared(expr, loads), mv, freeSlot);
+  }
+
+  // the expressions with children are collected in post order, so an expression is after its children
+  private static void countUses(Expr expr, IdentityHashMap<Expr, Integer> counts, List<Expr> postOrder) {
+    if (counts.merge(expr, 1, Integer::sum) != 1) {
+      return;
+    }
+    var children = children(expr);
+    for(var child: children) {
+      countUses(child, counts, postOrder);
+    }
+    if (!children.isEmpty()) {
+      postOrder.add(expr);
+    }
+  }
+
+  private static Expr replaceShared(Expr expr, IdentityHashMap<Expr, Expr> loads) {
+    var load = loads.get(expr);
+    if (load != null) {
+      return load;
+    }
+    return mapChildren(expr, child -> replaceShared(child, loads));
+  }
+
+  // the name of the opcodes, like the Textifier of asm-util which is not a dependency
+  private static final String[] OPCODE_NAMES = opcodeNames();
+
+  private static String[] opcodeNames() {
+    var names = new String[256];
+    for(var field: Opcodes.class.getFields()) {
+      var name = field.getName();
+      if (field.getType() != int.class || name.startsWith("ACC_") || name.startsWith("T_") || name.startsWith("H_")
+          || name.startsWith("F_") || name.startsWith("V") || name.startsWith("ASM") || name.startsWith("SOURCE_")) {
+        continue;
+      }
+      try {
+        names[field.getInt(null)] = name;
+      } catch (IllegalAccessException e) {
+        throw new AssertionError(e);
+      }
+    }
+    return names;
+  }
+
+  // one instruction by line
+  private static void textify(byte[] classData, StringBuilder builder) {
+    var reader = new ClassReader(classData);
+    reader.accept(new ClassVisitor(ASM9) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        builder.append("  ").append(name).append(descriptor).append('\n');
+        var labels = new IdentityHashMap<Label, Integer>();
+        return new MethodVisitor(ASM9) {
+          private StringBuilder insn(int opcode) {
+            return builder.append("    ").append(OPCODE_NAMES[opcode]);
+          }
+          private String label(Label label) {
+            return "L" + labels.computeIfAbsent(label, __ -> labels.size());
+          }
+          @Override
+          public void visitInsn(int opcode) {
+            insn(opcode).append('\n');
+          }
+          @Override
+          public void visitIntInsn(int opcode, int operand) {
+            insn(opcode).append(' ').append(operand).append('\n');
+          }
+          @Override
+          public void visitVarInsn(int opcode, int var) {
+            insn(opcode).append(' ').append(var).append('\n');
+          }
+          @Override
+          public void visitTypeInsn(int opcode, String type) {
+            insn(opcode).append(' ').append(type).append('\n');
+          }
+          @Override
+          public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            insn(opcode).append(' ').append(owner).append('.').append(name).append(" : ").append(descriptor).append('\n');
+          }
+          @Override
+          public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            insn(opcode).append(' ').append(owner).append('.').append(name).append(descriptor).append('\n');
+          }
+          @Override
+          public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+            insn(Opcodes.INVOKEDYNAMIC).append(' ').append(name).append(descriptor)
+                .append(" bsm ").append(bootstrapMethodHandle.getOwner()).append('.').append(bootstrapMethodHandle.getName())
+                .append(' ').append(Arrays.toString(bootstrapMethodArguments)).append('\n');
+          }
+          @Override
+          public void visitJumpInsn(int opcode, Label label) {
+            insn(opcode).append(' ').append(label(label)).append('\n');
+          }
+          @Override
+          public void visitLabel(Label label) {
+            builder.append("   ").append(label(label)).append('\n');
+          }
+          @Override
+          public void visitLdcInsn(Object value) {
+            insn(Opcodes.LDC).append(' ').append(value).append('\n');
+          }
+          @Override
+          public void visitIincInsn(int var, int increment) {
+            insn(Opcodes.IINC).append(' ').append(var).append(' ').append(increment).append('\n');
+          }
+        };
+      }
+    }, 0);
+  }
+
+  // the lanes of an arm of a conditional (or of the right side of a &&) that are not selected
+  // are computed anyway, so an operation that may trap (a division, a table read) has to ignore those lanes,
+  // mask is the mask of the selected lanes or null if all the lanes are selected
+  private static Expr guard(Expr expr, Expr mask) {
+    return guard(expr, mask, new IdentityHashMap<>());
+  }
+
+  // an expression used several times with the same mask is guarded once (see genShared)
+  private static Expr guard(Expr expr, Expr mask, IdentityHashMap<Expr, IdentityHashMap<Expr, Expr>> memo) {
+    var guards = memo.computeIfAbsent(mask, __ -> new IdentityHashMap<>());
+    var result = guards.get(expr);
+    if (result == null) {
+      result = guardNode(expr, mask, memo);
+      guards.put(expr, result);
+    }
+    return result;
+  }
+
+  private static Expr guardNode(Expr expr, Expr mask, IdentityHashMap<Expr, IdentityHashMap<Expr, Expr>> memo) {
+    if (expr instanceof Expr.Blend blend) {
+      var condition = guard(blend.mask, mask, memo);
+      return new Expr.Blend(blend.type, condition,
+          guard(blend.ifTrue, and(mask, condition), memo),
+          guard(blend.ifFalse, and(mask, not(condition)), memo));
+    }
+    if (expr instanceof Expr.MaskOp maskOp && maskOp.kind == Expr.MaskOp.Kind.and) {
+      var left = guard(maskOp.left, mask, memo);
+      return new Expr.MaskOp(maskOp.type, maskOp.kind, left, guard(maskOp.right, and(mask, left), memo));
+    }
+    if (mask != null && expr instanceof Expr.BinOp binOp && binOp.kind == Expr.BinOp.Kind.div && mayDivideByZero(binOp)) {
+      // the divisor of the lanes not selected is 1
+      var one = new Expr.Literal(binOp.type, binOp.type == Expr.Type.LONG? (Object) 1L: (Object) 1);
+      return new Expr.BinOp(binOp.type, binOp.kind, guard(binOp.left, mask, memo),
+          new Expr.Blend(binOp.type, mask, guard(binOp.right, mask, memo), one));
+    }
+    if (mask != null && expr instanceof Expr.Gather gather) {
+      // only the lanes selected are read from the table
+      return new Expr.Gather(gather.type, gather.table, guard(gather.index, mask, memo), mask, gather.unsignedIndex);
+    }
+    return mapChildren(expr, child -> guard(child, mask, memo));
+  }
+
+  private static boolean mayDivideByZero(Expr.BinOp binOp) {
+    if (binOp.type == Expr.Type.FLOAT || binOp.type == Expr.Type.DOUBLE) {
+      return false;
+    }
+    return !(binOp.right instanceof Expr.Literal literal) || ((Number) literal.constant).longValue() == 0;
+  }
+
+  // rebuild the expression with the children replaced by the mapping,
+  // the expression is returned as is if the mapping returns the same children
+  private static Expr mapChildren(Expr expr, UnaryOperator<Expr> mapping) {
+    var result = rebuild(expr, mapping);
+    var children = children(expr);
+    var newChildren = children(result);
+    for(var i = 0; i < children.size(); i++) {
+      if (children.get(i) != newChildren.get(i)) {
+        return result;
+      }
+    }
+    return expr;
+  }
+
+  private static Expr rebuild(Expr expr, UnaryOperator<Expr> mapping) {
+    if (expr instanceof Expr.UnOp unOp) {
+      return new Expr.UnOp(unOp.type, unOp.kind, mapping.apply(unOp.expr));
+    }
+    if (expr instanceof Expr.BinOp binOp) {
+      return new Expr.BinOp(binOp.type, binOp.kind, mapping.apply(binOp.left), mapping.apply(binOp.right));
+    }
+    if (expr instanceof Expr.Conversion conversion) {
+      return new Expr.Conversion(conversion.type, mapping.apply(conversion.expr));
+    }
+    if (expr instanceof Expr.DivConstant divConstant) {
+      return new Expr.DivConstant(divConstant.type, mapping.apply(divConstant.expr), divConstant.divisor);
+    }
+    if (expr instanceof Expr.Gather gather) {
+      return new Expr.Gather(gather.type, gather.table, mapping.apply(gather.index), gather.mask == null? null: mapping.apply(gather.mask), gather.unsignedIndex);
+    }
+    if (expr instanceof Expr.Compare compare) {
+      return new Expr.Compare(compare.type, compare.kind, mapping.apply(compare.left), mapping.apply(compare.right));
+    }
+    if (expr instanceof Expr.MaskNot maskNot) {
+      return new Expr.MaskNot(maskNot.type, mapping.apply(maskNot.mask));
+    }
+    if (expr instanceof Expr.MaskOp maskOp) {
+      return new Expr.MaskOp(maskOp.type, maskOp.kind, mapping.apply(maskOp.left), mapping.apply(maskOp.right));
+    }
+    if (expr instanceof Expr.Blend blend) {
+      return new Expr.Blend(blend.type, mapping.apply(blend.mask), mapping.apply(blend.ifTrue), mapping.apply(blend.ifFalse));
+    }
+    return expr;
+  }
+
+  // replace the load of each parameter by a load of the corresponding local variable
+  private static Expr relocate(Expr expr, int[] variables) {
+    return substitute(expr, load -> new Expr.Load(load.type, variables[load.variable]));
+  }
+
+  // the children of an expression
+  private static List<Expr> children(Expr expr) {
+    if (expr instanceof Expr.UnOp unOp) {
+      return List.of(unOp.expr);
+    }
+    if (expr instanceof Expr.BinOp binOp) {
+      return List.of(binOp.left, binOp.right);
+    }
+    if (expr instanceof Expr.Conversion conversion) {
+      return List.of(conversion.expr);
+    }
+    if (expr instanceof Expr.DivConstant divConstant) {
+      return List.of(divConstant.expr);
+    }
+    if (expr instanceof Expr.Gather gather) {
+      return gather.mask == null? List.of(gather.index): List.of(gather.index, gather.mask);
+    }
+    if (expr instanceof Expr.Compare compare) {
+      return List.of(compare.left, compare.right);
+    }
+    if (expr instanceof Expr.MaskNot maskNot) {
+      return List.of(maskNot.mask);
+    }
+    if (expr instanceof Expr.MaskOp maskOp) {
+      return List.of(maskOp.left, maskOp.right);
+    }
+    if (expr instanceof Expr.Blend blend) {
+      return List.of(blend.mask, blend.ifTrue, blend.ifFalse);
+    }
+    return List.of();
+  }
+
+  // number of distinct nodes of an expression
+  private static int size(Expr expr) {
+    var counts = new IdentityHashMap<Expr, Integer>();
+    countUses(expr, counts, new ArrayList<>());
+    return counts.size();
+  }
+
+  // an indented tree of the expression, one node by line,
+  // the children of an expression already dumped are not dumped again
+  private static void dump(Expr expr, int depth, StringBuilder builder) {
+    dump(expr, depth, builder, Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  private static void dump(Expr expr, int depth, StringBuilder builder, Set<Expr> visited) {
+    builder.append("  ".repeat(depth));
+    if (expr instanceof Expr.UnOp unOp) {
+      builder.append("UnOp ").append(unOp.kind);
+    } else if (expr instanceof Expr.BinOp binOp) {
+      builder.append("BinOp ").append(binOp.kind);
+    } else if (expr instanceof Expr.Conversion) {
+      builder.append("Conversion");
+    } else if (expr instanceof Expr.DivConstant divConstant) {
+      builder.append("DivConstant ").append(divConstant.divisor);
+    } else if (expr instanceof Expr.Gather gather) {
+      builder.append("Gather ").append(gather.table.owner).append('.').append(gather.table.name);
+    } else if (expr instanceof Expr.Compare compare) {
+      builder.append("Compare ").append(compare.kind);
+    } else if (expr instanceof Expr.MaskNot) {
+      builder.append("MaskNot");
+    } else if (expr instanceof Expr.MaskOp maskOp) {
+      builder.append("MaskOp ").append(maskOp.kind);
+    } else if (expr instanceof Expr.Blend) {
+      builder.append("Blend");
+    } else {
+      builder.append(expr).append('\n');
+      return;
+    }
+    builder.append(' ').append(expr.type());
+    if (!visited.add(expr)) {
+      builder.append(" (shared)\n");
+      return;
+    }
+    builder.append('\n');
+    for(var child: children(expr)) {
+      dump(child, depth + 1, builder, visited);
+    }
+  }
+
+  // replace the load of each parameter by another expression,
+  // an expression used several times is substituted once so it stays shared
+  private static Expr substitute(Expr expr, Function<Expr.Load, Expr> mapping) {
+    return substitute(expr, mapping, new IdentityHashMap<>());
+  }
+
+  private static Expr substitute(Expr expr, Function<Expr.Load, Expr> mapping, IdentityHashMap<Expr, Expr> memo) {
+    if (expr instanceof Expr.Load load) {
+      return mapping.apply(load);
+    }
+    var result = memo.get(expr);
+    if (result == null) {
+      result = mapChildren(expr, child -> substitute(child, mapping, memo));
+      memo.put(expr, result);
+    }
+    return result;
+  }
+
+  private static void gen(Expr expr, MethodVisitor mv, int slot) {
     if (expr instanceof Expr.Literal literal) {
       mv.visitFieldInsn(GETSTATIC, literal.type.vectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
       mv.visitLdcInsn(literal.constant);
+      if (literal.constant instanceof Integer) {
+        genNarrow(literal.type, "I", mv);
+      }
       mv.visitMethodInsn(INVOKESTATIC, literal.type.vectorName, "broadcast", '(' + VECTOR_SPECIES_DESC + literal.type.descriptor + ')' + literal.type.vectorClass.descriptorString(), false);
     } else if (expr instanceof Expr.Constant constant) {
       mv.visitFieldInsn(GETSTATIC, constant.type.vectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
-      mv.visitFieldInsn(GETSTATIC, constant.owner, constant.name, constant.type.descriptor);
+      mv.visitFieldInsn(GETSTATIC, constant.owner, constant.name, constant.descriptor);
+      genNarrow(constant.type, constant.descriptor, mv);
       mv.visitMethodInsn(INVOKESTATIC, constant.type.vectorName, "broadcast", '(' + VECTOR_SPECIES_DESC + constant.type.descriptor + ')' + constant.type.vectorClass.descriptorString(), false);
     } else if (expr instanceof Expr.Load load) {
       mv.visitVarInsn(ALOAD, load.variable);
     } else if (expr instanceof Expr.UnOp unOp) {
-      gen(unOp.expr, mv);
+      gen(unOp.expr, mv, slot);
       var vectorDesc = unOp.type.vectorClass.descriptorString();
       mv.visitMethodInsn(INVOKEVIRTUAL, unOp.type.vectorName, unOp.kind.name(),   "()" + vectorDesc, false);
     } else if (expr instanceof Expr.BinOp binOp) {
-      gen(binOp.left, mv);
-      gen(binOp.right, mv);
+      switch (binOp.kind) {
+        case saturatedAdd, saturatedSub, unsignedSaturatedAdd, unsignedSaturatedSub -> {
+          genSaturated(binOp, mv, slot);
+          return;
+        }
+        case xor -> {
+          // there is no method xor in the Vector API
+          gen(binOp.left, mv, slot);
+          mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "XOR", ASSOCIATIVE_DESC);
+          gen(binOp.right, mv, slot);
+          mv.visitMethodInsn(INVOKEVIRTUAL, binOp.type.vectorName, "lanewise", '(' + BINARY_DESC + VECTOR_DESC + ')' + binOp.type.vectorClass.descriptorString(), false);
+          return;
+        }
+        default -> {}
+      }
+      gen(binOp.left, mv, slot);
+      gen(binOp.right, mv, slot);
       var vectorDesc = binOp.type.vectorClass.descriptorString();
       mv.visitMethodInsn(INVOKEVIRTUAL, binOp.type.vectorName, binOp.kind.name(),   '(' + VECTOR_DESC + ')' + vectorDesc, false);
+    } else if (expr instanceof Expr.Conversion conversion) {
+      var from = conversion.expr.type();
+      gen(conversion.expr, mv, slot);
+      mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, from.name().charAt(0) + "2" + conversion.type.name().charAt(0), CONVERSION_DESC);
+      mv.visitInsn(ICONST_0);
+      mv.visitMethodInsn(INVOKEVIRTUAL, from.vectorName, "convert", '(' + CONVERSION_DESC + "I)" + VECTOR_DESC, false);
+      mv.visitTypeInsn(CHECKCAST, conversion.type.vectorName);
+    } else if (expr instanceof Expr.DivConstant divConstant) {
+      genDivConstant(divConstant, mv, slot);
+    } else if (expr instanceof Expr.Gather gather) {
+      genGather(gather, mv, slot);
+    } else if (expr instanceof Expr.Compare compare) {
+      gen(compare.left, mv, slot);
+      mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, compare.kind.name(), COMPARISON_DESC);
+      gen(compare.right, mv, slot);
+      mv.visitMethodInsn(INVOKEVIRTUAL, compare.type.vectorName, "compare", '(' + COMPARISON_DESC + VECTOR_DESC + ')' + VECTOR_MASK_DESC, false);
+    } else if (expr instanceof Expr.MaskLiteral literal) {
+      mv.visitFieldInsn(GETSTATIC, literal.type.vectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+      mv.visitInsn(literal.value? ICONST_1: ICONST_0);
+      mv.visitMethodInsn(INVOKEINTERFACE, VECTOR_SPECIES_NAME, "maskAll", "(Z)" + VECTOR_MASK_DESC, true);
+    } else if (expr instanceof Expr.MaskNot maskNot) {
+      genMask(maskNot.mask, maskNot.type, mv, slot);
+      mv.visitMethodInsn(INVOKEVIRTUAL, VECTOR_MASK_NAME, "not", "()" + VECTOR_MASK_DESC, false);
+    } else if (expr instanceof Expr.MaskOp maskOp) {
+      genMask(maskOp.left, maskOp.type, mv, slot);
+      genMask(maskOp.right, maskOp.type, mv, slot);
+      mv.visitMethodInsn(INVOKEVIRTUAL, VECTOR_MASK_NAME, maskOp.kind.name(), '(' + VECTOR_MASK_DESC + ')' + VECTOR_MASK_DESC, false);
+    } else if (expr instanceof Expr.Blend blend) {
+      // both values are computed for all the lanes
+      gen(blend.ifFalse, mv, slot);
+      gen(blend.ifTrue, mv, slot);
+      genMask(blend.mask, blend.type, mv, slot);
+      var vectorDesc = blend.type.vectorClass.descriptorString();
+      mv.visitMethodInsn(INVOKEVIRTUAL, blend.type.vectorName, "blend", '(' + VECTOR_DESC + VECTOR_MASK_DESC + ')' + vectorDesc, false);
     } else {
       throw new AssertionError("invalid expression " + expr.getClass().getName());
     }
   }
+
+  // the division keeps the Java semantics, the quotient is rounded toward zero,
+  // the dividend is stored in the local variable slot
+  private static void genDivConstant(Expr.DivConstant divConstant, MethodVisitor mv, int slot) {
+    var type = divConstant.type;
+    var vectorDesc = type.vectorClass.descriptorString();
+    var divisor = divConstant.divisor;
+    gen(divConstant.expr, mv, slot);
+    if (Long.bitCount(Math.abs(divisor)) == 1) {
+      // (x + ((x >> (size - 1)) >>> (size - k))) >> k, the bias rounds the negative values toward zero
+      var k = Long.numberOfTrailingZeros(divisor);
+      if (k != 0) {
+        var size = switch (type) { case BYTE -> Byte.SIZE; case SHORT -> Short.SIZE; case INT -> Integer.SIZE; default -> Long.SIZE; };
+        mv.visitVarInsn(ASTORE, slot);
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "ASHR", BINARY_DESC);
+        mv.visitLdcInsn((long) size - 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "LSHR", BINARY_DESC);
+        mv.visitLdcInsn((long) size - k);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "add", '(' + VECTOR_DESC + ')' + vectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "ASHR", BINARY_DESC);
+        mv.visitLdcInsn((long) k);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+      }
+    } else {
+      // Granlund and Montgomery, with l = ceil(log2(|d|)) and m = 1 + 2^(31 + l) / |d| (m < 2^32),
+      // x / |d| == ((x * m) >> (31 + l)) - (x >> 31), the product is computed on long lanes
+      // by widening each half of the int lanes
+      var abs = Math.abs(divisor);
+      var l = Long.SIZE - Long.numberOfLeadingZeros(abs - 1);
+      var m = 1 + (1L << (31 + l)) / abs;
+      var intVectorName = Expr.Type.INT.vectorName;
+      var longVectorName = Expr.Type.LONG.vectorName;
+      var longVectorDesc = Expr.Type.LONG.vectorClass.descriptorString();
+      mv.visitVarInsn(ASTORE, slot);
+      for(var part = 0; part < 2; part++) {
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "I2L", CONVERSION_DESC);
+        mv.visitFieldInsn(GETSTATIC, longVectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+        mv.visitInsn(part == 0? ICONST_0: ICONST_1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "convertShape", '(' + CONVERSION_DESC + VECTOR_SPECIES_DESC + "I)" + VECTOR_DESC, false);
+        mv.visitTypeInsn(CHECKCAST, longVectorName);
+        mv.visitLdcInsn(m);
+        mv.visitMethodInsn(INVOKEVIRTUAL, longVectorName, "mul", "(J)" + longVectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "ASHR", BINARY_DESC);
+        mv.visitLdcInsn((long) 31 + l);
+        mv.visitMethodInsn(INVOKEVIRTUAL, longVectorName, "lanewise", '(' + BINARY_DESC + "J)" + longVectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "L2I", CONVERSION_DESC);
+        mv.visitFieldInsn(GETSTATIC, intVectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+        mv.visitInsn(part == 0? ICONST_0: ICONST_M1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, longVectorName, "convertShape", '(' + CONVERSION_DESC + VECTOR_SPECIES_DESC + "I)" + VECTOR_DESC, false);
+        mv.visitTypeInsn(CHECKCAST, intVectorName);
+      }
+      mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "or", '(' + VECTOR_DESC + ')' + vectorDesc, false);
+      mv.visitVarInsn(ALOAD, slot);
+      mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "ASHR", BINARY_DESC);
+      mv.visitLdcInsn(31L);
+      mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+      mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "sub", '(' + VECTOR_DESC + ')' + vectorDesc, false);
+    }
+    if (divisor < 0) {
+      mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "neg", "()" + vectorDesc, false);
+    }
+  }
+
+  // the indexes of a gather are stored in an array, each thread reuses the same array,
+  // the thread local is the class data of the generated classes
+  private static final ThreadLocal<int[]> GATHER_INDEXES = ThreadLocal.withInitial(() -> new int[BYTE_SPECIES.length()]);
+
+  private static final ConstantDynamic GATHER_INDEXES_CONSTANT = classDataConstant(ThreadLocal.class);
+
+  // the class data of a hidden class as a constant
+  private static ConstantDynamic classDataConstant(Class<?> type) {
+    return new ConstantDynamic("_", type.descriptorString(),
+        new Handle(H_INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false));
+  }
+
+  // the gather of the Vector API takes the indexes as an int array, so the index vector is stored
+  // in the array of the thread referenced by the local variable slot, the values of a table of bytes/shorts
+  // are loaded with a species having the same number of lanes as the indexes then widened to int,
+  // if the gather has a mask, only the lanes of the mask are loaded
+  private static void genGather(Expr.Gather gather, MethodVisitor mv, int slot) {
+    if (gather.index.type() != Expr.Type.INT) {
+      genLaneGather(gather, mv, slot);
+      return;
+    }
+    var intVectorName = Expr.Type.INT.vectorName;
+    gen(gather.index, mv, slot);
+    mv.visitLdcInsn(GATHER_INDEXES_CONSTANT);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/ThreadLocal", "get", "()Ljava/lang/Object;", false);
+    mv.visitTypeInsn(CHECKCAST, "[I");
+    mv.visitInsn(DUP);
+    mv.visitVarInsn(ASTORE, slot);
+    mv.visitInsn(ICONST_0);
+    mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "intoArray", "([II)V", false);
+
+    var table = gather.table;
+    var elementType = table.type;
+    var speciesName = switch (elementType) {
+      case INT, FLOAT -> "SPECIES_PREFERRED";
+      case BYTE, SHORT -> {
+        var bitSize = INT_SPECIES.length() * (elementType == Expr.Type.BYTE? Byte.SIZE: Short.SIZE);
+        if (bitSize < 64 || bitSize > 512) {
+          throw new AssertionError("no " + elementType + " species with " + INT_SPECIES.length() + " lanes");
+        }
+        yield "SPECIES_" + bitSize;
+      }
+      default -> throw new AssertionError("invalid gather from " + table);
+    };
+    var elementVectorDesc = elementType.vectorClass.descriptorString();
+    mv.visitFieldInsn(GETSTATIC, elementType.vectorName, speciesName, VECTOR_SPECIES_DESC);
+    mv.visitFieldInsn(GETSTATIC, table.owner, table.name, table.descriptor);
+    mv.visitInsn(ICONST_0);
+    mv.visitVarInsn(ALOAD, slot);
+    mv.visitInsn(ICONST_0);
+    if (gather.mask == null) {
+      mv.visitMethodInsn(INVOKESTATIC, elementType.vectorName, "fromArray", '(' + VECTOR_SPECIES_DESC + table.descriptor + "I[II)" + elementVectorDesc, false);
+    } else {
+      // the mask has the same number of lanes as the species of the table
+      gen(gather.mask, mv, slot + 1);
+      mv.visitFieldInsn(GETSTATIC, elementType.vectorName, speciesName, VECTOR_SPECIES_DESC);
+      mv.visitMethodInsn(INVOKEVIRTUAL, VECTOR_MASK_NAME, "cast", '(' + VECTOR_SPECIES_DESC + ')' + VECTOR_MASK_DESC, false);
+      mv.visitMethodInsn(INVOKESTATIC, elementType.vectorName, "fromArray", '(' + VECTOR_SPECIES_DESC + table.descriptor + "I[II" + VECTOR_MASK_DESC + ")" + elementVectorDesc, false);
+    }
+    if (elementType == Expr.Type.BYTE || elementType == Expr.Type.SHORT) {
+      mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, elementType.name().charAt(0) + "2I", CONVERSION_DESC);
+      mv.visitFieldInsn(GETSTATIC, intVectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+      mv.visitInsn(ICONST_0);
+      mv.visitMethodInsn(INVOKEVIRTUAL, elementType.vectorName, "convertShape", '(' + CONVERSION_DESC + VECTOR_SPECIES_DESC + "I)" + VECTOR_DESC, false);
+      mv.visitTypeInsn(CHECKCAST, intVectorName);
+    }
+  }
+
+  // the gather of a byte/short lambda, the index vector is widened to int by parts, each part is stored
+  // in the array of the thread, then the values are loaded from the table of bytes/shorts on the lanes,
+  // the index vector is stored in the local variable slot and the array in slot + 1
+  private static void genLaneGather(Expr.Gather gather, MethodVisitor mv, int slot) {
+    var type = gather.type;
+    var intVectorName = Expr.Type.INT.vectorName;
+    var intVectorDesc = Expr.Type.INT.vectorClass.descriptorString();
+    gen(gather.index, mv, slot);
+    mv.visitVarInsn(ASTORE, slot);
+    mv.visitLdcInsn(GATHER_INDEXES_CONSTANT);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/ThreadLocal", "get", "()Ljava/lang/Object;", false);
+    mv.visitTypeInsn(CHECKCAST, "[I");
+    mv.visitVarInsn(ASTORE, slot + 1);
+    var parts = type.species().length() / INT_SPECIES.length();
+    for(var part = 0; part < parts; part++) {
+      mv.visitVarInsn(ALOAD, slot);
+      mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, type.name().charAt(0) + "2I", CONVERSION_DESC);
+      mv.visitFieldInsn(GETSTATIC, intVectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+      mv.visitLdcInsn(part);
+      mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "convertShape", '(' + CONVERSION_DESC + VECTOR_SPECIES_DESC + "I)" + VECTOR_DESC, false);
+      mv.visitTypeInsn(CHECKCAST, intVectorName);
+      if (gather.unsignedIndex) {
+        mv.visitLdcInsn(laneMask(type));
+        mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "and", "(I)" + intVectorDesc, false);
+      }
+      mv.visitVarInsn(ALOAD, slot + 1);
+      mv.visitLdcInsn(part * INT_SPECIES.length());
+      mv.visitMethodInsn(INVOKEVIRTUAL, intVectorName, "intoArray", "([II)V", false);
+    }
+
+    var table = gather.table;
+    var vectorDesc = type.vectorClass.descriptorString();
+    mv.visitFieldInsn(GETSTATIC, type.vectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+    mv.visitFieldInsn(GETSTATIC, table.owner, table.name, table.descriptor);
+    mv.visitInsn(ICONST_0);
+    mv.visitVarInsn(ALOAD, slot + 1);
+    mv.visitInsn(ICONST_0);
+    if (gather.mask == null) {
+      mv.visitMethodInsn(INVOKESTATIC, type.vectorName, "fromArray", '(' + VECTOR_SPECIES_DESC + table.descriptor + "I[II)" + vectorDesc, false);
+    } else {
+      genMask(gather.mask, type, mv, slot + 2);
+      mv.visitMethodInsn(INVOKESTATIC, type.vectorName, "fromArray", '(' + VECTOR_SPECIES_DESC + table.descriptor + "I[II" + VECTOR_MASK_DESC + ")" + vectorDesc, false);
+    }
+  }
+
+  // generate a mask and cast it if the compared values are not of the expected type
+  private static void genMask(Expr mask, Expr.Type type, MethodVisitor mv, int slot) {
+    gen(mask, mv, slot);
+    if (mask.type() != type) {
+      mv.visitFieldInsn(GETSTATIC, type.vectorName, "SPECIES_PREFERRED", VECTOR_SPECIES_DESC);
+      mv.visitMethodInsn(INVOKEVIRTUAL, VECTOR_MASK_NAME, "cast", '(' + VECTOR_SPECIES_DESC + ')' + VECTOR_MASK_DESC, false);
+    }
+  }
+
+  // the bits of an int stored in a byte/short lane
+  private static int laneMask(Expr.Type type) {
+    return type == Expr.Type.BYTE? 0xFF: 0xFFFF;
+  }
+
+  // narrow an int on the stack to the byte/short lane type
+  private static void genNarrow(Expr.Type type, String descriptor, MethodVisitor mv) {
+    if (type == Expr.Type.BYTE && !descriptor.equals("B")) {
+      mv.visitInsn(I2B);
+    } else if (type == Expr.Type.SHORT && !descriptor.equals("B") && !descriptor.equals("S")) {
+      mv.visitInsn(I2S);
+    }
+  }
+
+  private static final String VECTOR_MASK_DESC = VectorMask.class.descriptorString();
+  private static final String VECTOR_MASK_NAME = nameFrom(VectorMask.class);
+  private static final String VECTOR_SPECIES_NAME = nameFrom(VectorSpecies.class);
+  private static final String VECTOR_OPERATORS_NAME = nameFrom(VectorOperators.class);
+  private static final String BINARY_DESC = VectorOperators.Binary.class.descriptorString();
+  private static final String ASSOCIATIVE_DESC = VectorOperators.Associative.class.descriptorString();
+  private static final String COMPARISON_DESC = VectorOperators.Comparison.class.descriptorString();
+  private static final String CONVERSION_DESC = VectorOperators.Conversion.class.descriptorString();
+
+  // there is no saturated operation in the Vector API, so the overflow is detected and the lanes are patched,
+  // the operands and the result are stored in the local variables slot, slot + 1 and slot + 2
+  private static void genSaturated(Expr.BinOp binOp, MethodVisitor mv, int slot) {
+    var type = binOp.type;
+    var vectorDesc = type.vectorClass.descriptorString();
+    gen(binOp.left, mv, slot);
+    gen(binOp.right, mv, slot);
+    mv.visitVarInsn(ASTORE, slot + 1);
+    mv.visitVarInsn(ASTORE, slot);
+    var isAdd = binOp.kind == Expr.BinOp.Kind.saturatedAdd || binOp.kind == Expr.BinOp.Kind.unsignedSaturatedAdd;
+    mv.visitVarInsn(ALOAD, slot);
+    mv.visitVarInsn(ALOAD, slot + 1);
+    mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, isAdd? "add": "sub", '(' + VECTOR_DESC + ')' + vectorDesc, false);
+    mv.visitVarInsn(ASTORE, slot + 2);
+    mv.visitVarInsn(ALOAD, slot + 2);
+    switch (binOp.kind) {
+      case saturatedAdd, saturatedSub -> {
+        // the saturated value has the sign of the first operand: (a >> (size - 1)) ^ MAX_VALUE
+        var size = type == Expr.Type.BYTE? Byte.SIZE: Short.SIZE;
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "ASHR", BINARY_DESC);
+        mv.visitLdcInsn((long) size - 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "XOR", ASSOCIATIVE_DESC);
+        mv.visitLdcInsn((1L << (size - 1)) - 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + "J)" + vectorDesc, false);
+
+        // overflow if ((a ^ r) & (b ^ r)) < 0 for an addition, ((a ^ b) & (a ^ r)) < 0 for a subtraction
+        mv.visitVarInsn(ALOAD, slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "XOR", ASSOCIATIVE_DESC);
+        mv.visitVarInsn(ALOAD, isAdd? slot + 2: slot + 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + VECTOR_DESC + ')' + vectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "AND", ASSOCIATIVE_DESC);
+        mv.visitVarInsn(ALOAD, isAdd? slot + 1: slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "XOR", ASSOCIATIVE_DESC);
+        mv.visitVarInsn(ALOAD, slot + 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + VECTOR_DESC + ')' + vectorDesc, false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "lanewise", '(' + BINARY_DESC + VECTOR_DESC + ')' + vectorDesc, false);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "LT", COMPARISON_DESC);
+        mv.visitInsn(LCONST_0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "compare", '(' + COMPARISON_DESC + "J)" + VECTOR_MASK_DESC, false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "blend", '(' + VECTOR_DESC + VECTOR_MASK_DESC + ')' + vectorDesc, false);
+      }
+      case unsignedSaturatedAdd, unsignedSaturatedSub -> {
+        // overflow if r <u a for an addition (saturated to all ones), a <u b for a subtraction (saturated to zero)
+        mv.visitLdcInsn(isAdd? -1L: 0L);
+        mv.visitVarInsn(ALOAD, isAdd? slot + 2: slot);
+        mv.visitFieldInsn(GETSTATIC, VECTOR_OPERATORS_NAME, "UNSIGNED_LT", COMPARISON_DESC);
+        mv.visitVarInsn(ALOAD, isAdd? slot: slot + 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "compare", '(' + COMPARISON_DESC + VECTOR_DESC + ')' + VECTOR_MASK_DESC, false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, type.vectorName, "blend", "(J" + VECTOR_MASK_DESC + ')' + vectorDesc, false);
+      }
+      default -> throw new AssertionError("invalid saturated operation " + binOp.kind);
+    }
+  }
 }
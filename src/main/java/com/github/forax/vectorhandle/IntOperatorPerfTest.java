@@ -0,0 +1,233 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the operators on arrays of ints, the unary operators use only the array {@code a}.
+ * Each fork runs only one operator, so the call sites of the lambdas stay monomorphic,
+ * the benchmarks can not run without fork because a vector handle caches at most 8 lambdas.
+ * The predicates are benchmarked with {@code count} (the result is stored in {@code dest[0]})
+ * and {@code select} (the bits are stored in a bitmap).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class IntOperatorPerfTest {
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+  private static final VectorHandle VH = VectorHandle.of(lookup());
+  private static final int[] TABLE = IntStream.range(0, 256).map(x -> x * x).toArray();
+
+  @Param({"7", "100", "1003", "100000", "10000000"})
+  private int size;
+
+  @Param({"neg", "div_constant", "conditional", "add", "sub", "mul", "min", "max", "and", "or", "xor",
+      "div", "rem", "convert", "gather", "count", "select"})
+  private String operator;
+
+  private int[] dest;
+  private int[] a;
+  private int[] b;
+  private long[] bitmap;
+  private final int[] indexes = new int[SPECIES.length()];
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    a = random.ints(size, 1, 100).toArray();
+    b = random.ints(size, 1, 100).toArray();
+    dest = new int[size];
+    bitmap = new long[(size + 63) >>> 6];
+  }
+
+  @Benchmark
+  public int[] vector_handle() {
+    switch (operator) {
+      case "neg" -> VH.apply(dest, a, x -> -x);
+      case "div_constant" -> VH.apply(dest, a, x -> x / 3);
+      case "conditional" -> VH.apply(dest, a, x -> x < 50? -x: x);
+      case "add" -> VH.apply(dest, a, b, (x, y) -> x + y);
+      case "sub" -> VH.apply(dest, a, b, (x, y) -> x - y);
+      case "mul" -> VH.apply(dest, a, b, (x, y) -> x * y);
+      case "min" -> VH.apply(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> VH.apply(dest, a, b, (x, y) -> Math.max(x, y));
+      case "and" -> VH.apply(dest, a, b, (x, y) -> x & y);
+      case "or" -> VH.apply(dest, a, b, (x, y) -> x | y);
+      case "xor" -> VH.apply(dest, a, b, (x, y) -> x ^ y);
+      case "div" -> VH.apply(dest, a, b, (x, y) -> x / y);
+      case "rem" -> VH.apply(dest, a, b, (x, y) -> x % y);
+      case "convert" -> VH.apply(dest, a, x -> (int) (x * 1.5f));
+      case "gather" -> VH.apply(dest, a, x -> TABLE[x & 0xFF]);
+      case "count" -> dest[0] = VH.count(a, x -> x < 50);
+      case "select" -> VH.select(bitmap, a, VectorHandle.Selection.SET, x -> x < 50);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public int[] handwritten() {
+    switch (operator) {
+      case "neg" -> handwritten(dest, a, v -> v.neg(), x -> -x);
+      case "div_constant" -> handwritten(dest, a, v -> v.div(3), x -> x / 3);
+      case "conditional" -> handwritten(dest, a, v -> v.blend(v.neg(), v.compare(VectorOperators.LT, 50)), x -> x < 50? -x: x);
+      case "add" -> handwritten(dest, a, b, (v, w) -> v.add(w), (x, y) -> x + y);
+      case "sub" -> handwritten(dest, a, b, (v, w) -> v.sub(w), (x, y) -> x - y);
+      case "mul" -> handwritten(dest, a, b, (v, w) -> v.mul(w), (x, y) -> x * y);
+      case "min" -> handwritten(dest, a, b, (v, w) -> v.min(w), (x, y) -> Math.min(x, y));
+      case "max" -> handwritten(dest, a, b, (v, w) -> v.max(w), (x, y) -> Math.max(x, y));
+      case "and" -> handwritten(dest, a, b, (v, w) -> v.and(w), (x, y) -> x & y);
+      case "or" -> handwritten(dest, a, b, (v, w) -> v.or(w), (x, y) -> x | y);
+      case "xor" -> handwritten(dest, a, b, (v, w) -> v.lanewise(VectorOperators.XOR, w), (x, y) -> x ^ y);
+      case "div" -> handwritten(dest, a, b, (v, w) -> v.div(w), (x, y) -> x / y);
+      case "rem" -> handwritten(dest, a, b, (v, w) -> v.sub(v.div(w).mul(w)), (x, y) -> x % y);
+      case "convert" -> handwritten(dest, a, v -> (IntVector) ((FloatVector) v.convert(VectorOperators.I2F, 0)).mul(1.5f).convert(VectorOperators.F2I, 0), x -> (int) (x * 1.5f));
+      case "gather" -> handwritten(dest, a, v -> gather(v, indexes), x -> TABLE[x & 0xFF]);
+      case "count" -> dest[0] = handwrittenCount(a, v -> v.compare(VectorOperators.LT, 50), x -> x < 50);
+      case "select" -> handwrittenSelect(bitmap, a, v -> v.compare(VectorOperators.LT, 50), x -> x < 50);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public int[] no_vector() {
+    switch (operator) {
+      case "neg" -> noVector(dest, a, x -> -x);
+      case "div_constant" -> noVector(dest, a, x -> x / 3);
+      case "conditional" -> noVector(dest, a, x -> x < 50? -x: x);
+      case "add" -> noVector(dest, a, b, (x, y) -> x + y);
+      case "sub" -> noVector(dest, a, b, (x, y) -> x - y);
+      case "mul" -> noVector(dest, a, b, (x, y) -> x * y);
+      case "min" -> noVector(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> noVector(dest, a, b, (x, y) -> Math.max(x, y));
+      case "and" -> noVector(dest, a, b, (x, y) -> x & y);
+      case "or" -> noVector(dest, a, b, (x, y) -> x | y);
+      case "xor" -> noVector(dest, a, b, (x, y) -> x ^ y);
+      case "div" -> noVector(dest, a, b, (x, y) -> x / y);
+      case "rem" -> noVector(dest, a, b, (x, y) -> x % y);
+      case "convert" -> noVector(dest, a, x -> (int) (x * 1.5f));
+      case "gather" -> noVector(dest, a, x -> TABLE[x & 0xFF]);
+      case "count" -> dest[0] = noVectorCount(a, x -> x < 50);
+      case "select" -> noVectorSelect(bitmap, a, x -> x < 50);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  private static void handwritten(int[] dest, int[] a, UnaryOperator<IntVector> vectorOp, VectorHandle.IIOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = IntVector.fromArray(SPECIES, a, i);
+      vectorOp.apply(va).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void handwritten(int[] dest, int[] a, int[] b, BinaryOperator<IntVector> vectorOp, VectorHandle.IIIOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = IntVector.fromArray(SPECIES, a, i);
+      var vb = IntVector.fromArray(SPECIES, b, i);
+      vectorOp.apply(va, vb).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static IntVector gather(IntVector v, int[] indexes) {
+    v.and(0xFF).intoArray(indexes, 0);
+    return IntVector.fromArray(SPECIES, TABLE, 0, indexes, 0);
+  }
+
+  private static int handwrittenCount(int[] a, Function<IntVector, VectorMask<Integer>> vectorOp, VectorHandle.IZOp op) {
+    var count = 0;
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = IntVector.fromArray(SPECIES, a, i);
+      count += vectorOp.apply(va).trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // the number of lanes divides 64, so the bits of a mask are in the same long of the bitmap
+  private static void handwrittenSelect(long[] bitmap, int[] a, Function<IntVector, VectorMask<Integer>> vectorOp, VectorHandle.IZOp op) {
+    Arrays.fill(bitmap, 0L);
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = IntVector.fromArray(SPECIES, a, i);
+      bitmap[i >>> 6] |= vectorOp.apply(va).toLong() << i;
+    }
+    for (; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        bitmap[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private static void noVector(int[] dest, int[] a, VectorHandle.IIOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void noVector(int[] dest, int[] a, int[] b, VectorHandle.IIIOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static int noVectorCount(int[] a, VectorHandle.IZOp op) {
+    var count = 0;
+    for (int i = 0; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void noVectorSelect(long[] bitmap, int[] a, VectorHandle.IZOp op) {
+    Arrays.fill(bitmap, 0L);
+    for (int i = 0; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        bitmap[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.github.forax.vectorhandle.Impl.INT_SPECIES;
+import static com.github.forax.vectorhandle.Impl.LONG_SPECIES;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A lazy sequence of operators on ints, the operators are recorded by {@link #map(VectorHandle.IIOp)}
+ * and fused into one operation on vectors when a terminal operation
+ * ({@link #into(int[], int[])}, {@link #sum(int[])}, {@link #sumAsLong(int[])}, {@link #min(int[])} or {@link #max(int[])})
+ * is called, so the whole pipeline is done in one pass on the arrays without any intermediary array.
+ * The terminal operations {@link #into(WritableByteChannel, ReadableByteChannel)}, {@link #sum(ReadableByteChannel)},
+ * {@link #min(ReadableByteChannel)} and {@link #max(ReadableByteChannel)} read the ints from a channel
+ * chunk by chunk instead of from an array.
+ *
+ * <p>Example
+ * <pre>
+ *   private static final VectorHandle VH = VectorHandle.of(lookup());
+ *   ...
+ *   var pipeline = VH.intPipeline()
+ *       .map(x -> x * 2)
+ *       .map(x -> Math.min(x, 100));
+ *   pipeline.into(dest, a);
+ * </pre>
+ *
+ * A pipeline is immutable, {@code map} returns a new pipeline.
+ * The same restrictions as {@link VectorHandle#apply(int[], int[], VectorHandle.IIOp)}
+ * apply to the lambdas.
+ *
+ * @see VectorHandle#intPipeline()
+ */
+public final class IntPipeline {
+  private final VectorHandle vectorHandle;
+  private final VectorHandle.IIOp[] operators;
+  private final Impl.Fused fused;
+
+  IntPipeline(VectorHandle vectorHandle, VectorHandle.IIOp... operators) {
+    this.vectorHandle = vectorHandle;
+    this.operators = operators;
+    this.fused = operators.length == 0? null: new Impl.Fused((Object[]) operators);
+  }
+
+  /**
+   * Returns a new pipeline that applies the {@code operator} after the operators of this pipeline.
+   * @param operator a lambda that specify the operator.
+   * @return a new pipeline.
+   */
+  public IntPipeline map(VectorHandle.IIOp operator) {
+    requireNonNull(operator);
+    var operators = Arrays.copyOf(this.operators, this.operators.length + 1);
+    operators[this.operators.length] = operator;
+    return new IntPipeline(vectorHandle, operators);
+  }
+
+  private IntVector applyAsVector(IntVector va) {
+    if (fused == null) {
+      return va;
+    }
+    return (IntVector) vectorHandle.invoke(fused, va, null, null, null);
+  }
+
+  private int applyAsScalar(int a) {
+    for(var operator: operators) {
+      a = operator.apply(a);
+    }
+    return a;
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(int[] dest, int[] a) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = applyAsVector(va);
+      vb.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = applyAsScalar(a[i]);
+    }
+  }
+
+  /**
+   * Reads the ints of the channel {@code in} in little endian, apply the operators on each value
+   * and writes each result in little endian in the channel {@code out}.
+   * The values are read by chunks into a direct buffer reused by the calls of the same thread and the results are computed
+   * in place before being written, so the memory used does not depend on the length of the stream.
+   * An {@link java.io.InputStream} or an {@link java.io.OutputStream} can be seen as a channel using
+   * {@link java.nio.channels.Channels}.
+   * @param out the channel the results are written to.
+   * @param in the channel the values are read from.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Integer#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(WritableByteChannel out, ReadableByteChannel in) throws IOException {
+    requireNonNull(out);
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Integer.BYTES;
+        int i = 0;
+        int bound = INT_SPECIES.loopBound(limit / Integer.BYTES) * Integer.BYTES;
+        Impl.recordCall(limit / Integer.BYTES, (limit - bound) / Integer.BYTES);
+        for (; i < bound; i += INT_SPECIES.vectorByteSize()) {
+          var va = IntVector.fromByteBuffer(INT_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          var vb = applyAsVector(va);
+          vb.intoByteBuffer(buffer, i, ByteOrder.LITTLE_ENDIAN);
+        }
+        for (; i < limit; i += Integer.BYTES) {
+          buffer.putInt(i, applyAsScalar(buffer.getInt(i)));
+        }
+        Impl.flushChunk(buffer, limit, out);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  private int reduce(int[] a, VectorOperators.Associative operator, int identity, VectorHandle.IIIOp combiner) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var acc = IntVector.broadcast(INT_SPECIES, identity);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      acc = acc.lanewise(operator, applyAsVector(va));
+    }
+    var result = acc.reduceLanes(operator);
+    for (; i < a.length; i++) {
+      var value = applyAsScalar(a[i]);
+      result = combiner.apply(result, value);
+    }
+    return result;
+  }
+
+  private int reduce(ReadableByteChannel in, VectorOperators.Associative operator, int identity, VectorHandle.IIIOp combiner) throws IOException {
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      var acc = IntVector.broadcast(INT_SPECIES, identity);
+      var result = identity;
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Integer.BYTES;
+        int i = 0;
+        int bound = INT_SPECIES.loopBound(limit / Integer.BYTES) * Integer.BYTES;
+        Impl.recordCall(limit / Integer.BYTES, (limit - bound) / Integer.BYTES);
+        for (; i < bound; i += INT_SPECIES.vectorByteSize()) {
+          var va = IntVector.fromByteBuffer(INT_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          acc = acc.lanewise(operator, applyAsVector(va));
+        }
+        for (; i < limit; i += Integer.BYTES) {
+          var value = applyAsScalar(buffer.getInt(i));
+          result = combiner.apply(result, value);
+        }
+        Impl.flushChunk(buffer, limit, null);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+      return combiner.apply(acc.reduceLanes(operator), result);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the sum of the results.
+   * @param a the array of parameters.
+   * @return the sum of the results.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int sum(int[] a) {
+    return reduce(a, VectorOperators.ADD, 0, Integer::sum);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the sum of the results
+   * computed on longs, so unlike {@link #sum(int[])} the sum does not overflow.
+   * The array stays an array of ints, each vector of results is converted to two vectors of longs
+   * that are added to the accumulator.
+   * @param a the array of parameters.
+   * @return the sum of the results as a long.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long sumAsLong(int[] a) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var acc = LongVector.zero(LONG_SPECIES);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = applyAsVector(va);
+      // the vectors have the same size, so the lanes of a vector fill two vectors of longs
+      acc = acc.add(vb.convertShape(VectorOperators.I2L, LONG_SPECIES, 0))
+          .add(vb.convertShape(VectorOperators.I2L, LONG_SPECIES, 1));
+    }
+    var result = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < a.length; i++) {
+      result += applyAsScalar(a[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the minimum of the results.
+   * @param a the array of parameters.
+   * @return the minimum of the results or {@link Integer#MAX_VALUE} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int min(int[] a) {
+    return reduce(a, VectorOperators.MIN, Integer.MAX_VALUE, Math::min);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the maximum of the results.
+   * @param a the array of parameters.
+   * @return the maximum of the results or {@link Integer#MIN_VALUE} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int max(int[] a) {
+    return reduce(a, VectorOperators.MAX, Integer.MIN_VALUE, Math::max);
+  }
+
+  /**
+   * Reads the ints of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the sum of the results.
+   * @param in the channel the values are read from.
+   * @return the sum of the results.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Integer#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int sum(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.ADD, 0, Integer::sum);
+  }
+
+  /**
+   * Reads the ints of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the minimum of the results.
+   * @param in the channel the values are read from.
+   * @return the minimum of the results or {@link Integer#MAX_VALUE} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Integer#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int min(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MIN, Integer.MAX_VALUE, Math::min);
+  }
+
+  /**
+   * Reads the ints of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the maximum of the results.
+   * @param in the channel the values are read from.
+   * @return the maximum of the results or {@link Integer#MIN_VALUE} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Integer#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int max(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MAX, Integer.MIN_VALUE, Math::max);
+  }
+}
@@ -0,0 +1,223 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the operators on arrays of longs, the unary operators use only the array {@code a}.
+ * Each fork runs only one operator, so the call sites of the lambdas stay monomorphic,
+ * the benchmarks can not run without fork because a vector handle caches at most 8 lambdas.
+ * The predicates are benchmarked with {@code count} (the result is stored in {@code dest[0]})
+ * and {@code select} (the bits are stored in a bitmap).
+ * There is no gather, a long lambda can not index a table (tables of longs and long to int conversions are not supported).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class LongOperatorPerfTest {
+  private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+  private static final VectorHandle VH = VectorHandle.of(lookup());
+
+  @Param({"7", "100", "1003", "100000", "10000000"})
+  private int size;
+
+  @Param({"neg", "div_constant", "conditional", "add", "sub", "mul", "min", "max", "and", "or", "xor",
+      "div", "rem", "convert", "count", "select"})
+  private String operator;
+
+  private long[] dest;
+  private long[] a;
+  private long[] b;
+  private long[] bitmap;
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    a = random.longs(size, 1, 100).toArray();
+    b = random.longs(size, 1, 100).toArray();
+    dest = new long[size];
+    bitmap = new long[(size + 63) >>> 6];
+  }
+
+  @Benchmark
+  public long[] vector_handle() {
+    switch (operator) {
+      case "neg" -> VH.apply(dest, a, x -> -x);
+      case "div_constant" -> VH.apply(dest, a, x -> x / 8);
+      case "conditional" -> VH.apply(dest, a, x -> x < 50L? -x: x);
+      case "add" -> VH.apply(dest, a, b, (x, y) -> x + y);
+      case "sub" -> VH.apply(dest, a, b, (x, y) -> x - y);
+      case "mul" -> VH.apply(dest, a, b, (x, y) -> x * y);
+      case "min" -> VH.apply(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> VH.apply(dest, a, b, (x, y) -> Math.max(x, y));
+      case "and" -> VH.apply(dest, a, b, (x, y) -> x & y);
+      case "or" -> VH.apply(dest, a, b, (x, y) -> x | y);
+      case "xor" -> VH.apply(dest, a, b, (x, y) -> x ^ y);
+      case "div" -> VH.apply(dest, a, b, (x, y) -> x / y);
+      case "rem" -> VH.apply(dest, a, b, (x, y) -> x % y);
+      case "convert" -> VH.apply(dest, a, x -> (long) (x * 1.5));
+      case "count" -> dest[0] = VH.count(a, x -> x < 50L);
+      case "select" -> VH.select(bitmap, a, VectorHandle.Selection.SET, x -> x < 50L);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public long[] handwritten() {
+    switch (operator) {
+      case "neg" -> handwritten(dest, a, v -> v.neg(), x -> -x);
+      case "div_constant" -> handwritten(dest, a, v -> v.div(8), x -> x / 8);
+      case "conditional" -> handwritten(dest, a, v -> v.blend(v.neg(), v.compare(VectorOperators.LT, 50L)), x -> x < 50L? -x: x);
+      case "add" -> handwritten(dest, a, b, (v, w) -> v.add(w), (x, y) -> x + y);
+      case "sub" -> handwritten(dest, a, b, (v, w) -> v.sub(w), (x, y) -> x - y);
+      case "mul" -> handwritten(dest, a, b, (v, w) -> v.mul(w), (x, y) -> x * y);
+      case "min" -> handwritten(dest, a, b, (v, w) -> v.min(w), (x, y) -> Math.min(x, y));
+      case "max" -> handwritten(dest, a, b, (v, w) -> v.max(w), (x, y) -> Math.max(x, y));
+      case "and" -> handwritten(dest, a, b, (v, w) -> v.and(w), (x, y) -> x & y);
+      case "or" -> handwritten(dest, a, b, (v, w) -> v.or(w), (x, y) -> x | y);
+      case "xor" -> handwritten(dest, a, b, (v, w) -> v.lanewise(VectorOperators.XOR, w), (x, y) -> x ^ y);
+      case "div" -> handwritten(dest, a, b, (v, w) -> v.div(w), (x, y) -> x / y);
+      case "rem" -> handwritten(dest, a, b, (v, w) -> v.sub(v.div(w).mul(w)), (x, y) -> x % y);
+      case "convert" -> handwritten(dest, a, v -> (LongVector) ((DoubleVector) v.convert(VectorOperators.L2D, 0)).mul(1.5).convert(VectorOperators.D2L, 0), x -> (long) (x * 1.5));
+      case "count" -> dest[0] = handwrittenCount(a, v -> v.compare(VectorOperators.LT, 50L), x -> x < 50L);
+      case "select" -> handwrittenSelect(bitmap, a, v -> v.compare(VectorOperators.LT, 50L), x -> x < 50L);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  @Benchmark
+  public long[] no_vector() {
+    switch (operator) {
+      case "neg" -> noVector(dest, a, x -> -x);
+      case "div_constant" -> noVector(dest, a, x -> x / 8);
+      case "conditional" -> noVector(dest, a, x -> x < 50L? -x: x);
+      case "add" -> noVector(dest, a, b, (x, y) -> x + y);
+      case "sub" -> noVector(dest, a, b, (x, y) -> x - y);
+      case "mul" -> noVector(dest, a, b, (x, y) -> x * y);
+      case "min" -> noVector(dest, a, b, (x, y) -> Math.min(x, y));
+      case "max" -> noVector(dest, a, b, (x, y) -> Math.max(x, y));
+      case "and" -> noVector(dest, a, b, (x, y) -> x & y);
+      case "or" -> noVector(dest, a, b, (x, y) -> x | y);
+      case "xor" -> noVector(dest, a, b, (x, y) -> x ^ y);
+      case "div" -> noVector(dest, a, b, (x, y) -> x / y);
+      case "rem" -> noVector(dest, a, b, (x, y) -> x % y);
+      case "convert" -> noVector(dest, a, x -> (long) (x * 1.5));
+      case "count" -> dest[0] = noVectorCount(a, x -> x < 50L);
+      case "select" -> noVectorSelect(bitmap, a, x -> x < 50L);
+      default -> throw new AssertionError("unknown operator " + operator);
+    }
+    return dest;
+  }
+
+  private static void handwritten(long[] dest, long[] a, UnaryOperator<LongVector> vectorOp, VectorHandle.LLOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = LongVector.fromArray(SPECIES, a, i);
+      vectorOp.apply(va).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void handwritten(long[] dest, long[] a, long[] b, BinaryOperator<LongVector> vectorOp, VectorHandle.LLLOp op) {
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = LongVector.fromArray(SPECIES, a, i);
+      var vb = LongVector.fromArray(SPECIES, b, i);
+      vectorOp.apply(va, vb).intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static int handwrittenCount(long[] a, Function<LongVector, VectorMask<Long>> vectorOp, VectorHandle.LZOp op) {
+    var count = 0;
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = LongVector.fromArray(SPECIES, a, i);
+      count += vectorOp.apply(va).trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // the number of lanes divides 64, so the bits of a mask are in the same long of the bitmap
+  private static void handwrittenSelect(long[] bitmap, long[] a, Function<LongVector, VectorMask<Long>> vectorOp, VectorHandle.LZOp op) {
+    Arrays.fill(bitmap, 0L);
+    int i = 0;
+    for (; i < SPECIES.loopBound(a.length); i += SPECIES.length()) {
+      var va = LongVector.fromArray(SPECIES, a, i);
+      bitmap[i >>> 6] |= vectorOp.apply(va).toLong() << i;
+    }
+    for (; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        bitmap[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private static void noVector(long[] dest, long[] a, VectorHandle.LLOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i]);
+    }
+  }
+
+  private static void noVector(long[] dest, long[] a, long[] b, VectorHandle.LLLOp op) {
+    for (int i = 0; i < a.length; i++) {
+      dest[i] = op.apply(a[i], b[i]);
+    }
+  }
+
+  private static int noVectorCount(long[] a, VectorHandle.LZOp op) {
+    var count = 0;
+    for (int i = 0; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static void noVectorSelect(long[] bitmap, long[] a, VectorHandle.LZOp op) {
+    Arrays.fill(bitmap, 0L);
+    for (int i = 0; i < a.length; i++) {
+      if (op.apply(a[i])) {
+        bitmap[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+}
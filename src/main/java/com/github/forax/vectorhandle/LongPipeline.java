@@ -0,0 +1,253 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.github.forax.vectorhandle.Impl.LONG_SPECIES;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A lazy sequence of operators on longs, the operators are recorded by {@link #map(VectorHandle.LLOp)}
+ * and fused into one operation on vectors when a terminal operation
+ * ({@link #into(long[], long[])}, {@link #sum(long[])}, {@link #min(long[])} or {@link #max(long[])})
+ * is called, so the whole pipeline is done in one pass on the arrays without any intermediary array.
+ * The terminal operations {@link #into(WritableByteChannel, ReadableByteChannel)}, {@link #sum(ReadableByteChannel)},
+ * {@link #min(ReadableByteChannel)} and {@link #max(ReadableByteChannel)} read the longs from a channel
+ * chunk by chunk instead of from an array.
+ *
+ * <p>Example
+ * <pre>
+ *   private static final VectorHandle VH = VectorHandle.of(lookup());
+ *   ...
+ *   var pipeline = VH.longPipeline()
+ *       .map(x -> x * 2)
+ *       .map(x -> Math.min(x, 100));
+ *   pipeline.into(dest, a);
+ * </pre>
+ *
+ * A pipeline is immutable, {@code map} returns a new pipeline.
+ * The same restrictions as {@link VectorHandle#apply(long[], long[], VectorHandle.LLOp)}
+ * apply to the lambdas.
+ *
+ * @see VectorHandle#longPipeline()
+ */
+public final class LongPipeline {
+  private final VectorHandle vectorHandle;
+  private final VectorHandle.LLOp[] operators;
+  private final Impl.Fused fused;
+
+  LongPipeline(VectorHandle vectorHandle, VectorHandle.LLOp... operators) {
+    this.vectorHandle = vectorHandle;
+    this.operators = operators;
+    this.fused = operators.length == 0? null: new Impl.Fused((Object[]) operators);
+  }
+
+  /**
+   * Returns a new pipeline that applies the {@code operator} after the operators of this pipeline.
+   * @param operator a lambda that specify the operator.
+   * @return a new pipeline.
+   */
+  public LongPipeline map(VectorHandle.LLOp operator) {
+    requireNonNull(operator);
+    var operators = Arrays.copyOf(this.operators, this.operators.length + 1);
+    operators[this.operators.length] = operator;
+    return new LongPipeline(vectorHandle, operators);
+  }
+
+  private LongVector applyAsVector(LongVector va) {
+    if (fused == null) {
+      return va;
+    }
+    return (LongVector) vectorHandle.invoke(fused, va, null, null, null);
+  }
+
+  private long applyAsScalar(long a) {
+    for(var operator: operators) {
+      a = operator.apply(a);
+    }
+    return a;
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(long[] dest, long[] a) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var vb = applyAsVector(va);
+      vb.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = applyAsScalar(a[i]);
+    }
+  }
+
+  /**
+   * Reads the longs of the channel {@code in} in little endian, apply the operators on each value
+   * and writes each result in little endian in the channel {@code out}.
+   * The values are read by chunks into a direct buffer reused by the calls of the same thread and the results are computed
+   * in place before being written, so the memory used does not depend on the length of the stream.
+   * An {@link java.io.InputStream} or an {@link java.io.OutputStream} can be seen as a channel using
+   * {@link java.nio.channels.Channels}.
+   * @param out the channel the results are written to.
+   * @param in the channel the values are read from.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Long#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public void into(WritableByteChannel out, ReadableByteChannel in) throws IOException {
+    requireNonNull(out);
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Long.BYTES;
+        int i = 0;
+        int bound = LONG_SPECIES.loopBound(limit / Long.BYTES) * Long.BYTES;
+        Impl.recordCall(limit / Long.BYTES, (limit - bound) / Long.BYTES);
+        for (; i < bound; i += LONG_SPECIES.vectorByteSize()) {
+          var va = LongVector.fromByteBuffer(LONG_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          var vb = applyAsVector(va);
+          vb.intoByteBuffer(buffer, i, ByteOrder.LITTLE_ENDIAN);
+        }
+        for (; i < limit; i += Long.BYTES) {
+          buffer.putLong(i, applyAsScalar(buffer.getLong(i)));
+        }
+        Impl.flushChunk(buffer, limit, out);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  private long reduce(long[] a, VectorOperators.Associative operator, long identity, VectorHandle.LLLOp combiner) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var acc = LongVector.broadcast(LONG_SPECIES, identity);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      acc = acc.lanewise(operator, applyAsVector(va));
+    }
+    var result = acc.reduceLanes(operator);
+    for (; i < a.length; i++) {
+      var value = applyAsScalar(a[i]);
+      result = combiner.apply(result, value);
+    }
+    return result;
+  }
+
+  private long reduce(ReadableByteChannel in, VectorOperators.Associative operator, long identity, VectorHandle.LLLOp combiner) throws IOException {
+    var buffer = Impl.takeChunkBuffer();
+    try {
+      var acc = LongVector.broadcast(LONG_SPECIES, identity);
+      var result = identity;
+      while (in.read(buffer) != -1) {
+        var limit = buffer.position() & -Long.BYTES;
+        int i = 0;
+        int bound = LONG_SPECIES.loopBound(limit / Long.BYTES) * Long.BYTES;
+        Impl.recordCall(limit / Long.BYTES, (limit - bound) / Long.BYTES);
+        for (; i < bound; i += LONG_SPECIES.vectorByteSize()) {
+          var va = LongVector.fromByteBuffer(LONG_SPECIES, buffer, i, ByteOrder.LITTLE_ENDIAN);
+          acc = acc.lanewise(operator, applyAsVector(va));
+        }
+        for (; i < limit; i += Long.BYTES) {
+          var value = applyAsScalar(buffer.getLong(i));
+          result = combiner.apply(result, value);
+        }
+        Impl.flushChunk(buffer, limit, null);
+      }
+      Impl.checkNoTruncatedValue(buffer);
+      return combiner.apply(acc.reduceLanes(operator), result);
+    } finally {
+      Impl.releaseChunkBuffer(buffer);
+    }
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the sum of the results.
+   * @param a the array of parameters.
+   * @return the sum of the results.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long sum(long[] a) {
+    return reduce(a, VectorOperators.ADD, 0, Long::sum);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the minimum of the results.
+   * @param a the array of parameters.
+   * @return the minimum of the results or {@link Long#MAX_VALUE} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long min(long[] a) {
+    return reduce(a, VectorOperators.MIN, Long.MAX_VALUE, Math::min);
+  }
+
+  /**
+   * Apply the operators on each values of the array {@code a} and returns the maximum of the results.
+   * @param a the array of parameters.
+   * @return the maximum of the results or {@link Long#MIN_VALUE} if the array is empty.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long max(long[] a) {
+    return reduce(a, VectorOperators.MAX, Long.MIN_VALUE, Math::max);
+  }
+
+  /**
+   * Reads the longs of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the sum of the results.
+   * @param in the channel the values are read from.
+   * @return the sum of the results.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Long#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long sum(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.ADD, 0, Long::sum);
+  }
+
+  /**
+   * Reads the longs of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the minimum of the results.
+   * @param in the channel the values are read from.
+   * @return the minimum of the results or {@link Long#MAX_VALUE} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Long#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long min(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MIN, Long.MAX_VALUE, Math::min);
+  }
+
+  /**
+   * Reads the longs of the channel {@code in} in little endian, apply the operators on each value
+   * and returns the maximum of the results.
+   * @param in the channel the values are read from.
+   * @return the maximum of the results or {@link Long#MIN_VALUE} if the stream is empty.
+   * @throws IOException if an I/O error occurs.
+   * @throws java.io.EOFException if the length of the stream is not a multiple of {@value Long#BYTES}.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long max(ReadableByteChannel in) throws IOException {
+    return reduce(in, VectorOperators.MAX, Long.MIN_VALUE, Math::max);
+  }
+}
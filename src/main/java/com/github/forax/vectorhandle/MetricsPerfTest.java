@@ -0,0 +1,64 @@
+package com.github.forax.vectorhandle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodHandles.lookup;
+
+/**
+ * Benchmarks of the cost of the counters of {@link VectorHandle#metrics()},
+ * the same loop runs in a JVM with the counters enabled and in a JVM with the counters disabled
+ * by the system property {@code com.github.forax.vectorhandle.metrics}.
+ *
+ * A small size mostly measures the cost of the counters,
+ * use {@code -t 4} to measure the counters updated by several threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class MetricsPerfTest {
+  private static final VectorHandle VH = VectorHandle.of(lookup());
+
+  @Param({"7", "100", "1003"})
+  private int size;
+
+  private int[] dest;
+  private int[] a;
+  private int[] b;
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    a = random.ints(size, 0, 100).toArray();
+    b = random.ints(size, 0, 100).toArray();
+    dest = new int[size];
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector", "-Dcom.github.forax.vectorhandle.metrics=true"})
+  public int[] metrics_on() {
+    VH.apply(dest, a, b, (x, y) -> x + y * 2);
+    return dest;
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgs = {"--add-modules", "jdk.incubator.vector", "-Dcom.github.forax.vectorhandle.metrics=false"})
+  public int[] metrics_off() {
+    VH.apply(dest, a, b, (x, y) -> x + y * 2);
+    return dest;
+  }
+}
@@ -0,0 +1,1079 @@
+package com.github.forax.vectorhandle;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+import static com.github.forax.vectorhandle.Impl.DOUBLE_SPECIES;
+import static com.github.forax.vectorhandle.Impl.FLOAT_SPECIES;
+import static com.github.forax.vectorhandle.Impl.INT_SPECIES;
+import static com.github.forax.vectorhandle.Impl.LONG_SPECIES;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A table of named columns of ints, longs, floats or doubles that all have the same number of rows
+ * (a struct of arrays), on which projections, filters and aggregates are executed using vectors.
+ *
+ * A projection ({@code projectInt}, {@code projectFloat}, etc) adds a column computed from one or two
+ * columns by a lambda, a filter ({@code filterInt}, {@code filterFloat}, etc) only keeps the rows
+ * for which a lambda returns true.
+ * Projections and filters are lazy, they are executed when an aggregate ({@link #count()},
+ * {@link #sumAsLong(String)}, {@link #sumAsDouble(String)}, etc) or the values of a column
+ * ({@link #intColumn(String)}, etc) are requested.
+ * The rows are processed by batches of 4096 rows, the projected columns are only computed for
+ * the current batch and the filters produce a bitmap of the selected rows of the batch,
+ * so the intermediary values stay in the caches instead of being stored in arrays
+ * as large as the columns.
+ *
+ * <p>Example
+ * <pre>
+ *   private static final VectorHandle VH = VectorHandle.of(lookup());
+ *   ...
+ *   var table = VH.table(qty.length)
+ *       .with("qty", qty)
+ *       .with("price", price)
+ *       .filterInt("qty", x -> x >= 10)
+ *       .projectFloat("discount", "price", x -> x * 0.9f);
+ *   var total = table.sumAsDouble("discount");
+ * </pre>
+ *
+ * A table is immutable, {@code with}, the projections and the filters return a new table,
+ * the arrays of the columns are not copied.
+ * The same restrictions as {@link VectorHandle#apply(int[], int[], VectorHandle.IIOp)}
+ * apply to the lambdas.
+ * If the vector handle is created by {@link VectorHandle#of(java.lang.invoke.MethodHandles.Lookup)},
+ * each lambda of the projections and the filters has its own cache of generated code so a table
+ * can use any number of lambdas, otherwise the lambdas share the cache of the vector handle
+ * which is limited to 8 different lambdas.
+ *
+ * @see VectorHandle#table(int)
+ */
+public final class Table {
+  private static final int BATCH_SIZE = 4_096;  // a multiple of 64 and of the number of lanes
+
+  private enum Kind {
+    INT(int.class), LONG(long.class), FLOAT(float.class), DOUBLE(double.class);
+
+    private final Class<?> elementClass;
+
+    Kind(Class<?> elementClass) {
+      this.elementClass = elementClass;
+    }
+  }
+
+  // values is null for a projected column, vectorHandle is the vector handle that calls the operator
+  private record Column(String name, Kind kind, Object values, Object operator, VectorHandle vectorHandle, int[] parameters) {}
+  private record Filter(Kind kind, Object predicate, VectorHandle vectorHandle, int[] parameters) {}
+
+  private final VectorHandle vectorHandle;
+  private final int rowCount;
+  private final Column[] columns;
+  private final Filter[] filters;
+
+  private Table(VectorHandle vectorHandle, int rowCount, Column[] columns, Filter[] filters) {
+    this.vectorHandle = vectorHandle;
+    this.rowCount = rowCount;
+    this.columns = columns;
+    this.filters = filters;
+  }
+
+  Table(VectorHandle vectorHandle, int rowCount) {
+    this(vectorHandle, rowCount, new Column[0], new Filter[0]);
+    if (rowCount < 0) {
+      throw new IllegalArgumentException("rowCount < 0");
+    }
+  }
+
+  /**
+   * Returns the number of rows of the table, not taking the filters into account.
+   * @return the number of rows of the table.
+   * @see #count()
+   */
+  public int rowCount() {
+    return rowCount;
+  }
+
+  private Table add(Column column) {
+    for(var existing: columns) {
+      if (existing.name.equals(column.name)) {
+        throw new IllegalArgumentException("duplicate column " + column.name);
+      }
+    }
+    var columns = Arrays.copyOf(this.columns, this.columns.length + 1);
+    columns[this.columns.length] = column;
+    return new Table(vectorHandle, rowCount, columns, filters);
+  }
+
+  private Table add(Filter filter) {
+    var filters = Arrays.copyOf(this.filters, this.filters.length + 1);
+    filters[this.filters.length] = filter;
+    return new Table(vectorHandle, rowCount, columns, filters);
+  }
+
+  // each lambda has its own inline cache if the vector handle is created by VectorHandle.of()
+  private VectorHandle vectorHandle(Object lambda) {
+    return vectorHandle instanceof Impl.VectorHandleImpl impl? impl.handle(lambda): vectorHandle;
+  }
+
+  private int indexOf(String name) {
+    requireNonNull(name);
+    for (var i = 0; i < columns.length; i++) {
+      if (columns[i].name.equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("unknown column " + name);
+  }
+
+  private int indexOf(String name, Kind kind) {
+    var index = indexOf(name);
+    if (columns[index].kind != kind) {
+      throw new IllegalArgumentException("column " + name + " is not a column of " + kind.elementClass + "s");
+    }
+    return index;
+  }
+
+  private int[] parameters(Kind kind, String... names) {
+    var parameters = new int[names.length];
+    for (var i = 0; i < names.length; i++) {
+      parameters[i] = indexOf(names[i], kind);
+    }
+    return parameters;
+  }
+
+  private Table with(String name, Kind kind, Object values, int length) {
+    requireNonNull(name);
+    if (length != rowCount) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    return add(new Column(name, kind, values, null, null, null));
+  }
+
+  /**
+   * Returns a new table with a new column of ints named {@code name}.
+   * @param name the name of the column.
+   * @param values the values of the column.
+   * @return a new table.
+   * @throws IllegalArgumentException if the length of the array is not the number of rows or
+   *   if a column with the same name already exists.
+   */
+  public Table with(String name, int[] values) {
+    return with(name, Kind.INT, values, values.length);
+  }
+
+  /**
+   * Returns a new table with a new column of longs named {@code name}.
+   * @param name the name of the column.
+   * @param values the values of the column.
+   * @return a new table.
+   * @throws IllegalArgumentException if the length of the array is not the number of rows or
+   *   if a column with the same name already exists.
+   */
+  public Table with(String name, long[] values) {
+    return with(name, Kind.LONG, values, values.length);
+  }
+
+  /**
+   * Returns a new table with a new column of floats named {@code name}.
+   * @param name the name of the column.
+   * @param values the values of the column.
+   * @return a new table.
+   * @throws IllegalArgumentException if the length of the array is not the number of rows or
+   *   if a column with the same name already exists.
+   */
+  public Table with(String name, float[] values) {
+    return with(name, Kind.FLOAT, values, values.length);
+  }
+
+  /**
+   * Returns a new table with a new column of doubles named {@code name}.
+   * @param name the name of the column.
+   * @param values the values of the column.
+   * @return a new table.
+   * @throws IllegalArgumentException if the length of the array is not the number of rows or
+   *   if a column with the same name already exists.
+   */
+  public Table with(String name, double[] values) {
+    return with(name, Kind.DOUBLE, values, values.length);
+  }
+
+  private Table project(String name, Kind kind, Object operator, String... names) {
+    requireNonNull(name);
+    requireNonNull(operator);
+    return add(new Column(name, kind, null, operator, vectorHandle(operator), parameters(kind, names)));
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the column {@code a}.
+   * @param name the name of the new column.
+   * @param a the name of a column of ints.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of ints or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectInt(String name, String a, VectorHandle.IIOp operator) {
+    return project(name, Kind.INT, operator, a);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the columns {@code a} and {@code b}.
+   * @param name the name of the new column.
+   * @param a the name of a column of ints.
+   * @param b the name of a column of ints.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of ints or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectInt(String name, String a, String b, VectorHandle.IIIOp operator) {
+    return project(name, Kind.INT, operator, a, b);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the column {@code a}.
+   * @param name the name of the new column.
+   * @param a the name of a column of longs.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of longs or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectLong(String name, String a, VectorHandle.LLOp operator) {
+    return project(name, Kind.LONG, operator, a);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the columns {@code a} and {@code b}.
+   * @param name the name of the new column.
+   * @param a the name of a column of longs.
+   * @param b the name of a column of longs.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of longs or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectLong(String name, String a, String b, VectorHandle.LLLOp operator) {
+    return project(name, Kind.LONG, operator, a, b);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the column {@code a}.
+   * @param name the name of the new column.
+   * @param a the name of a column of floats.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of floats or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectFloat(String name, String a, VectorHandle.FFOp operator) {
+    return project(name, Kind.FLOAT, operator, a);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the columns {@code a} and {@code b}.
+   * @param name the name of the new column.
+   * @param a the name of a column of floats.
+   * @param b the name of a column of floats.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of floats or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectFloat(String name, String a, String b, VectorHandle.FFFOp operator) {
+    return project(name, Kind.FLOAT, operator, a, b);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the column {@code a}.
+   * @param name the name of the new column.
+   * @param a the name of a column of doubles.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of doubles or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectDouble(String name, String a, VectorHandle.DDOp operator) {
+    return project(name, Kind.DOUBLE, operator, a);
+  }
+
+  /**
+   * Returns a new table with a new column named {@code name} computed by applying the operator
+   * on each value of the columns {@code a} and {@code b}.
+   * @param name the name of the new column.
+   * @param a the name of a column of doubles.
+   * @param b the name of a column of doubles.
+   * @param operator a lambda that specify the operator.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of doubles or
+   *   if a column named {@code name} already exists.
+   */
+  public Table projectDouble(String name, String a, String b, VectorHandle.DDDOp operator) {
+    return project(name, Kind.DOUBLE, operator, a, b);
+  }
+
+  private Table filter(Kind kind, Object predicate, String... names) {
+    requireNonNull(predicate);
+    return add(new Filter(kind, predicate, vectorHandle(predicate), parameters(kind, names)));
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the value
+   * of the column {@code a} is true.
+   * @param a the name of a column of ints.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of ints.
+   */
+  public Table filterInt(String a, VectorHandle.IZOp predicate) {
+    return filter(Kind.INT, predicate, a);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the values
+   * of the columns {@code a} and {@code b} is true.
+   * @param a the name of a column of ints.
+   * @param b the name of a column of ints.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of ints.
+   */
+  public Table filterInt(String a, String b, VectorHandle.IIZOp predicate) {
+    return filter(Kind.INT, predicate, a, b);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the value
+   * of the column {@code a} is true.
+   * @param a the name of a column of longs.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of longs.
+   */
+  public Table filterLong(String a, VectorHandle.LZOp predicate) {
+    return filter(Kind.LONG, predicate, a);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the values
+   * of the columns {@code a} and {@code b} is true.
+   * @param a the name of a column of longs.
+   * @param b the name of a column of longs.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of longs.
+   */
+  public Table filterLong(String a, String b, VectorHandle.LLZOp predicate) {
+    return filter(Kind.LONG, predicate, a, b);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the value
+   * of the column {@code a} is true.
+   * @param a the name of a column of floats.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of floats.
+   */
+  public Table filterFloat(String a, VectorHandle.FZOp predicate) {
+    return filter(Kind.FLOAT, predicate, a);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the values
+   * of the columns {@code a} and {@code b} is true.
+   * @param a the name of a column of floats.
+   * @param b the name of a column of floats.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of floats.
+   */
+  public Table filterFloat(String a, String b, VectorHandle.FFZOp predicate) {
+    return filter(Kind.FLOAT, predicate, a, b);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the value
+   * of the column {@code a} is true.
+   * @param a the name of a column of doubles.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the column {@code a} does not exist or is not a column of doubles.
+   */
+  public Table filterDouble(String a, VectorHandle.DZOp predicate) {
+    return filter(Kind.DOUBLE, predicate, a);
+  }
+
+  /**
+   * Returns a new table that only keeps the rows for which the predicate on the values
+   * of the columns {@code a} and {@code b} is true.
+   * @param a the name of a column of doubles.
+   * @param b the name of a column of doubles.
+   * @param predicate a lambda that specify the predicate.
+   * @return a new table.
+   * @throws IllegalArgumentException if the columns {@code a} or {@code b} do not exist or are not columns of doubles.
+   */
+  public Table filterDouble(String a, String b, VectorHandle.DDZOp predicate) {
+    return filter(Kind.DOUBLE, predicate, a, b);
+  }
+
+  /**
+   * Iterates over the batches of rows, for each batch, computes the projected columns needed
+   * and the bitmap of the selected rows.
+   */
+  private final class Cursor {
+    private final boolean[] needed;
+    private final Object[] arrays;
+    private final int[] offsets;
+    private final long[] selection;
+    private final long[] bits;
+    private int start;
+    private int length;
+
+    private Cursor(int column) {
+      // a projection only depends on the columns defined before it
+      var needed = new boolean[columns.length];
+      if (column != -1) {
+        needed[column] = true;
+      }
+      for (var filter: filters) {
+        for (var parameter: filter.parameters) {
+          needed[parameter] = true;
+        }
+      }
+      for (var i = columns.length; --i >= 0;) {
+        if (needed[i] && columns[i].values == null) {
+          for (var parameter: columns[i].parameters) {
+            needed[parameter] = true;
+          }
+        }
+      }
+      var arrays = new Object[columns.length];
+      for (var i = 0; i < columns.length; i++) {
+        var values = columns[i].values;
+        arrays[i] = values != null || !needed[i]? values: Array.newInstance(columns[i].kind.elementClass, Math.min(BATCH_SIZE, rowCount));
+      }
+      this.needed = needed;
+      this.arrays = arrays;
+      this.offsets = new int[columns.length];
+      this.selection = filters.length == 0? null: new long[BATCH_SIZE >>> 6];
+      this.bits = filters.length == 0? null: new long[BATCH_SIZE >>> 6];
+    }
+
+    private boolean next() {
+      start += length;
+      if (start >= rowCount) {
+        return false;
+      }
+      length = Math.min(BATCH_SIZE, rowCount - start);
+      for (var i = 0; i < columns.length; i++) {
+        var column = columns[i];
+        if (column.values != null) {
+          offsets[i] = start;
+          continue;
+        }
+        if (needed[i]) {   // the offset of a projected column is always 0
+          project(column, arrays[i], arrays, offsets, length);
+        }
+      }
+      for (var i = 0; i < filters.length; i++) {
+        Arrays.fill(bits, 0L);
+        select(filters[i], bits, arrays, offsets, length);
+        if (i == 0) {
+          System.arraycopy(bits, 0, selection, 0, bits.length);
+        } else {
+          for (var j = 0; j < bits.length; j++) {
+            selection[j] &= bits[j];
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  private void project(Column column, Object dest, Object[] arrays, int[] offsets, int length) {
+    switch (column.kind) {
+      case INT -> computeInts(column.vectorHandle, column.operator, (int[]) dest, column.parameters, arrays, offsets, length);
+      case LONG -> computeLongs(column.vectorHandle, column.operator, (long[]) dest, column.parameters, arrays, offsets, length);
+      case FLOAT -> computeFloats(column.vectorHandle, column.operator, (float[]) dest, column.parameters, arrays, offsets, length);
+      case DOUBLE -> computeDoubles(column.vectorHandle, column.operator, (double[]) dest, column.parameters, arrays, offsets, length);
+    }
+  }
+
+  private void computeInts(VectorHandle vectorHandle, Object operator, int[] dest, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (int[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (int[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, aOffset + i);
+      var vb = b == null? null: IntVector.fromArray(INT_SPECIES, b, bOffset + i);
+      var vc = (IntVector) vectorHandle.invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < length; i++) {
+      dest[i] = b == null?
+          ((VectorHandle.IIOp) operator).apply(a[aOffset + i]):
+          ((VectorHandle.IIIOp) operator).apply(a[aOffset + i], b[bOffset + i]);
+    }
+  }
+
+  private void computeLongs(VectorHandle vectorHandle, Object operator, long[] dest, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (long[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (long[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, aOffset + i);
+      var vb = b == null? null: LongVector.fromArray(LONG_SPECIES, b, bOffset + i);
+      var vc = (LongVector) vectorHandle.invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < length; i++) {
+      dest[i] = b == null?
+          ((VectorHandle.LLOp) operator).apply(a[aOffset + i]):
+          ((VectorHandle.LLLOp) operator).apply(a[aOffset + i], b[bOffset + i]);
+    }
+  }
+
+  private void computeFloats(VectorHandle vectorHandle, Object operator, float[] dest, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (float[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (float[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+      var vb = b == null? null: FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+      var vc = (FloatVector) vectorHandle.invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < length; i++) {
+      dest[i] = b == null?
+          ((VectorHandle.FFOp) operator).apply(a[aOffset + i]):
+          ((VectorHandle.FFFOp) operator).apply(a[aOffset + i], b[bOffset + i]);
+    }
+  }
+
+  private void computeDoubles(VectorHandle vectorHandle, Object operator, double[] dest, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (double[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (double[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, aOffset + i);
+      var vb = b == null? null: DoubleVector.fromArray(DOUBLE_SPECIES, b, bOffset + i);
+      var vc = (DoubleVector) vectorHandle.invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < length; i++) {
+      dest[i] = b == null?
+          ((VectorHandle.DDOp) operator).apply(a[aOffset + i]):
+          ((VectorHandle.DDDOp) operator).apply(a[aOffset + i], b[bOffset + i]);
+    }
+  }
+
+  private void select(Filter filter, long[] bits, Object[] arrays, int[] offsets, int length) {
+    switch (filter.kind) {
+      case INT -> testInts(filter.vectorHandle, filter.predicate, bits, filter.parameters, arrays, offsets, length);
+      case LONG -> testLongs(filter.vectorHandle, filter.predicate, bits, filter.parameters, arrays, offsets, length);
+      case FLOAT -> testFloats(filter.vectorHandle, filter.predicate, bits, filter.parameters, arrays, offsets, length);
+      case DOUBLE -> testDoubles(filter.vectorHandle, filter.predicate, bits, filter.parameters, arrays, offsets, length);
+    }
+  }
+
+  private void testInts(VectorHandle vectorHandle, Object predicate, long[] bits, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (int[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (int[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, aOffset + i);
+      var vb = b == null? null: IntVector.fromArray(INT_SPECIES, b, bOffset + i);
+      var mask = (VectorMask<?>) vectorHandle.invoke(predicate, va, vb, null, null);
+      bits[i >>> 6] |= mask.toLong() << i;  // the number of lanes divides 64
+    }
+    for (; i < length; i++) {
+      var result = b == null?
+          ((VectorHandle.IZOp) predicate).apply(a[aOffset + i]):
+          ((VectorHandle.IIZOp) predicate).apply(a[aOffset + i], b[bOffset + i]);
+      if (result) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private void testLongs(VectorHandle vectorHandle, Object predicate, long[] bits, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (long[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (long[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, aOffset + i);
+      var vb = b == null? null: LongVector.fromArray(LONG_SPECIES, b, bOffset + i);
+      var mask = (VectorMask<?>) vectorHandle.invoke(predicate, va, vb, null, null);
+      bits[i >>> 6] |= mask.toLong() << i;  // the number of lanes divides 64
+    }
+    for (; i < length; i++) {
+      var result = b == null?
+          ((VectorHandle.LZOp) predicate).apply(a[aOffset + i]):
+          ((VectorHandle.LLZOp) predicate).apply(a[aOffset + i], b[bOffset + i]);
+      if (result) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private void testFloats(VectorHandle vectorHandle, Object predicate, long[] bits, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (float[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (float[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+      var vb = b == null? null: FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+      var mask = (VectorMask<?>) vectorHandle.invoke(predicate, va, vb, null, null);
+      bits[i >>> 6] |= mask.toLong() << i;  // the number of lanes divides 64
+    }
+    for (; i < length; i++) {
+      var result = b == null?
+          ((VectorHandle.FZOp) predicate).apply(a[aOffset + i]):
+          ((VectorHandle.FFZOp) predicate).apply(a[aOffset + i], b[bOffset + i]);
+      if (result) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private void testDoubles(VectorHandle vectorHandle, Object predicate, long[] bits, int[] parameters, Object[] arrays, int[] offsets, int length) {
+    var a = (double[]) arrays[parameters[0]];
+    var aOffset = offsets[parameters[0]];
+    var b = parameters.length == 1? null: (double[]) arrays[parameters[1]];
+    var bOffset = parameters.length == 1? 0: offsets[parameters[1]];
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, aOffset + i);
+      var vb = b == null? null: DoubleVector.fromArray(DOUBLE_SPECIES, b, bOffset + i);
+      var mask = (VectorMask<?>) vectorHandle.invoke(predicate, va, vb, null, null);
+      bits[i >>> 6] |= mask.toLong() << i;  // the number of lanes divides 64
+    }
+    for (; i < length; i++) {
+      var result = b == null?
+          ((VectorHandle.DZOp) predicate).apply(a[aOffset + i]):
+          ((VectorHandle.DDZOp) predicate).apply(a[aOffset + i], b[bOffset + i]);
+      if (result) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+  }
+
+  private static boolean isSelected(long[] selection, int i) {
+    return selection == null || (selection[i >>> 6] & 1L << i) != 0;
+  }
+
+  /**
+   * Returns the number of rows selected by the filters.
+   * @return the number of rows selected by the filters.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int count() {
+    if (filters.length == 0) {
+      return rowCount;
+    }
+    var cursor = new Cursor(-1);
+    var count = 0;
+    while (cursor.next()) {
+      for (var word: cursor.selection) {
+        count += Long.bitCount(word);
+      }
+    }
+    return count;
+  }
+
+  private int reduceInts(int column, VectorOperators.Associative operator, int identity, VectorHandle.IIIOp combiner) {
+    var cursor = new Cursor(column);
+    var acc = IntVector.broadcast(INT_SPECIES, identity);
+    var result = identity;
+    while (cursor.next()) {
+      var a = (int[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = INT_SPECIES.loopBound(length);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, offset + i);
+        acc = selection == null?
+            acc.lanewise(operator, va):
+            acc.lanewise(operator, va, VectorMask.fromLong(INT_SPECIES, selection[i >>> 6] >>> i));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result = combiner.apply(result, a[offset + i]);
+        }
+      }
+    }
+    return combiner.apply(result, acc.reduceLanes(operator));
+  }
+
+  private long reduceLongs(int column, VectorOperators.Associative operator, long identity, VectorHandle.LLLOp combiner) {
+    var cursor = new Cursor(column);
+    var acc = LongVector.broadcast(LONG_SPECIES, identity);
+    var result = identity;
+    while (cursor.next()) {
+      var a = (long[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = LONG_SPECIES.loopBound(length);
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        var va = LongVector.fromArray(LONG_SPECIES, a, offset + i);
+        acc = selection == null?
+            acc.lanewise(operator, va):
+            acc.lanewise(operator, va, VectorMask.fromLong(LONG_SPECIES, selection[i >>> 6] >>> i));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result = combiner.apply(result, a[offset + i]);
+        }
+      }
+    }
+    return combiner.apply(result, acc.reduceLanes(operator));
+  }
+
+  private float reduceFloats(int column, VectorOperators.Associative operator, float identity, VectorHandle.FFFOp combiner) {
+    var cursor = new Cursor(column);
+    var acc = FloatVector.broadcast(FLOAT_SPECIES, identity);
+    var result = identity;
+    while (cursor.next()) {
+      var a = (float[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = FLOAT_SPECIES.loopBound(length);
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, offset + i);
+        acc = selection == null?
+            acc.lanewise(operator, va):
+            acc.lanewise(operator, va, VectorMask.fromLong(FLOAT_SPECIES, selection[i >>> 6] >>> i));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result = combiner.apply(result, a[offset + i]);
+        }
+      }
+    }
+    return combiner.apply(result, acc.reduceLanes(operator));
+  }
+
+  private double reduceDoubles(int column, VectorOperators.Associative operator, double identity, VectorHandle.DDDOp combiner) {
+    var cursor = new Cursor(column);
+    var acc = DoubleVector.broadcast(DOUBLE_SPECIES, identity);
+    var result = identity;
+    while (cursor.next()) {
+      var a = (double[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = DOUBLE_SPECIES.loopBound(length);
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, offset + i);
+        acc = selection == null?
+            acc.lanewise(operator, va):
+            acc.lanewise(operator, va, VectorMask.fromLong(DOUBLE_SPECIES, selection[i >>> 6] >>> i));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result = combiner.apply(result, a[offset + i]);
+        }
+      }
+    }
+    return combiner.apply(result, acc.reduceLanes(operator));
+  }
+
+  private long sumIntsAsLong(int column) {
+    var cursor = new Cursor(column);
+    var zero = IntVector.zero(INT_SPECIES);
+    var acc = LongVector.zero(LONG_SPECIES);
+    var result = 0L;
+    while (cursor.next()) {
+      var a = (int[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = INT_SPECIES.loopBound(length);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, offset + i);
+        if (selection != null) {
+          va = zero.blend(va, VectorMask.fromLong(INT_SPECIES, selection[i >>> 6] >>> i));
+        }
+        acc = acc.add(va.convertShape(VectorOperators.I2L, LONG_SPECIES, 0))
+            .add(va.convertShape(VectorOperators.I2L, LONG_SPECIES, 1));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result += a[offset + i];
+        }
+      }
+    }
+    return result + acc.reduceLanes(VectorOperators.ADD);
+  }
+
+  private double sumFloatsAsDouble(int column) {
+    var cursor = new Cursor(column);
+    var zero = FloatVector.zero(FLOAT_SPECIES);
+    var acc = DoubleVector.zero(DOUBLE_SPECIES);
+    var result = 0.0;
+    while (cursor.next()) {
+      var a = (float[]) cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      var length = cursor.length;
+      int i = 0;
+      int bound = FLOAT_SPECIES.loopBound(length);
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, offset + i);
+        if (selection != null) {
+          va = zero.blend(va, VectorMask.fromLong(FLOAT_SPECIES, selection[i >>> 6] >>> i));
+        }
+        acc = acc.add(va.convertShape(VectorOperators.F2D, DOUBLE_SPECIES, 0))
+            .add(va.convertShape(VectorOperators.F2D, DOUBLE_SPECIES, 1));
+      }
+      for (; i < length; i++) {
+        if (isSelected(selection, i)) {
+          result += a[offset + i];
+        }
+      }
+    }
+    return result + acc.reduceLanes(VectorOperators.ADD);
+  }
+
+  private int integralColumn(String name) {
+    var column = indexOf(name);
+    var kind = columns[column].kind;
+    if (kind != Kind.INT && kind != Kind.LONG) {
+      throw new IllegalArgumentException("column " + name + " is not a column of ints or longs");
+    }
+    return column;
+  }
+
+  private int floatingPointColumn(String name) {
+    var column = indexOf(name);
+    var kind = columns[column].kind;
+    if (kind != Kind.FLOAT && kind != Kind.DOUBLE) {
+      throw new IllegalArgumentException("column " + name + " is not a column of floats or doubles");
+    }
+    return column;
+  }
+
+  /**
+   * Returns the sum of the values of the column of ints or longs {@code name} for the rows selected by the filters.
+   * The values of a column of ints are added as longs so the sum does not overflow.
+   * @param name the name of a column of ints or longs.
+   * @return the sum of the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of ints or longs.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long sumAsLong(String name) {
+    var column = integralColumn(name);
+    if (columns[column].kind == Kind.INT) {
+      return sumIntsAsLong(column);
+    }
+    return reduceLongs(column, VectorOperators.ADD, 0, Long::sum);
+  }
+
+  /**
+   * Returns the minimum of the values of the column of ints or longs {@code name} for the rows selected by the filters.
+   * @param name the name of a column of ints or longs.
+   * @return the minimum of the values of the column or {@link Integer#MAX_VALUE} (resp. {@link Long#MAX_VALUE})
+   *   if no row is selected.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of ints or longs.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long minAsLong(String name) {
+    var column = integralColumn(name);
+    if (columns[column].kind == Kind.INT) {
+      return reduceInts(column, VectorOperators.MIN, Integer.MAX_VALUE, Math::min);
+    }
+    return reduceLongs(column, VectorOperators.MIN, Long.MAX_VALUE, Math::min);
+  }
+
+  /**
+   * Returns the maximum of the values of the column of ints or longs {@code name} for the rows selected by the filters.
+   * @param name the name of a column of ints or longs.
+   * @return the maximum of the values of the column or {@link Integer#MIN_VALUE} (resp. {@link Long#MIN_VALUE})
+   *   if no row is selected.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of ints or longs.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long maxAsLong(String name) {
+    var column = integralColumn(name);
+    if (columns[column].kind == Kind.INT) {
+      return reduceInts(column, VectorOperators.MAX, Integer.MIN_VALUE, Math::max);
+    }
+    return reduceLongs(column, VectorOperators.MAX, Long.MIN_VALUE, Math::max);
+  }
+
+  /**
+   * Returns the sum of the values of the column of floats or doubles {@code name} for the rows selected by the filters.
+   * The values of a column of floats are added as doubles.
+   * @param name the name of a column of floats or doubles.
+   * @return the sum of the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of floats or doubles.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double sumAsDouble(String name) {
+    var column = floatingPointColumn(name);
+    if (columns[column].kind == Kind.FLOAT) {
+      return sumFloatsAsDouble(column);
+    }
+    return reduceDoubles(column, VectorOperators.ADD, 0, Double::sum);
+  }
+
+  /**
+   * Returns the minimum of the values of the column of floats or doubles {@code name} for the rows selected by the filters.
+   * @param name the name of a column of floats or doubles.
+   * @return the minimum of the values of the column or {@link Double#POSITIVE_INFINITY} if no row is selected.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of floats or doubles.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double minAsDouble(String name) {
+    var column = floatingPointColumn(name);
+    if (columns[column].kind == Kind.FLOAT) {
+      return reduceFloats(column, VectorOperators.MIN, Float.POSITIVE_INFINITY, Math::min);
+    }
+    return reduceDoubles(column, VectorOperators.MIN, Double.POSITIVE_INFINITY, Math::min);
+  }
+
+  /**
+   * Returns the maximum of the values of the column of floats or doubles {@code name} for the rows selected by the filters.
+   * @param name the name of a column of floats or doubles.
+   * @return the maximum of the values of the column or {@link Double#NEGATIVE_INFINITY} if no row is selected.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of floats or doubles.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double maxAsDouble(String name) {
+    var column = floatingPointColumn(name);
+    if (columns[column].kind == Kind.FLOAT) {
+      return reduceFloats(column, VectorOperators.MAX, Float.NEGATIVE_INFINITY, Math::max);
+    }
+    return reduceDoubles(column, VectorOperators.MAX, Double.NEGATIVE_INFINITY, Math::max);
+  }
+
+  private Object values(String name, Kind kind) {
+    var column = indexOf(name, kind);
+    var cursor = new Cursor(column);
+    var result = Array.newInstance(kind.elementClass, rowCount);
+    var size = 0;
+    while (cursor.next()) {
+      var array = cursor.arrays[column];
+      var offset = cursor.offsets[column];
+      var selection = cursor.selection;
+      if (selection == null) {
+        System.arraycopy(array, offset, result, size, cursor.length);
+        size += cursor.length;
+        continue;
+      }
+      // copy each run of consecutive selected rows
+      for (var i = 0; i < selection.length; i++) {
+        var word = selection[i];
+        while (word != 0) {
+          var start = Long.numberOfTrailingZeros(word);
+          var run = Long.numberOfTrailingZeros(~(word >>> start));
+          System.arraycopy(array, offset + (i << 6) + start, result, size, run);
+          size += run;
+          word = start + run == 64? 0: word & -1L << (start + run);
+        }
+      }
+    }
+    if (size == rowCount) {
+      return result;
+    }
+    var values = Array.newInstance(kind.elementClass, size);
+    System.arraycopy(result, 0, values, 0, size);
+    return values;
+  }
+
+  /**
+   * Returns the values of the column of ints {@code name} for the rows selected by the filters.
+   * @param name the name of a column of ints.
+   * @return a new array containing the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of ints.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public int[] intColumn(String name) {
+    return (int[]) values(name, Kind.INT);
+  }
+
+  /**
+   * Returns the values of the column of longs {@code name} for the rows selected by the filters.
+   * @param name the name of a column of longs.
+   * @return a new array containing the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of longs.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public long[] longColumn(String name) {
+    return (long[]) values(name, Kind.LONG);
+  }
+
+  /**
+   * Returns the values of the column of floats {@code name} for the rows selected by the filters.
+   * @param name the name of a column of floats.
+   * @return a new array containing the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of floats.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public float[] floatColumn(String name) {
+    return (float[]) values(name, Kind.FLOAT);
+  }
+
+  /**
+   * Returns the values of the column of doubles {@code name} for the rows selected by the filters.
+   * @param name the name of a column of doubles.
+   * @return a new array containing the values of the column.
+   * @throws IllegalArgumentException if the column does not exist or is not a column of doubles.
+   * @throws IllegalStateException if the lambdas can not be converted to an operator.
+   */
+  public double[] doubleColumn(String name) {
+    return (double[]) values(name, Kind.DOUBLE);
+  }
+}
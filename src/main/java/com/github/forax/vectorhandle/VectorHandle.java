@@ -1,17 +1,26 @@
 package com.github.forax.vectorhandle;
 
+import jdk.incubator.vector.ByteVector;
 import jdk.incubator.vector.DoubleVector;
 import jdk.incubator.vector.FloatVector;
 import jdk.incubator.vector.IntVector;
 import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
 
 import java.io.Serializable;
 import java.lang.invoke.MethodHandles.Lookup;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
+import static com.github.forax.vectorhandle.Impl.BYTE_SPECIES;
 import static com.github.forax.vectorhandle.Impl.DOUBLE_SPECIES;
 import static com.github.forax.vectorhandle.Impl.FLOAT_SPECIES;
 import static com.github.forax.vectorhandle.Impl.INT_SPECIES;
 import static com.github.forax.vectorhandle.Impl.LONG_SPECIES;
+import static com.github.forax.vectorhandle.Impl.SHORT_SPECIES;
+import static java.util.Objects.requireNonNull;
 
 /**
  * A more high level API able to vectorize operations on arrays. Use of the methods {@code apply}
@@ -32,8 +41,11 @@ import static com.github.forax.vectorhandle.Impl.LONG_SPECIES;
  * </pre>
  *
  * <p>
- * Note: you can not use a {@code VectorHandle} for more than one lambda, and the lambda
- * can not capture values, do side effects or call an opaque/unknown method.
+ * Note: a {@code VectorHandle} caches the operations derived from the lambdas, so it should only be used
+ * with a small number of different lambdas (at most 8), and the lambdas
+ * can only capture primitive values and can not do side effects or call an opaque/unknown method.
+ * The lambdas created by the same lambda expression share the same operation,
+ * the values they capture are broadcast to vectors at each call.
  */
 public interface VectorHandle {
   /**
@@ -88,6 +100,32 @@ public interface VectorHandle {
     double apply(double a);
   }
 
+  /**
+   * A function that takes a byte and returns a byte.
+   */
+  @FunctionalInterface
+  interface BBOp extends Serializable {
+    /**
+     * A function that takes a byte and returns a byte.
+     * @param a a byte.
+     * @return a byte.
+     */
+    byte apply(byte a);
+  }
+
+  /**
+   * A function that takes a short and returns a short.
+   */
+  @FunctionalInterface
+  interface SSOp extends Serializable {
+    /**
+     * A function that takes a short and returns a short.
+     * @param a a short.
+     * @return a short.
+     */
+    short apply(short a);
+  }
+
   /**
    * A function that takes two ints and returns an int.
    */
@@ -144,6 +182,354 @@ public interface VectorHandle {
     double apply(double a, double b);
   }
 
+  /**
+   * A function that takes two bytes and returns a byte.
+   */
+  @FunctionalInterface
+  interface BBBOp extends Serializable {
+    /**
+     * A function that takes two bytes and returns a byte.
+     * @param a a byte.
+     * @param b a byte.
+     * @return a byte.
+     */
+    byte apply(byte a, byte b);
+  }
+
+  /**
+   * A function that takes two shorts and returns a short.
+   */
+  @FunctionalInterface
+  interface SSSOp extends Serializable {
+    /**
+     * A function that takes two shorts and returns a short.
+     * @param a a short.
+     * @param b a short.
+     * @return a short.
+     */
+    short apply(short a, short b);
+  }
+
+  /**
+   * A function that takes a float and an int and returns a float.
+   */
+  @FunctionalInterface
+  interface FIFOp extends Serializable {
+    /**
+     * A function that takes a float and an int and returns a float.
+     * @param a a float.
+     * @param b an int.
+     * @return a float.
+     */
+    float apply(float a, int b);
+  }
+
+  /**
+   * A function that takes a double and a long and returns a double.
+   */
+  @FunctionalInterface
+  interface DLDOp extends Serializable {
+    /**
+     * A function that takes a double and a long and returns a double.
+     * @param a a double.
+     * @param b a long.
+     * @return a double.
+     */
+    double apply(double a, long b);
+  }
+
+  /**
+   * A function that takes three ints and returns an int.
+   */
+  @FunctionalInterface
+  interface IIIIOp extends Serializable {
+    /**
+     * A function that takes three ints and returns an int.
+     * @param a an int.
+     * @param b an int.
+     * @param c an int.
+     * @return an int.
+     */
+    int apply(int a, int b, int c);
+  }
+
+  /**
+   * A function that takes three longs and returns a long.
+   */
+  @FunctionalInterface
+  interface LLLLOp extends Serializable {
+    /**
+     * A function that takes three longs and returns a long.
+     * @param a a long.
+     * @param b a long.
+     * @param c a long.
+     * @return a long.
+     */
+    long apply(long a, long b, long c);
+  }
+
+  /**
+   * A function that takes three floats and returns a float.
+   */
+  @FunctionalInterface
+  interface FFFFOp extends Serializable {
+    /**
+     * A function that takes three floats and returns a float.
+     * @param a a float.
+     * @param b a float.
+     * @param c a float.
+     * @return a float.
+     */
+    float apply(float a, float b, float c);
+  }
+
+  /**
+   * A function that takes three doubles and returns a double.
+   */
+  @FunctionalInterface
+  interface DDDDOp extends Serializable {
+    /**
+     * A function that takes three doubles and returns a double.
+     * @param a a double.
+     * @param b a double.
+     * @param c a double.
+     * @return a double.
+     */
+    double apply(double a, double b, double c);
+  }
+
+  /**
+   * A function that takes three bytes and returns a byte.
+   */
+  @FunctionalInterface
+  interface BBBBOp extends Serializable {
+    /**
+     * A function that takes three bytes and returns a byte.
+     * @param a a byte.
+     * @param b a byte.
+     * @param c a byte.
+     * @return a byte.
+     */
+    byte apply(byte a, byte b, byte c);
+  }
+
+  /**
+   * A function that takes three shorts and returns a short.
+   */
+  @FunctionalInterface
+  interface SSSSOp extends Serializable {
+    /**
+     * A function that takes three shorts and returns a short.
+     * @param a a short.
+     * @param b a short.
+     * @param c a short.
+     * @return a short.
+     */
+    short apply(short a, short b, short c);
+  }
+
+  /**
+   * A predicate that takes an int and returns a boolean.
+   */
+  @FunctionalInterface
+  interface IZOp extends Serializable {
+    /**
+     * A predicate that takes an int and returns a boolean.
+     * @param a an int.
+     * @return a boolean.
+     */
+    boolean apply(int a);
+  }
+
+  /**
+   * A predicate that takes a long and returns a boolean.
+   */
+  @FunctionalInterface
+  interface LZOp extends Serializable {
+    /**
+     * A predicate that takes a long and returns a boolean.
+     * @param a a long.
+     * @return a boolean.
+     */
+    boolean apply(long a);
+  }
+
+  /**
+   * A predicate that takes a float and returns a boolean.
+   */
+  @FunctionalInterface
+  interface FZOp extends Serializable {
+    /**
+     * A predicate that takes a float and returns a boolean.
+     * @param a a float.
+     * @return a boolean.
+     */
+    boolean apply(float a);
+  }
+
+  /**
+   * A predicate that takes a double and returns a boolean.
+   */
+  @FunctionalInterface
+  interface DZOp extends Serializable {
+    /**
+     * A predicate that takes a double and returns a boolean.
+     * @param a a double.
+     * @return a boolean.
+     */
+    boolean apply(double a);
+  }
+
+  /**
+   * A predicate that takes a byte and returns a boolean.
+   */
+  @FunctionalInterface
+  interface BZOp extends Serializable {
+    /**
+     * A predicate that takes a byte and returns a boolean.
+     * @param a a byte.
+     * @return a boolean.
+     */
+    boolean apply(byte a);
+  }
+
+  /**
+   * A predicate that takes a short and returns a boolean.
+   */
+  @FunctionalInterface
+  interface SZOp extends Serializable {
+    /**
+     * A predicate that takes a short and returns a boolean.
+     * @param a a short.
+     * @return a boolean.
+     */
+    boolean apply(short a);
+  }
+
+  /**
+   * A predicate that takes two ints and returns a boolean.
+   */
+  @FunctionalInterface
+  interface IIZOp extends Serializable {
+    /**
+     * A predicate that takes two ints and returns a boolean.
+     * @param a an int.
+     * @param b an int.
+     * @return a boolean.
+     */
+    boolean apply(int a, int b);
+  }
+
+  /**
+   * A predicate that takes two longs and returns a boolean.
+   */
+  @FunctionalInterface
+  interface LLZOp extends Serializable {
+    /**
+     * A predicate that takes two longs and returns a boolean.
+     * @param a a long.
+     * @param b a long.
+     * @return a boolean.
+     */
+    boolean apply(long a, long b);
+  }
+
+  /**
+   * A predicate that takes two floats and returns a boolean.
+   */
+  @FunctionalInterface
+  interface FFZOp extends Serializable {
+    /**
+     * A predicate that takes two floats and returns a boolean.
+     * @param a a float.
+     * @param b a float.
+     * @return a boolean.
+     */
+    boolean apply(float a, float b);
+  }
+
+  /**
+   * A predicate that takes two doubles and returns a boolean.
+   */
+  @FunctionalInterface
+  interface DDZOp extends Serializable {
+    /**
+     * A predicate that takes two doubles and returns a boolean.
+     * @param a a double.
+     * @param b a double.
+     * @return a boolean.
+     */
+    boolean apply(double a, double b);
+  }
+
+  /**
+   * A predicate that takes two bytes and returns a boolean.
+   */
+  @FunctionalInterface
+  interface BBZOp extends Serializable {
+    /**
+     * A predicate that takes two bytes and returns a boolean.
+     * @param a a byte.
+     * @param b a byte.
+     * @return a boolean.
+     */
+    boolean apply(byte a, byte b);
+  }
+
+  /**
+   * A predicate that takes two shorts and returns a boolean.
+   */
+  @FunctionalInterface
+  interface SSZOp extends Serializable {
+    /**
+     * A predicate that takes two shorts and returns a boolean.
+     * @param a a short.
+     * @param b a short.
+     * @return a boolean.
+     */
+    boolean apply(short a, short b);
+  }
+
+  /**
+   * The value used by a stencil for the neighbors of the first and the last element of an array.
+   *
+   * @see #stencil(int[], int[], Padding, IIIIOp)
+   */
+  enum Padding {
+    /**
+     * The neighbors outside the array are zeros.
+     */
+    ZERO,
+    /**
+     * The neighbors outside the array are the first or the last element of the array.
+     */
+    REPLICATE,
+    /**
+     * The array is circular, the neighbor of the first element is the last element and vice versa.
+     */
+    WRAP
+  }
+
+  /**
+   * How the bits computed by a {@code select} are combined with the bits of the bitmap.
+   *
+   * @see #select(long[], int[], Selection, IZOp)
+   */
+  enum Selection {
+    /**
+     * The bits of the bitmap are replaced.
+     */
+    SET,
+    /**
+     * The bits are combined with the bits of the bitmap using a bitwise and.
+     */
+    AND,
+    /**
+     * The bits are combined with the bits of the bitmap using a bitwise or.
+     */
+    OR
+  }
+
   /**
    * Apply an operator specified by lambda on several vectors.
    *
@@ -161,8 +547,18 @@ public interface VectorHandle {
    *     long           |  LongVector
    *     float          |  FloatVector
    *     double         |  DoubleVector
+   *     byte           |  ByteVector
+   *     short          |  ShortVector
    * </pre>
    *
+   * A lambda returning a boolean (a predicate) returns a {@code VectorMask} with the type
+   * of the vectors of its parameter.
+   *
+   * The operations of a lambda on bytes or shorts are done on the lanes of the vector,
+   * so the result of an addition, a subtraction, a multiplication or a negation
+   * should be cast back to a byte/short before being used by a division, {@code Math.min()}
+   * or {@code Math.max()}.
+   *
    * @param lambda a lambda that takes at most 4 parameters.
    * @param va a vector or null if the lambda as no first parameter.
    * @param vb a vector or null if the lambda as no second parameter.
@@ -188,6 +584,7 @@ public interface VectorHandle {
     }
     int i = 0;
     int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
     for (; i < bound; i += INT_SPECIES.length()) {
       var va = IntVector.fromArray(INT_SPECIES, a, i);
       var vb = (IntVector) invoke(operator, va, null, null, null);
@@ -214,6 +611,7 @@ public interface VectorHandle {
     }
     int i = 0;
     int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
     for (; i < bound; i += LONG_SPECIES.length()) {
       var va = LongVector.fromArray(LONG_SPECIES, a, i);
       var vb = (LongVector) invoke(operator, va, null, null, null);
@@ -240,6 +638,7 @@ public interface VectorHandle {
     }
     int i = 0;
     int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
     for (; i < bound; i += FLOAT_SPECIES.length()) {
       var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
       var vb = (FloatVector) invoke(operator, va, null, null, null);
@@ -266,6 +665,7 @@ public interface VectorHandle {
     }
     int i = 0;
     int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
     for (; i < bound; i += DOUBLE_SPECIES.length()) {
       var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
       var vb = (DoubleVector) invoke(operator, va, null, null, null);
@@ -277,7 +677,7 @@ public interface VectorHandle {
   }
 
   /**
-   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * Apply the operator on each values of the array {@code a} and store
    * each result in the array {@code dest}.
    * @param dest the destination array.
    * @param a the array of parameters.
@@ -285,26 +685,26 @@ public interface VectorHandle {
    * @throws IllegalArgumentException if the arrays does not have the same length.
    * @throws IllegalStateException if the lambda can not be converted to an operator.
    */
-  default void apply(int[] dest, int[] a, int[] b, IIIOp operator) {
+  default void apply(byte[] dest, byte[] a, BBOp operator) {
     var length = dest.length;
-    if (a.length != length || b.length != length) {
+    if (a.length != length) {
       throw new IllegalArgumentException("wrong length");
     }
     int i = 0;
-    int bound = INT_SPECIES.loopBound(a.length);
-    for (; i < bound; i += INT_SPECIES.length()) {
-      var va = IntVector.fromArray(INT_SPECIES, a, i);
-      var vb = IntVector.fromArray(INT_SPECIES, b, i);
-      var vc = (IntVector) invoke(operator, va, vb, null, null);
-      vc.intoArray(dest, i);
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var vb = (ByteVector) invoke(operator, va, null, null, null);
+      vb.intoArray(dest, i);
     }
     for (; i < a.length; i++) {
-      dest[i] = operator.apply(a[i], b[i]);
+      dest[i] = operator.apply(a[i]);
     }
   }
 
   /**
-   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * Apply the operator on each values of the array {@code a} and store
    * each result in the array {@code dest}.
    * @param dest the destination array.
    * @param a the array of parameters.
@@ -312,21 +712,21 @@ public interface VectorHandle {
    * @throws IllegalArgumentException if the arrays does not have the same length.
    * @throws IllegalStateException if the lambda can not be converted to an operator.
    */
-  default void apply(long[] dest, long[] a, long[] b, LLLOp operator) {
+  default void apply(short[] dest, short[] a, SSOp operator) {
     var length = dest.length;
-    if (a.length != length || b.length != length) {
+    if (a.length != length) {
       throw new IllegalArgumentException("wrong length");
     }
     int i = 0;
-    int bound = LONG_SPECIES.loopBound(a.length);
-    for (; i < bound; i += LONG_SPECIES.length()) {
-      var va = LongVector.fromArray(LONG_SPECIES, a, i);
-      var vb = LongVector.fromArray(LONG_SPECIES, b, i);
-      var vc = (LongVector) invoke(operator, va, vb, null, null);
-      vc.intoArray(dest, i);
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var vb = (ShortVector) invoke(operator, va, null, null, null);
+      vb.intoArray(dest, i);
     }
     for (; i < a.length; i++) {
-      dest[i] = operator.apply(a[i], b[i]);
+      dest[i] = operator.apply(a[i]);
     }
   }
 
@@ -339,49 +739,5066 @@ public interface VectorHandle {
    * @throws IllegalArgumentException if the arrays does not have the same length.
    * @throws IllegalStateException if the lambda can not be converted to an operator.
    */
-  default void apply(float[] dest, float[] a, float[] b, FFFOp operator) {
+  default void apply(int[] dest, int[] a, int[] b, IIIOp operator) {
     var length = dest.length;
     if (a.length != length || b.length != length) {
       throw new IllegalArgumentException("wrong length");
     }
     int i = 0;
-    int bound = FLOAT_SPECIES.loopBound(a.length);
-    for (; i < bound; i += FLOAT_SPECIES.length()) {
-      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
-      var vb = FloatVector.fromArray(FLOAT_SPECIES, b, i);
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = IntVector.fromArray(INT_SPECIES, b, i);
+      var vc = (IntVector) invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply(long[] dest, long[] a, long[] b, LLLOp operator) {
+    var length = dest.length;
+    if (a.length != length || b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var vb = LongVector.fromArray(LONG_SPECIES, b, i);
+      var vc = (LongVector) invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply(float[] dest, float[] a, float[] b, FFFOp operator) {
+    var length = dest.length;
+    if (a.length != length || b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var vb = FloatVector.fromArray(FLOAT_SPECIES, b, i);
       var vc = (FloatVector) invoke(operator, va, vb, null, null);
       vc.intoArray(dest, i);
     }
     for (; i < a.length; i++) {
-      dest[i] = operator.apply(a[i], b[i]);
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply(double[] dest, double[] a, double[] b, DDDOp operator) {
+    var length = dest.length;
+    if (a.length != length || b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var vb = DoubleVector.fromArray(DOUBLE_SPECIES, b, i);
+      var vc = (DoubleVector) invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply(byte[] dest, byte[] a, byte[] b, BBBOp operator) {
+    var length = dest.length;
+    if (a.length != length || b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var vb = ByteVector.fromArray(BYTE_SPECIES, b, i);
+      var vc = (ByteVector) invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and {@code b} and store
+   * each result in the array {@code dest}.
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply(short[] dest, short[] a, short[] b, SSSOp operator) {
+    var length = dest.length;
+    if (a.length != length || b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var vb = ShortVector.fromArray(SHORT_SPECIES, b, i);
+      var vc = (ShortVector) invoke(operator, va, vb, null, null);
+      vc.intoArray(dest, i);
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], b[i]);
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(int[][] dests, int[] a, IIOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(long[][] dests, long[] a, LLOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(float[][] dests, float[] a, FFOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(double[][] dests, double[] a, DDOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(byte[][] dests, byte[] a, BBOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(short[][] dests, short[] a, SSOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      invoke(multi, va, dests, i, null);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(int[][] dests, int[] a, int[] b, IIIOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = IntVector.fromArray(INT_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(long[][] dests, long[] a, long[] b, LLLOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var vb = LongVector.fromArray(LONG_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(float[][] dests, float[] a, float[] b, FFFOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var vb = FloatVector.fromArray(FLOAT_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(double[][] dests, double[] a, double[] b, DDDOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var vb = DoubleVector.fromArray(DOUBLE_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(byte[][] dests, byte[] a, byte[] b, BBBOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var vb = ByteVector.fromArray(BYTE_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each values of the array {@code a} and {@code b} and store
+   * the results of the operator at index {@code j} in the array {@code dests[j]}.
+   * The values of {@code a} and {@code b} are only loaded once for all operators.
+   * The operators are compiled together, so they count as one lambda in the cache of the vector handle.
+   * @param dests the destination arrays, one per operator.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param operators the lambdas that specify the operators.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *         if the number of destination arrays and the number of operators are different.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void apply(short[][] dests, short[] a, short[] b, SSSOp... operators) {
+    if (dests.length != operators.length) {
+      throw new IllegalArgumentException("wrong number of destinations");
+    }
+    var length = a.length;
+    if (b.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    for (var dest : dests) {
+      if (dest.length != length) {
+        throw new IllegalArgumentException("wrong length");
+      }
+    }
+    if (operators.length == 0) {
+      return;
+    }
+    // the operators are compiled into one kernel that stores the result of each operator
+    var multi = new Impl.Multi((Object[]) operators);
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var vb = ShortVector.fromArray(SHORT_SPECIES, b, i);
+      invoke(multi, va, vb, dests, i);
+    }
+    for (; i < a.length; i++) {
+      for (var j = 0; j < operators.length; j++) {
+        dests[j][i] = operators[j].apply(a[i], b[i]);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each record of 2 fields of the array {@code a} and store the
+   * results interleaved in the array {@code dest}, i.e. the record {@code i} is made of the values
+   * {@code a[2 * i]} and {@code a[2 * i + 1]} and the result of the operator at index {@code j} is stored in
+   * {@code dest[operators.length * i + j]}.
+   * By example, for complex numbers stored as (re, im) pairs, {@code (re, im) -> re * re + im * im}
+   * computes the squared magnitudes.
+   *
+   * The vectors of records are loaded then de-interleaved into one vector per field, and
+   * the vectors of results are interleaved before being stored, using lane permutations.
+   *
+   * @param dest the destination array.
+   * @param a the array of records.
+   * @param operators the lambdas that specify the operators, one per field of the results.
+   * @throws IllegalArgumentException if there is not between 1 and 3 operators, if the length of {@code a}
+   *         is not a multiple of 2, if the length of {@code dest} is not the number of records times
+   *         the number of operators or if the destination array is the array of records and there are
+   *         more operators than fields.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void applyInterleaved(float[] dest, float[] a, FFFOp... operators) {
+    var fields = operators.length;
+    if (fields < 1 || fields > 3) {
+      throw new IllegalArgumentException("wrong number of operators");
+    }
+    var count = a.length / 2;
+    if (a.length % 2 != 0 || dest.length != count * fields) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a && fields > 2) {
+      throw new IllegalArgumentException("the destination array can not be the array of records");
+    }
+    var length = FLOAT_SPECIES.length();
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(count);
+    Impl.recordCall(count, count - bound);
+    for (; i < bound; i += length) {
+      var v0 = FloatVector.fromArray(FLOAT_SPECIES, a, 2 * i);
+      var v1 = FloatVector.fromArray(FLOAT_SPECIES, a, 2 * i + length);
+      var va = (FloatVector) Impl.permute(Impl.FLOAT_SPLIT_2.get(0), v0, v1, null);
+      var vb = (FloatVector) Impl.permute(Impl.FLOAT_SPLIT_2.get(1), v0, v1, null);
+      var r0 = (FloatVector) invoke(operators[0], va, vb, null, null);
+      if (fields == 1) {
+        r0.intoArray(dest, i);
+        continue;
+      }
+      var r1 = (FloatVector) invoke(operators[1], va, vb, null, null);
+      var r2 = fields == 3? (FloatVector) invoke(operators[2], va, vb, null, null): null;
+      var merge = fields == 2? Impl.FLOAT_MERGE_2: Impl.FLOAT_MERGE_3;
+      for (var j = 0; j < fields; j++) {
+        var vr = (FloatVector) Impl.permute(merge.get(j), r0, r1, r2);
+        vr.intoArray(dest, fields * i + j * length);
+      }
+    }
+    for (; i < count; i++) {
+      var x = a[2 * i];
+      var y = a[2 * i + 1];
+      for (var j = 0; j < fields; j++) {
+        dest[fields * i + j] = operators[j].apply(x, y);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each record of 3 fields of the array {@code a} and store the
+   * results interleaved in the array {@code dest}, i.e. the record {@code i} is made of the values
+   * {@code a[3 * i]}, {@code a[3 * i + 1]} and {@code a[3 * i + 2]} and the result of the operator at index {@code j} is stored in
+   * {@code dest[operators.length * i + j]}.
+   * By example, for points stored as (x, y, z) triples, {@code (x, y, z) -> x * x + y * y + z * z}
+   * computes the squared distances to the origin.
+   *
+   * The vectors of records are loaded then de-interleaved into one vector per field, and
+   * the vectors of results are interleaved before being stored, using lane permutations.
+   *
+   * @param dest the destination array.
+   * @param a the array of records.
+   * @param operators the lambdas that specify the operators, one per field of the results.
+   * @throws IllegalArgumentException if there is not between 1 and 3 operators, if the length of {@code a}
+   *         is not a multiple of 3 or if the length of {@code dest} is not the number of records times
+   *         the number of operators.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void applyInterleaved(float[] dest, float[] a, FFFFOp... operators) {
+    var fields = operators.length;
+    if (fields < 1 || fields > 3) {
+      throw new IllegalArgumentException("wrong number of operators");
+    }
+    var count = a.length / 3;
+    if (a.length % 3 != 0 || dest.length != count * fields) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var length = FLOAT_SPECIES.length();
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(count);
+    Impl.recordCall(count, count - bound);
+    for (; i < bound; i += length) {
+      var v0 = FloatVector.fromArray(FLOAT_SPECIES, a, 3 * i);
+      var v1 = FloatVector.fromArray(FLOAT_SPECIES, a, 3 * i + length);
+      var v2 = FloatVector.fromArray(FLOAT_SPECIES, a, 3 * i + 2 * length);
+      var va = (FloatVector) Impl.permute(Impl.FLOAT_SPLIT_3.get(0), v0, v1, v2);
+      var vb = (FloatVector) Impl.permute(Impl.FLOAT_SPLIT_3.get(1), v0, v1, v2);
+      var vc = (FloatVector) Impl.permute(Impl.FLOAT_SPLIT_3.get(2), v0, v1, v2);
+      var r0 = (FloatVector) invoke(operators[0], va, vb, vc, null);
+      if (fields == 1) {
+        r0.intoArray(dest, i);
+        continue;
+      }
+      var r1 = (FloatVector) invoke(operators[1], va, vb, vc, null);
+      var r2 = fields == 3? (FloatVector) invoke(operators[2], va, vb, vc, null): null;
+      var merge = fields == 2? Impl.FLOAT_MERGE_2: Impl.FLOAT_MERGE_3;
+      for (var j = 0; j < fields; j++) {
+        var vr = (FloatVector) Impl.permute(merge.get(j), r0, r1, r2);
+        vr.intoArray(dest, fields * i + j * length);
+      }
+    }
+    for (; i < count; i++) {
+      var x = a[3 * i];
+      var y = a[3 * i + 1];
+      var z = a[3 * i + 2];
+      for (var j = 0; j < fields; j++) {
+        dest[fields * i + j] = operators[j].apply(x, y, z);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each record of 2 fields of the array {@code a} and store the
+   * results interleaved in the array {@code dest}, i.e. the record {@code i} is made of the values
+   * {@code a[2 * i]} and {@code a[2 * i + 1]} and the result of the operator at index {@code j} is stored in
+   * {@code dest[operators.length * i + j]}.
+   * By example, for complex numbers stored as (re, im) pairs, {@code (re, im) -> re * re + im * im}
+   * computes the squared magnitudes.
+   *
+   * The vectors of records are loaded then de-interleaved into one vector per field, and
+   * the vectors of results are interleaved before being stored, using lane permutations.
+   *
+   * @param dest the destination array.
+   * @param a the array of records.
+   * @param operators the lambdas that specify the operators, one per field of the results.
+   * @throws IllegalArgumentException if there is not between 1 and 3 operators, if the length of {@code a}
+   *         is not a multiple of 2, if the length of {@code dest} is not the number of records times
+   *         the number of operators or if the destination array is the array of records and there are
+   *         more operators than fields.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void applyInterleaved(double[] dest, double[] a, DDDOp... operators) {
+    var fields = operators.length;
+    if (fields < 1 || fields > 3) {
+      throw new IllegalArgumentException("wrong number of operators");
+    }
+    var count = a.length / 2;
+    if (a.length % 2 != 0 || dest.length != count * fields) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a && fields > 2) {
+      throw new IllegalArgumentException("the destination array can not be the array of records");
+    }
+    var length = DOUBLE_SPECIES.length();
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(count);
+    Impl.recordCall(count, count - bound);
+    for (; i < bound; i += length) {
+      var v0 = DoubleVector.fromArray(DOUBLE_SPECIES, a, 2 * i);
+      var v1 = DoubleVector.fromArray(DOUBLE_SPECIES, a, 2 * i + length);
+      var va = (DoubleVector) Impl.permute(Impl.DOUBLE_SPLIT_2.get(0), v0, v1, null);
+      var vb = (DoubleVector) Impl.permute(Impl.DOUBLE_SPLIT_2.get(1), v0, v1, null);
+      var r0 = (DoubleVector) invoke(operators[0], va, vb, null, null);
+      if (fields == 1) {
+        r0.intoArray(dest, i);
+        continue;
+      }
+      var r1 = (DoubleVector) invoke(operators[1], va, vb, null, null);
+      var r2 = fields == 3? (DoubleVector) invoke(operators[2], va, vb, null, null): null;
+      var merge = fields == 2? Impl.DOUBLE_MERGE_2: Impl.DOUBLE_MERGE_3;
+      for (var j = 0; j < fields; j++) {
+        var vr = (DoubleVector) Impl.permute(merge.get(j), r0, r1, r2);
+        vr.intoArray(dest, fields * i + j * length);
+      }
+    }
+    for (; i < count; i++) {
+      var x = a[2 * i];
+      var y = a[2 * i + 1];
+      for (var j = 0; j < fields; j++) {
+        dest[fields * i + j] = operators[j].apply(x, y);
+      }
+    }
+  }
+
+  /**
+   * Apply several operators on each record of 3 fields of the array {@code a} and store the
+   * results interleaved in the array {@code dest}, i.e. the record {@code i} is made of the values
+   * {@code a[3 * i]}, {@code a[3 * i + 1]} and {@code a[3 * i + 2]} and the result of the operator at index {@code j} is stored in
+   * {@code dest[operators.length * i + j]}.
+   * By example, for points stored as (x, y, z) triples, {@code (x, y, z) -> x * x + y * y + z * z}
+   * computes the squared distances to the origin.
+   *
+   * The vectors of records are loaded then de-interleaved into one vector per field, and
+   * the vectors of results are interleaved before being stored, using lane permutations.
+   *
+   * @param dest the destination array.
+   * @param a the array of records.
+   * @param operators the lambdas that specify the operators, one per field of the results.
+   * @throws IllegalArgumentException if there is not between 1 and 3 operators, if the length of {@code a}
+   *         is not a multiple of 3 or if the length of {@code dest} is not the number of records times
+   *         the number of operators.
+   * @throws IllegalStateException if a lambda can not be converted to an operator.
+   */
+  default void applyInterleaved(double[] dest, double[] a, DDDDOp... operators) {
+    var fields = operators.length;
+    if (fields < 1 || fields > 3) {
+      throw new IllegalArgumentException("wrong number of operators");
+    }
+    var count = a.length / 3;
+    if (a.length % 3 != 0 || dest.length != count * fields) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var length = DOUBLE_SPECIES.length();
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(count);
+    Impl.recordCall(count, count - bound);
+    for (; i < bound; i += length) {
+      var v0 = DoubleVector.fromArray(DOUBLE_SPECIES, a, 3 * i);
+      var v1 = DoubleVector.fromArray(DOUBLE_SPECIES, a, 3 * i + length);
+      var v2 = DoubleVector.fromArray(DOUBLE_SPECIES, a, 3 * i + 2 * length);
+      var va = (DoubleVector) Impl.permute(Impl.DOUBLE_SPLIT_3.get(0), v0, v1, v2);
+      var vb = (DoubleVector) Impl.permute(Impl.DOUBLE_SPLIT_3.get(1), v0, v1, v2);
+      var vc = (DoubleVector) Impl.permute(Impl.DOUBLE_SPLIT_3.get(2), v0, v1, v2);
+      var r0 = (DoubleVector) invoke(operators[0], va, vb, vc, null);
+      if (fields == 1) {
+        r0.intoArray(dest, i);
+        continue;
+      }
+      var r1 = (DoubleVector) invoke(operators[1], va, vb, vc, null);
+      var r2 = fields == 3? (DoubleVector) invoke(operators[2], va, vb, vc, null): null;
+      var merge = fields == 2? Impl.DOUBLE_MERGE_2: Impl.DOUBLE_MERGE_3;
+      for (var j = 0; j < fields; j++) {
+        var vr = (DoubleVector) Impl.permute(merge.get(j), r0, r1, r2);
+        vr.intoArray(dest, fields * i + j * length);
+      }
+    }
+    for (; i < count; i++) {
+      var x = a[3 * i];
+      var y = a[3 * i + 1];
+      var z = a[3 * i + 2];
+      for (var j = 0; j < fields; j++) {
+        dest[fields * i + j] = operators[j].apply(x, y, z);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, IIOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, int[], int, int, int[], int, int, IIOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, IIOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, IIOp operator) {
+    int bound = INT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, aRow + i);
+        var vc = (IntVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, int[] b, int bOffset, int bStride, IIIOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, int[], int, int, int[], int, int, int[], int, int, IIIOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, int[] b, int bOffset, int bStride, IIIOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, int[] dest, int destOffset, int destStride, int[] a, int aOffset, int aStride, int[] b, int bOffset, int bStride, IIIOp operator) {
+    int bound = INT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, aRow + i);
+        var vb = IntVector.fromArray(INT_SPECIES, b, bRow + i);
+        var vc = (IntVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, LLOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, long[], int, int, long[], int, int, LLOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, LLOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, LLOp operator) {
+    int bound = LONG_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        var va = LongVector.fromArray(LONG_SPECIES, a, aRow + i);
+        var vc = (LongVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, long[] b, int bOffset, int bStride, LLLOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, long[], int, int, long[], int, int, long[], int, int, LLLOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, long[] b, int bOffset, int bStride, LLLOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, long[] dest, int destOffset, int destStride, long[] a, int aOffset, int aStride, long[] b, int bOffset, int bStride, LLLOp operator) {
+    int bound = LONG_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        var va = LongVector.fromArray(LONG_SPECIES, a, aRow + i);
+        var vb = LongVector.fromArray(LONG_SPECIES, b, bRow + i);
+        var vc = (LongVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, FFOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, float[], int, int, float[], int, int, FFOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, FFOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, FFOp operator) {
+    int bound = FLOAT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, aRow + i);
+        var vc = (FloatVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, float[] b, int bOffset, int bStride, FFFOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, float[], int, int, float[], int, int, float[], int, int, FFFOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, float[] b, int bOffset, int bStride, FFFOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, float[] dest, int destOffset, int destStride, float[] a, int aOffset, int aStride, float[] b, int bOffset, int bStride, FFFOp operator) {
+    int bound = FLOAT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, aRow + i);
+        var vb = FloatVector.fromArray(FLOAT_SPECIES, b, bRow + i);
+        var vc = (FloatVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, DDOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, double[], int, int, double[], int, int, DDOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, DDOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, DDOp operator) {
+    int bound = DOUBLE_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, aRow + i);
+        var vc = (DoubleVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride, DDDOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, double[], int, int, double[], int, int, double[], int, int, DDDOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride, DDDOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, double[] dest, int destOffset, int destStride, double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride, DDDOp operator) {
+    int bound = DOUBLE_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, aRow + i);
+        var vb = DoubleVector.fromArray(DOUBLE_SPECIES, b, bRow + i);
+        var vc = (DoubleVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, BBOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, byte[], int, int, byte[], int, int, BBOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, BBOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, BBOp operator) {
+    int bound = BYTE_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += BYTE_SPECIES.length()) {
+        var va = ByteVector.fromArray(BYTE_SPECIES, a, aRow + i);
+        var vc = (ByteVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int bStride, BBBOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, byte[], int, int, byte[], int, int, byte[], int, int, BBBOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int bStride, BBBOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, byte[] dest, int destOffset, int destStride, byte[] a, int aOffset, int aStride, byte[] b, int bOffset, int bStride, BBBOp operator) {
+    int bound = BYTE_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += BYTE_SPECIES.length()) {
+        var va = ByteVector.fromArray(BYTE_SPECIES, a, aRow + i);
+        var vb = ByteVector.fromArray(BYTE_SPECIES, b, bRow + i);
+        var vc = (ByteVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, SSOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the array {@code a} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, short[], int, int, short[], int, int, SSOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, SSOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, SSOp operator) {
+    int bound = SHORT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      int i = 0;
+      for (; i < bound; i += SHORT_SPECIES.length()) {
+        var va = ShortVector.fromArray(SHORT_SPECIES, a, aRow + i);
+        var vc = (ShortVector) invoke(operator, va, null, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}.
+   * The arrays store the rows one after the other, the row {@code row} of an array starts at
+   * {@code offset + row * stride}, so a row can be padded or the rectangle can be a part of a larger image.
+   * The vector loop is done on each row, the last values of a row are computed without vectors.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void apply2D(int width, int height, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, short[] b, int bOffset, int bStride, SSSOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    applyRows(width, 0, height, dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator);
+  }
+
+  /**
+   * Apply the operator on each value of a rectangle of {@code width} x {@code height} values
+   * of the arrays {@code a} and {@code b} and store each result in the array {@code dest}
+   * like {@link #apply2D(int, int, short[], int, int, short[], int, int, short[], int, int, SSSOp)}
+   * but the rows are processed in parallel using the common fork join pool.
+   *
+   * @param width the number of values of a row.
+   * @param height the number of rows.
+   * @param dest the destination array.
+   * @param destOffset the index in {@code dest} of the first value of the first row.
+   * @param destStride the distance in {@code dest} between the first values of two consecutive rows.
+   * @param a the array of first parameters.
+   * @param aOffset the index in {@code a} of the first value of the first row.
+   * @param aStride the distance in {@code a} between the first values of two consecutive rows.
+   * @param b the array of second parameters.
+   * @param bOffset the index in {@code b} of the first value of the first row.
+   * @param bStride the distance in {@code b} between the first values of two consecutive rows.
+   * @param operator a lambda that specify the operator.
+   * @throws IllegalArgumentException if {@code width} or {@code height} is negative, if a stride is less than
+   *         {@code width} or if the rows do not fit in an array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelApply2D(int width, int height, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, short[] b, int bOffset, int bStride, SSSOp operator) {
+    Impl.checkRows(dest.length, destOffset, destStride, width, height);
+    Impl.checkRows(a.length, aOffset, aStride, width, height);
+    Impl.checkRows(b.length, bOffset, bStride, width, height);
+    var rowCount = Impl.parallelRowCount(width, height);
+    IntStream.range(0, (height + rowCount - 1) / rowCount).parallel().forEach(task ->
+        applyRows(width, task * rowCount, Math.min(height, (task + 1) * rowCount),
+            dest, destOffset, destStride, a, aOffset, aStride, b, bOffset, bStride, operator));
+  }
+
+  private void applyRows(int width, int fromRow, int toRow, short[] dest, int destOffset, int destStride, short[] a, int aOffset, int aStride, short[] b, int bOffset, int bStride, SSSOp operator) {
+    int bound = SHORT_SPECIES.loopBound(width);
+    Impl.recordCall((long) width * (toRow - fromRow), (long) (width - bound) * (toRow - fromRow));
+    for (var row = fromRow; row < toRow; row++) {
+      var destRow = destOffset + row * destStride;
+      var aRow = aOffset + row * aStride;
+      var bRow = bOffset + row * bStride;
+      int i = 0;
+      for (; i < bound; i += SHORT_SPECIES.length()) {
+        var va = ShortVector.fromArray(SHORT_SPECIES, a, aRow + i);
+        var vb = ShortVector.fromArray(SHORT_SPECIES, b, bRow + i);
+        var vc = (ShortVector) invoke(operator, va, vb, null, null);
+        vc.intoArray(dest, destRow + i);
+      }
+      for (; i < width; i++) {
+        dest[destRow + i] = operator.apply(a[aRow + i], b[bRow + i]);
+      }
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(int[] dest, int[] a, Padding padding, IIIIOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = INT_SPECIES.length();
+    int bound = INT_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = IntVector.broadcast(INT_SPECIES, first);
+      var current = IntVector.fromArray(INT_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = IntVector.fromArray(INT_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (IntVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(long[] dest, long[] a, Padding padding, LLLLOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = LONG_SPECIES.length();
+    int bound = LONG_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = LongVector.broadcast(LONG_SPECIES, first);
+      var current = LongVector.fromArray(LONG_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = LongVector.fromArray(LONG_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (LongVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(float[] dest, float[] a, Padding padding, FFFFOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = FLOAT_SPECIES.length();
+    int bound = FLOAT_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = FloatVector.broadcast(FLOAT_SPECIES, first);
+      var current = FloatVector.fromArray(FLOAT_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = FloatVector.fromArray(FLOAT_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (FloatVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(double[] dest, double[] a, Padding padding, DDDDOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = DOUBLE_SPECIES.length();
+    int bound = DOUBLE_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = DoubleVector.broadcast(DOUBLE_SPECIES, first);
+      var current = DoubleVector.fromArray(DOUBLE_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = DoubleVector.fromArray(DOUBLE_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (DoubleVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(byte[] dest, byte[] a, Padding padding, BBBBOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> (byte) 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> (byte) 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = BYTE_SPECIES.length();
+    int bound = BYTE_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = ByteVector.broadcast(BYTE_SPECIES, first);
+      var current = ByteVector.fromArray(BYTE_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = ByteVector.fromArray(BYTE_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (ByteVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and its two neighbors
+   * and store each result in the array {@code dest}, i.e.
+   * {@code dest[i] = operator.apply(a[i - 1], a[i], a[i + 1])}.
+   * The neighbors outside the array are specified by the {@code padding}.
+   *
+   * Each value of {@code a} is only loaded once, the vectors of the neighbors are obtained
+   * by shifting the lanes of the current vector and the adjacent vectors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param padding the value of the neighbors outside the array.
+   * @param operator a lambda that specify the operator, it takes the previous value, the value
+   *                 and the next value as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length or are the same array.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void stencil(short[] dest, short[] a, Padding padding, SSSSOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    if (dest == a) {
+      throw new IllegalArgumentException("the destination array can not be the array of parameters");
+    }
+    if (length == 0) {
+      return;
+    }
+    var first = switch (padding) {
+      case ZERO -> (short) 0;
+      case REPLICATE -> a[0];
+      case WRAP -> a[length - 1];
+    };
+    var last = switch (padding) {
+      case ZERO -> (short) 0;
+      case REPLICATE -> a[length - 1];
+      case WRAP -> a[0];
+    };
+    int i = 0;
+    var vl = SHORT_SPECIES.length();
+    int bound = SHORT_SPECIES.loopBound(Math.max(0, length - vl));
+    Impl.recordCall(length, length - bound);
+    if (bound != 0) {
+      var previous = ShortVector.broadcast(SHORT_SPECIES, first);
+      var current = ShortVector.fromArray(SHORT_SPECIES, a, 0);
+      for (; i < bound; i += vl) {
+        var next = ShortVector.fromArray(SHORT_SPECIES, a, i + vl);
+        var left = previous.slice(vl - 1, current);
+        var right = current.slice(1, next);
+        var result = (ShortVector) invoke(operator, left, current, right, null);
+        result.intoArray(dest, i);
+        previous = current;
+        current = next;
+      }
+    }
+    for (; i < length; i++) {
+      dest[i] = operator.apply(i == 0? first: a[i - 1], a[i], i == length - 1? last: a[i + 1]);
+    }
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, i.e.
+   * {@code dest[0] = a[0]} and {@code dest[i] = operator.apply(dest[i - 1], a[i])}.
+   *
+   * The operator must be associative, by example {@code +}, {@code *}, {@code Math.min()}
+   * or {@code Math.max()}, each vector is scanned in log2(vector length) steps and the last value
+   * is carried to the next vector.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void scan(int[] dest, int[] a, IIIOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    scan(dest, a, 0, length, operator);
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, like {@link #scan(int[], int[], IIIOp)}
+   * but in parallel using the common fork join pool.
+   *
+   * The array is split in blocks, the blocks are scanned in parallel,
+   * then the last value of each block is propagated to the following blocks in parallel,
+   * so this method is only faster than {@link #scan(int[], int[], IIIOp)} for big arrays.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelScan(int[] dest, int[] a, IIIOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var blockSize = Impl.parallelBlockSize(length, INT_SPECIES);
+    var blockCount = (length + blockSize - 1) / blockSize;
+    if (blockCount <= 1) {
+      scan(dest, a, 0, length, operator);
+      return;
+    }
+    IntStream.range(0, blockCount).parallel().forEach(block ->
+        scan(dest, a, block * blockSize, Math.min(length, (block + 1) * blockSize), operator));
+    var carries = new int[blockCount];
+    var carry = dest[blockSize - 1];
+    for (var block = 1; block < blockCount; block++) {
+      carries[block] = carry;
+      carry = operator.apply(carry, dest[Math.min(length, (block + 1) * blockSize) - 1]);
+    }
+    IntStream.range(1, blockCount).parallel().forEach(block ->
+        carry(dest, block * blockSize, Math.min(length, (block + 1) * blockSize), carries[block], operator));
+  }
+
+  private void scan(int[] dest, int[] a, int from, int to, IIIOp operator) {
+    int i = from;
+    var vl = INT_SPECIES.length();
+    int bound = from + INT_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    IntVector carry = null;
+    for (; i < bound; i += vl) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      for (var shift = 1; shift < vl; shift <<= 1) {
+        var vb = (IntVector) invoke(operator, va.unslice(shift), va, null, null);
+        va = va.blend(vb, INT_SPECIES.indexInRange(-shift, vl - shift));
+      }
+      if (carry != null) {
+        va = (IntVector) invoke(operator, carry, va, null, null);
+      }
+      va.intoArray(dest, i);
+      carry = IntVector.broadcast(INT_SPECIES, va.lane(vl - 1));
+    }
+    for (; i < to; i++) {
+      dest[i] = i == from? a[i]: operator.apply(dest[i - 1], a[i]);
+    }
+  }
+
+  private void carry(int[] dest, int from, int to, int carry, IIIOp operator) {
+    int i = from;
+    int bound = from + INT_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    var vcarry = IntVector.broadcast(INT_SPECIES, carry);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, dest, i);
+      var vb = (IntVector) invoke(operator, vcarry, va, null, null);
+      vb.intoArray(dest, i);
+    }
+    for (; i < to; i++) {
+      dest[i] = operator.apply(carry, dest[i]);
+    }
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, i.e.
+   * {@code dest[0] = a[0]} and {@code dest[i] = operator.apply(dest[i - 1], a[i])}.
+   *
+   * The operator must be associative, by example {@code +}, {@code *}, {@code Math.min()}
+   * or {@code Math.max()}, each vector is scanned in log2(vector length) steps and the last value
+   * is carried to the next vector.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void scan(long[] dest, long[] a, LLLOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    scan(dest, a, 0, length, operator);
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, like {@link #scan(long[], long[], LLLOp)}
+   * but in parallel using the common fork join pool.
+   *
+   * The array is split in blocks, the blocks are scanned in parallel,
+   * then the last value of each block is propagated to the following blocks in parallel,
+   * so this method is only faster than {@link #scan(long[], long[], LLLOp)} for big arrays.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelScan(long[] dest, long[] a, LLLOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var blockSize = Impl.parallelBlockSize(length, LONG_SPECIES);
+    var blockCount = (length + blockSize - 1) / blockSize;
+    if (blockCount <= 1) {
+      scan(dest, a, 0, length, operator);
+      return;
+    }
+    IntStream.range(0, blockCount).parallel().forEach(block ->
+        scan(dest, a, block * blockSize, Math.min(length, (block + 1) * blockSize), operator));
+    var carries = new long[blockCount];
+    var carry = dest[blockSize - 1];
+    for (var block = 1; block < blockCount; block++) {
+      carries[block] = carry;
+      carry = operator.apply(carry, dest[Math.min(length, (block + 1) * blockSize) - 1]);
+    }
+    IntStream.range(1, blockCount).parallel().forEach(block ->
+        carry(dest, block * blockSize, Math.min(length, (block + 1) * blockSize), carries[block], operator));
+  }
+
+  private void scan(long[] dest, long[] a, int from, int to, LLLOp operator) {
+    int i = from;
+    var vl = LONG_SPECIES.length();
+    int bound = from + LONG_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    LongVector carry = null;
+    for (; i < bound; i += vl) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      for (var shift = 1; shift < vl; shift <<= 1) {
+        var vb = (LongVector) invoke(operator, va.unslice(shift), va, null, null);
+        va = va.blend(vb, LONG_SPECIES.indexInRange(-shift, vl - shift));
+      }
+      if (carry != null) {
+        va = (LongVector) invoke(operator, carry, va, null, null);
+      }
+      va.intoArray(dest, i);
+      carry = LongVector.broadcast(LONG_SPECIES, va.lane(vl - 1));
+    }
+    for (; i < to; i++) {
+      dest[i] = i == from? a[i]: operator.apply(dest[i - 1], a[i]);
+    }
+  }
+
+  private void carry(long[] dest, int from, int to, long carry, LLLOp operator) {
+    int i = from;
+    int bound = from + LONG_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    var vcarry = LongVector.broadcast(LONG_SPECIES, carry);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, dest, i);
+      var vb = (LongVector) invoke(operator, vcarry, va, null, null);
+      vb.intoArray(dest, i);
+    }
+    for (; i < to; i++) {
+      dest[i] = operator.apply(carry, dest[i]);
+    }
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, i.e.
+   * {@code dest[0] = a[0]} and {@code dest[i] = operator.apply(dest[i - 1], a[i])}.
+   *
+   * The operator must be associative, by example {@code +}, {@code *}, {@code Math.min()}
+   * or {@code Math.max()}, each vector is scanned in log2(vector length) steps and the last value
+   * is carried to the next vector.
+   * For floats and doubles, the operations are not done in the same order as a loop would do,
+   * so the result of an addition or a multiplication may be slightly different due to the rounding errors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void scan(float[] dest, float[] a, FFFOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    scan(dest, a, 0, length, operator);
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, like {@link #scan(float[], float[], FFFOp)}
+   * but in parallel using the common fork join pool.
+   *
+   * The array is split in blocks, the blocks are scanned in parallel,
+   * then the last value of each block is propagated to the following blocks in parallel,
+   * so this method is only faster than {@link #scan(float[], float[], FFFOp)} for big arrays.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelScan(float[] dest, float[] a, FFFOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var blockSize = Impl.parallelBlockSize(length, FLOAT_SPECIES);
+    var blockCount = (length + blockSize - 1) / blockSize;
+    if (blockCount <= 1) {
+      scan(dest, a, 0, length, operator);
+      return;
+    }
+    IntStream.range(0, blockCount).parallel().forEach(block ->
+        scan(dest, a, block * blockSize, Math.min(length, (block + 1) * blockSize), operator));
+    var carries = new float[blockCount];
+    var carry = dest[blockSize - 1];
+    for (var block = 1; block < blockCount; block++) {
+      carries[block] = carry;
+      carry = operator.apply(carry, dest[Math.min(length, (block + 1) * blockSize) - 1]);
+    }
+    IntStream.range(1, blockCount).parallel().forEach(block ->
+        carry(dest, block * blockSize, Math.min(length, (block + 1) * blockSize), carries[block], operator));
+  }
+
+  private void scan(float[] dest, float[] a, int from, int to, FFFOp operator) {
+    int i = from;
+    var vl = FLOAT_SPECIES.length();
+    int bound = from + FLOAT_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    FloatVector carry = null;
+    for (; i < bound; i += vl) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      for (var shift = 1; shift < vl; shift <<= 1) {
+        var vb = (FloatVector) invoke(operator, va.unslice(shift), va, null, null);
+        va = va.blend(vb, FLOAT_SPECIES.indexInRange(-shift, vl - shift));
+      }
+      if (carry != null) {
+        va = (FloatVector) invoke(operator, carry, va, null, null);
+      }
+      va.intoArray(dest, i);
+      carry = FloatVector.broadcast(FLOAT_SPECIES, va.lane(vl - 1));
+    }
+    for (; i < to; i++) {
+      dest[i] = i == from? a[i]: operator.apply(dest[i - 1], a[i]);
+    }
+  }
+
+  private void carry(float[] dest, int from, int to, float carry, FFFOp operator) {
+    int i = from;
+    int bound = from + FLOAT_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    var vcarry = FloatVector.broadcast(FLOAT_SPECIES, carry);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, dest, i);
+      var vb = (FloatVector) invoke(operator, vcarry, va, null, null);
+      vb.intoArray(dest, i);
+    }
+    for (; i < to; i++) {
+      dest[i] = operator.apply(carry, dest[i]);
+    }
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, i.e.
+   * {@code dest[0] = a[0]} and {@code dest[i] = operator.apply(dest[i - 1], a[i])}.
+   *
+   * The operator must be associative, by example {@code +}, {@code *}, {@code Math.min()}
+   * or {@code Math.max()}, each vector is scanned in log2(vector length) steps and the last value
+   * is carried to the next vector.
+   * For floats and doubles, the operations are not done in the same order as a loop would do,
+   * so the result of an addition or a multiplication may be slightly different due to the rounding errors.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void scan(double[] dest, double[] a, DDDOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    scan(dest, a, 0, length, operator);
+  }
+
+  /**
+   * Computes the inclusive prefix scan of the array {@code a} using the operator
+   * and store the results in the array {@code dest}, like {@link #scan(double[], double[], DDDOp)}
+   * but in parallel using the common fork join pool.
+   *
+   * The array is split in blocks, the blocks are scanned in parallel,
+   * then the last value of each block is propagated to the following blocks in parallel,
+   * so this method is only faster than {@link #scan(double[], double[], DDDOp)} for big arrays.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify an associative operator.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void parallelScan(double[] dest, double[] a, DDDOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    var blockSize = Impl.parallelBlockSize(length, DOUBLE_SPECIES);
+    var blockCount = (length + blockSize - 1) / blockSize;
+    if (blockCount <= 1) {
+      scan(dest, a, 0, length, operator);
+      return;
+    }
+    IntStream.range(0, blockCount).parallel().forEach(block ->
+        scan(dest, a, block * blockSize, Math.min(length, (block + 1) * blockSize), operator));
+    var carries = new double[blockCount];
+    var carry = dest[blockSize - 1];
+    for (var block = 1; block < blockCount; block++) {
+      carries[block] = carry;
+      carry = operator.apply(carry, dest[Math.min(length, (block + 1) * blockSize) - 1]);
+    }
+    IntStream.range(1, blockCount).parallel().forEach(block ->
+        carry(dest, block * blockSize, Math.min(length, (block + 1) * blockSize), carries[block], operator));
+  }
+
+  private void scan(double[] dest, double[] a, int from, int to, DDDOp operator) {
+    int i = from;
+    var vl = DOUBLE_SPECIES.length();
+    int bound = from + DOUBLE_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    DoubleVector carry = null;
+    for (; i < bound; i += vl) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      for (var shift = 1; shift < vl; shift <<= 1) {
+        var vb = (DoubleVector) invoke(operator, va.unslice(shift), va, null, null);
+        va = va.blend(vb, DOUBLE_SPECIES.indexInRange(-shift, vl - shift));
+      }
+      if (carry != null) {
+        va = (DoubleVector) invoke(operator, carry, va, null, null);
+      }
+      va.intoArray(dest, i);
+      carry = DoubleVector.broadcast(DOUBLE_SPECIES, va.lane(vl - 1));
+    }
+    for (; i < to; i++) {
+      dest[i] = i == from? a[i]: operator.apply(dest[i - 1], a[i]);
+    }
+  }
+
+  private void carry(double[] dest, int from, int to, double carry, DDDOp operator) {
+    int i = from;
+    int bound = from + DOUBLE_SPECIES.loopBound(to - from);
+    Impl.recordCall(to - from, to - bound);
+    var vcarry = DoubleVector.broadcast(DOUBLE_SPECIES, carry);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, dest, i);
+      var vb = (DoubleVector) invoke(operator, vcarry, va, null, null);
+      vb.intoArray(dest, i);
+    }
+    for (; i < to; i++) {
+      dest[i] = operator.apply(carry, dest[i]);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and their index and store
+   * each result in the array {@code dest}, i.e. {@code dest[i] = operator.apply(a[i], i)}.
+   *
+   * The index is a vector of ints with the same number of lanes as the values,
+   * initialized with the indexes of the first lanes and incremented by the vector length at each step.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator, it takes the value and its index as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void applyWithIndex(int[] dest, int[] a, IIIOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var vindex = IntVector.zero(INT_SPECIES).addIndex(1);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = (IntVector) invoke(operator, va, vindex, null, null);
+      vb.intoArray(dest, i);
+      vindex = vindex.add(INT_SPECIES.length());
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], i);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and their index and store
+   * each result in the array {@code dest}, i.e. {@code dest[i] = operator.apply(a[i], i)}.
+   *
+   * The index is a vector of longs with the same number of lanes as the values,
+   * initialized with the indexes of the first lanes and incremented by the vector length at each step.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator, it takes the value and its index as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void applyWithIndex(long[] dest, long[] a, LLLOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var vindex = LongVector.zero(LONG_SPECIES).addIndex(1);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var vb = (LongVector) invoke(operator, va, vindex, null, null);
+      vb.intoArray(dest, i);
+      vindex = vindex.add(LONG_SPECIES.length());
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], i);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and their index and store
+   * each result in the array {@code dest}, i.e. {@code dest[i] = operator.apply(a[i], i)}.
+   *
+   * The index is a vector of ints with the same number of lanes as the values,
+   * initialized with the indexes of the first lanes and incremented by the vector length at each step.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator, it takes the value and its index as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void applyWithIndex(float[] dest, float[] a, FIFOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var vindex = IntVector.zero(INT_SPECIES).addIndex(1);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var vb = (FloatVector) invoke(operator, va, vindex, null, null);
+      vb.intoArray(dest, i);
+      vindex = vindex.add(FLOAT_SPECIES.length());
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], i);
+    }
+  }
+
+  /**
+   * Apply the operator on each values of the array {@code a} and their index and store
+   * each result in the array {@code dest}, i.e. {@code dest[i] = operator.apply(a[i], i)}.
+   *
+   * The index is a vector of longs with the same number of lanes as the values,
+   * initialized with the indexes of the first lanes and incremented by the vector length at each step.
+   *
+   * @param dest the destination array.
+   * @param a the array of parameters.
+   * @param operator a lambda that specify the operator, it takes the value and its index as parameters.
+   * @throws IllegalArgumentException if the arrays does not have the same length.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void applyWithIndex(double[] dest, double[] a, DLDOp operator) {
+    var length = dest.length;
+    if (a.length != length) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var vindex = LongVector.zero(LONG_SPECIES).addIndex(1);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var vb = (DoubleVector) invoke(operator, va, vindex, null, null);
+      vb.intoArray(dest, i);
+      vindex = vindex.add(DOUBLE_SPECIES.length());
+    }
+    for (; i < a.length; i++) {
+      dest[i] = operator.apply(a[i], i);
+    }
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code k} columns by the matrix {@code b}
+   * of {@code k} rows and {@code n} columns and stores the resulting matrix of {@code m} rows and {@code n} columns
+   * in {@code c}, i.e. {@code c[i * n + j] = a[i * k] * b[j] + a[i * k + 1] * b[n + j] + ...}.
+   * The matrices are stored row by row.
+   * @param c the destination matrix.
+   * @param a the first matrix.
+   * @param b the second matrix.
+   * @param m the number of rows of {@code a} and {@code c}.
+   * @param n the number of columns of {@code b} and {@code c}.
+   * @param k the number of columns of {@code a} and the number of rows of {@code b}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or if {@code c} is the same array as {@code a} or {@code b}.
+   * @see #matrixMultiply(float[], float[], float[], int, int, int, FFOp)
+   */
+  default void matrixMultiply(float[] c, float[] a, float[] b, int m, int n, int k) {
+    multiplyMatrices(c, a, b, m, n, k, null);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code k} columns by the matrix {@code b}
+   * of {@code k} rows and {@code n} columns, apply the {@code epilogue} on each value of the resulting matrix
+   * and stores it in {@code c}, i.e. {@code c[i * n + j] = epilogue.apply(a[i * k] * b[j] + a[i * k + 1] * b[n + j] + ...)}.
+   * The matrices are stored row by row.
+   *
+   * The columns of {@code b} and the rows of {@code b} are split in blocks that fit in the caches,
+   * for each block, 4 rows x 2 vectors of {@code c} are computed at once by keeping the sums in vectors
+   * and using fused multiply-add operations, the epilogue is applied on the vectors of the sums
+   * before they are stored.
+   *
+   * @param c the destination matrix.
+   * @param a the first matrix.
+   * @param b the second matrix.
+   * @param m the number of rows of {@code a} and {@code c}.
+   * @param n the number of columns of {@code b} and {@code c}.
+   * @param k the number of columns of {@code a} and the number of rows of {@code b}.
+   * @param epilogue a lambda that specify the operator applied on each value of the result,
+   *                 by example {@code x -> Math.max(x + BIAS, 0f)}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or if {@code c} is the same array as {@code a} or {@code b}.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void matrixMultiply(float[] c, float[] a, float[] b, int m, int n, int k, FFOp epilogue) {
+    multiplyMatrices(c, a, b, m, n, k, requireNonNull(epilogue));
+  }
+
+  private void multiplyMatrices(float[] c, float[] a, float[] b, int m, int n, int k, FFOp epilogue) {
+    Impl.checkMatrix(c.length, m, n);
+    Impl.checkMatrix(a.length, m, k);
+    Impl.checkMatrix(b.length, k, n);
+    Impl.checkNotAliased(c, a, b);
+    if (k == 0) {
+      Arrays.fill(c, 0f);
+      if (epilogue != null) {
+        apply(c, c, epilogue);
+      }
+      return;
+    }
+    var length = FLOAT_SPECIES.length();
+    var columnBlock = Math.max(1, Impl.MATRIX_COLUMN_BLOCK / (2 * length)) * 2 * length;
+    for (var columnStart = 0; columnStart < n; columnStart += columnBlock) {
+      var columnEnd = Math.min(n, columnStart + columnBlock);
+      for (var depthStart = 0; depthStart < k; depthStart += Impl.MATRIX_DEPTH_BLOCK) {
+        var depthEnd = Math.min(k, depthStart + Impl.MATRIX_DEPTH_BLOCK);
+        var first = depthStart == 0;
+        var last = depthEnd == k? epilogue: null;  // the epilogue is only applied on the final sums
+        for (var i = 0; i < m; i += 4) {
+          var rows = Math.min(4, m - i);
+          var j = columnStart;
+          if (rows == 4) {
+            for (; j + 2 * length <= columnEnd; j += 2 * length) {
+              multiply4x2(c, a, b, n, k, i, j, depthStart, depthEnd, first, last);
+            }
+          }
+          for (var row = i; row < i + rows; row++) {
+            var column = j;
+            for (; column + length <= columnEnd; column += length) {
+              multiply1x1(c, a, b, n, k, row, column, depthStart, depthEnd, first, last);
+            }
+            for (; column < columnEnd; column++) {
+              var sum = first? 0f: c[row * n + column];
+              for (var p = depthStart; p < depthEnd; p++) {
+                sum = Math.fma(a[row * k + p], b[p * n + column], sum);
+              }
+              c[row * n + column] = last == null? sum: last.apply(sum);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // computes 4 rows x 2 vectors of c
+  private void multiply4x2(float[] c, float[] a, float[] b, int n, int k, int i, int j, int depthStart, int depthEnd, boolean first, FFOp epilogue) {
+    var length = FLOAT_SPECIES.length();
+    var c0 = i * n + j;
+    var c1 = c0 + n;
+    var c2 = c1 + n;
+    var c3 = c2 + n;
+    FloatVector s00, s01, s10, s11, s20, s21, s30, s31;
+    if (first) {
+      s00 = s01 = s10 = s11 = s20 = s21 = s30 = s31 = FloatVector.zero(FLOAT_SPECIES);
+    } else {
+      s00 = FloatVector.fromArray(FLOAT_SPECIES, c, c0);
+      s01 = FloatVector.fromArray(FLOAT_SPECIES, c, c0 + length);
+      s10 = FloatVector.fromArray(FLOAT_SPECIES, c, c1);
+      s11 = FloatVector.fromArray(FLOAT_SPECIES, c, c1 + length);
+      s20 = FloatVector.fromArray(FLOAT_SPECIES, c, c2);
+      s21 = FloatVector.fromArray(FLOAT_SPECIES, c, c2 + length);
+      s30 = FloatVector.fromArray(FLOAT_SPECIES, c, c3);
+      s31 = FloatVector.fromArray(FLOAT_SPECIES, c, c3 + length);
+    }
+    var a0 = i * k;
+    var a1 = a0 + k;
+    var a2 = a1 + k;
+    var a3 = a2 + k;
+    for (var p = depthStart; p < depthEnd; p++) {
+      var b0 = FloatVector.fromArray(FLOAT_SPECIES, b, p * n + j);
+      var b1 = FloatVector.fromArray(FLOAT_SPECIES, b, p * n + j + length);
+      var x0 = FloatVector.broadcast(FLOAT_SPECIES, a[a0 + p]);
+      s00 = x0.fma(b0, s00);
+      s01 = x0.fma(b1, s01);
+      var x1 = FloatVector.broadcast(FLOAT_SPECIES, a[a1 + p]);
+      s10 = x1.fma(b0, s10);
+      s11 = x1.fma(b1, s11);
+      var x2 = FloatVector.broadcast(FLOAT_SPECIES, a[a2 + p]);
+      s20 = x2.fma(b0, s20);
+      s21 = x2.fma(b1, s21);
+      var x3 = FloatVector.broadcast(FLOAT_SPECIES, a[a3 + p]);
+      s30 = x3.fma(b0, s30);
+      s31 = x3.fma(b1, s31);
+    }
+    storeMatrix(s00, c, c0, epilogue);
+    storeMatrix(s01, c, c0 + length, epilogue);
+    storeMatrix(s10, c, c1, epilogue);
+    storeMatrix(s11, c, c1 + length, epilogue);
+    storeMatrix(s20, c, c2, epilogue);
+    storeMatrix(s21, c, c2 + length, epilogue);
+    storeMatrix(s30, c, c3, epilogue);
+    storeMatrix(s31, c, c3 + length, epilogue);
+  }
+
+  // computes 1 row x 1 vector of c
+  private void multiply1x1(float[] c, float[] a, float[] b, int n, int k, int i, int j, int depthStart, int depthEnd, boolean first, FFOp epilogue) {
+    var c0 = i * n + j;
+    var s = first? FloatVector.zero(FLOAT_SPECIES): FloatVector.fromArray(FLOAT_SPECIES, c, c0);
+    var a0 = i * k;
+    for (var p = depthStart; p < depthEnd; p++) {
+      var x = FloatVector.broadcast(FLOAT_SPECIES, a[a0 + p]);
+      s = x.fma(FloatVector.fromArray(FLOAT_SPECIES, b, p * n + j), s);
+    }
+    storeMatrix(s, c, c0, epilogue);
+  }
+
+  private void storeMatrix(FloatVector v, float[] c, int index, FFOp epilogue) {
+    if (epilogue != null) {
+      v = (FloatVector) invoke(epilogue, v, null, null, null);
+    }
+    v.intoArray(c, index);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code n} columns by the vector {@code x}
+   * of {@code n} values and stores the resulting vector of {@code m} values in {@code y},
+   * i.e. {@code y[i] = a[i * n] * x[0] + a[i * n + 1] * x[1] + ...}.
+   * The matrix is stored row by row.
+   * @param y the destination vector.
+   * @param a the matrix.
+   * @param x the vector.
+   * @param m the number of rows of {@code a}.
+   * @param n the number of columns of {@code a}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or vector or if {@code y} is the same array as {@code a} or {@code x}.
+   * @see #matrixVectorMultiply(float[], float[], float[], int, int, FFOp)
+   */
+  default void matrixVectorMultiply(float[] y, float[] a, float[] x, int m, int n) {
+    multiplyMatrixVector(y, a, x, m, n);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code n} columns by the vector {@code x}
+   * of {@code n} values, apply the {@code epilogue} on each value of the resulting vector and stores it
+   * in {@code y}, i.e. {@code y[i] = epilogue.apply(a[i * n] * x[0] + a[i * n + 1] * x[1] + ...)}.
+   * The matrix is stored row by row.
+   *
+   * 4 rows of {@code a} are multiplied at once so each vector of {@code x} is loaded once for 4 rows,
+   * the sums are done lane by lane using fused multiply-add operations then reduced,
+   * the epilogue is applied on the resulting vector.
+   *
+   * @param y the destination vector.
+   * @param a the matrix.
+   * @param x the vector.
+   * @param m the number of rows of {@code a}.
+   * @param n the number of columns of {@code a}.
+   * @param epilogue a lambda that specify the operator applied on each value of the result.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or vector or if {@code y} is the same array as {@code a} or {@code x}.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void matrixVectorMultiply(float[] y, float[] a, float[] x, int m, int n, FFOp epilogue) {
+    requireNonNull(epilogue);
+    multiplyMatrixVector(y, a, x, m, n);
+    apply(y, y, epilogue);
+  }
+
+  private void multiplyMatrixVector(float[] y, float[] a, float[] x, int m, int n) {
+    Impl.checkMatrix(a.length, m, n);
+    Impl.checkMatrix(x.length, n, 1);
+    Impl.checkMatrix(y.length, m, 1);
+    Impl.checkNotAliased(y, a, x);
+    var length = FLOAT_SPECIES.length();
+    int bound = FLOAT_SPECIES.loopBound(n);
+    var i = 0;
+    for (; i + 4 <= m; i += 4) {
+      var a0 = i * n;
+      var a1 = a0 + n;
+      var a2 = a1 + n;
+      var a3 = a2 + n;
+      var s0 = FloatVector.zero(FLOAT_SPECIES);
+      var s1 = s0;
+      var s2 = s0;
+      var s3 = s0;
+      int j = 0;
+      for (; j < bound; j += length) {
+        var vx = FloatVector.fromArray(FLOAT_SPECIES, x, j);
+        s0 = FloatVector.fromArray(FLOAT_SPECIES, a, a0 + j).fma(vx, s0);
+        s1 = FloatVector.fromArray(FLOAT_SPECIES, a, a1 + j).fma(vx, s1);
+        s2 = FloatVector.fromArray(FLOAT_SPECIES, a, a2 + j).fma(vx, s2);
+        s3 = FloatVector.fromArray(FLOAT_SPECIES, a, a3 + j).fma(vx, s3);
+      }
+      var r0 = s0.reduceLanes(VectorOperators.ADD);
+      var r1 = s1.reduceLanes(VectorOperators.ADD);
+      var r2 = s2.reduceLanes(VectorOperators.ADD);
+      var r3 = s3.reduceLanes(VectorOperators.ADD);
+      for (; j < n; j++) {
+        r0 = Math.fma(a[a0 + j], x[j], r0);
+        r1 = Math.fma(a[a1 + j], x[j], r1);
+        r2 = Math.fma(a[a2 + j], x[j], r2);
+        r3 = Math.fma(a[a3 + j], x[j], r3);
+      }
+      y[i] = r0;
+      y[i + 1] = r1;
+      y[i + 2] = r2;
+      y[i + 3] = r3;
+    }
+    for (; i < m; i++) {
+      var a0 = i * n;
+      var s0 = FloatVector.zero(FLOAT_SPECIES);
+      int j = 0;
+      for (; j < bound; j += length) {
+        s0 = FloatVector.fromArray(FLOAT_SPECIES, a, a0 + j).fma(FloatVector.fromArray(FLOAT_SPECIES, x, j), s0);
+      }
+      var r0 = s0.reduceLanes(VectorOperators.ADD);
+      for (; j < n; j++) {
+        r0 = Math.fma(a[a0 + j], x[j], r0);
+      }
+      y[i] = r0;
+    }
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code k} columns by the matrix {@code b}
+   * of {@code k} rows and {@code n} columns and stores the resulting matrix of {@code m} rows and {@code n} columns
+   * in {@code c}, i.e. {@code c[i * n + j] = a[i * k] * b[j] + a[i * k + 1] * b[n + j] + ...}.
+   * The matrices are stored row by row.
+   * @param c the destination matrix.
+   * @param a the first matrix.
+   * @param b the second matrix.
+   * @param m the number of rows of {@code a} and {@code c}.
+   * @param n the number of columns of {@code b} and {@code c}.
+   * @param k the number of columns of {@code a} and the number of rows of {@code b}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or if {@code c} is the same array as {@code a} or {@code b}.
+   * @see #matrixMultiply(double[], double[], double[], int, int, int, DDOp)
+   */
+  default void matrixMultiply(double[] c, double[] a, double[] b, int m, int n, int k) {
+    multiplyMatrices(c, a, b, m, n, k, null);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code k} columns by the matrix {@code b}
+   * of {@code k} rows and {@code n} columns, apply the {@code epilogue} on each value of the resulting matrix
+   * and stores it in {@code c}, i.e. {@code c[i * n + j] = epilogue.apply(a[i * k] * b[j] + a[i * k + 1] * b[n + j] + ...)}.
+   * The matrices are stored row by row.
+   *
+   * The columns of {@code b} and the rows of {@code b} are split in blocks that fit in the caches,
+   * for each block, 4 rows x 2 vectors of {@code c} are computed at once by keeping the sums in vectors
+   * and using fused multiply-add operations, the epilogue is applied on the vectors of the sums
+   * before they are stored.
+   *
+   * @param c the destination matrix.
+   * @param a the first matrix.
+   * @param b the second matrix.
+   * @param m the number of rows of {@code a} and {@code c}.
+   * @param n the number of columns of {@code b} and {@code c}.
+   * @param k the number of columns of {@code a} and the number of rows of {@code b}.
+   * @param epilogue a lambda that specify the operator applied on each value of the result,
+   *                 by example {@code x -> Math.max(x + BIAS, 0.0)}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or if {@code c} is the same array as {@code a} or {@code b}.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void matrixMultiply(double[] c, double[] a, double[] b, int m, int n, int k, DDOp epilogue) {
+    multiplyMatrices(c, a, b, m, n, k, requireNonNull(epilogue));
+  }
+
+  private void multiplyMatrices(double[] c, double[] a, double[] b, int m, int n, int k, DDOp epilogue) {
+    Impl.checkMatrix(c.length, m, n);
+    Impl.checkMatrix(a.length, m, k);
+    Impl.checkMatrix(b.length, k, n);
+    Impl.checkNotAliased(c, a, b);
+    if (k == 0) {
+      Arrays.fill(c, 0.0);
+      if (epilogue != null) {
+        apply(c, c, epilogue);
+      }
+      return;
+    }
+    var length = DOUBLE_SPECIES.length();
+    var columnBlock = Math.max(1, Impl.MATRIX_COLUMN_BLOCK / (2 * length)) * 2 * length;
+    for (var columnStart = 0; columnStart < n; columnStart += columnBlock) {
+      var columnEnd = Math.min(n, columnStart + columnBlock);
+      for (var depthStart = 0; depthStart < k; depthStart += Impl.MATRIX_DEPTH_BLOCK) {
+        var depthEnd = Math.min(k, depthStart + Impl.MATRIX_DEPTH_BLOCK);
+        var first = depthStart == 0;
+        var last = depthEnd == k? epilogue: null;  // the epilogue is only applied on the final sums
+        for (var i = 0; i < m; i += 4) {
+          var rows = Math.min(4, m - i);
+          var j = columnStart;
+          if (rows == 4) {
+            for (; j + 2 * length <= columnEnd; j += 2 * length) {
+              multiply4x2(c, a, b, n, k, i, j, depthStart, depthEnd, first, last);
+            }
+          }
+          for (var row = i; row < i + rows; row++) {
+            var column = j;
+            for (; column + length <= columnEnd; column += length) {
+              multiply1x1(c, a, b, n, k, row, column, depthStart, depthEnd, first, last);
+            }
+            for (; column < columnEnd; column++) {
+              var sum = first? 0.0: c[row * n + column];
+              for (var p = depthStart; p < depthEnd; p++) {
+                sum = Math.fma(a[row * k + p], b[p * n + column], sum);
+              }
+              c[row * n + column] = last == null? sum: last.apply(sum);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // computes 4 rows x 2 vectors of c
+  private void multiply4x2(double[] c, double[] a, double[] b, int n, int k, int i, int j, int depthStart, int depthEnd, boolean first, DDOp epilogue) {
+    var length = DOUBLE_SPECIES.length();
+    var c0 = i * n + j;
+    var c1 = c0 + n;
+    var c2 = c1 + n;
+    var c3 = c2 + n;
+    DoubleVector s00, s01, s10, s11, s20, s21, s30, s31;
+    if (first) {
+      s00 = s01 = s10 = s11 = s20 = s21 = s30 = s31 = DoubleVector.zero(DOUBLE_SPECIES);
+    } else {
+      s00 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c0);
+      s01 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c0 + length);
+      s10 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c1);
+      s11 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c1 + length);
+      s20 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c2);
+      s21 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c2 + length);
+      s30 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c3);
+      s31 = DoubleVector.fromArray(DOUBLE_SPECIES, c, c3 + length);
+    }
+    var a0 = i * k;
+    var a1 = a0 + k;
+    var a2 = a1 + k;
+    var a3 = a2 + k;
+    for (var p = depthStart; p < depthEnd; p++) {
+      var b0 = DoubleVector.fromArray(DOUBLE_SPECIES, b, p * n + j);
+      var b1 = DoubleVector.fromArray(DOUBLE_SPECIES, b, p * n + j + length);
+      var x0 = DoubleVector.broadcast(DOUBLE_SPECIES, a[a0 + p]);
+      s00 = x0.fma(b0, s00);
+      s01 = x0.fma(b1, s01);
+      var x1 = DoubleVector.broadcast(DOUBLE_SPECIES, a[a1 + p]);
+      s10 = x1.fma(b0, s10);
+      s11 = x1.fma(b1, s11);
+      var x2 = DoubleVector.broadcast(DOUBLE_SPECIES, a[a2 + p]);
+      s20 = x2.fma(b0, s20);
+      s21 = x2.fma(b1, s21);
+      var x3 = DoubleVector.broadcast(DOUBLE_SPECIES, a[a3 + p]);
+      s30 = x3.fma(b0, s30);
+      s31 = x3.fma(b1, s31);
+    }
+    storeMatrix(s00, c, c0, epilogue);
+    storeMatrix(s01, c, c0 + length, epilogue);
+    storeMatrix(s10, c, c1, epilogue);
+    storeMatrix(s11, c, c1 + length, epilogue);
+    storeMatrix(s20, c, c2, epilogue);
+    storeMatrix(s21, c, c2 + length, epilogue);
+    storeMatrix(s30, c, c3, epilogue);
+    storeMatrix(s31, c, c3 + length, epilogue);
+  }
+
+  // computes 1 row x 1 vector of c
+  private void multiply1x1(double[] c, double[] a, double[] b, int n, int k, int i, int j, int depthStart, int depthEnd, boolean first, DDOp epilogue) {
+    var c0 = i * n + j;
+    var s = first? DoubleVector.zero(DOUBLE_SPECIES): DoubleVector.fromArray(DOUBLE_SPECIES, c, c0);
+    var a0 = i * k;
+    for (var p = depthStart; p < depthEnd; p++) {
+      var x = DoubleVector.broadcast(DOUBLE_SPECIES, a[a0 + p]);
+      s = x.fma(DoubleVector.fromArray(DOUBLE_SPECIES, b, p * n + j), s);
+    }
+    storeMatrix(s, c, c0, epilogue);
+  }
+
+  private void storeMatrix(DoubleVector v, double[] c, int index, DDOp epilogue) {
+    if (epilogue != null) {
+      v = (DoubleVector) invoke(epilogue, v, null, null, null);
+    }
+    v.intoArray(c, index);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code n} columns by the vector {@code x}
+   * of {@code n} values and stores the resulting vector of {@code m} values in {@code y},
+   * i.e. {@code y[i] = a[i * n] * x[0] + a[i * n + 1] * x[1] + ...}.
+   * The matrix is stored row by row.
+   * @param y the destination vector.
+   * @param a the matrix.
+   * @param x the vector.
+   * @param m the number of rows of {@code a}.
+   * @param n the number of columns of {@code a}.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or vector or if {@code y} is the same array as {@code a} or {@code x}.
+   * @see #matrixVectorMultiply(double[], double[], double[], int, int, DDOp)
+   */
+  default void matrixVectorMultiply(double[] y, double[] a, double[] x, int m, int n) {
+    multiplyMatrixVector(y, a, x, m, n);
+  }
+
+  /**
+   * Multiplies the matrix {@code a} of {@code m} rows and {@code n} columns by the vector {@code x}
+   * of {@code n} values, apply the {@code epilogue} on each value of the resulting vector and stores it
+   * in {@code y}, i.e. {@code y[i] = epilogue.apply(a[i * n] * x[0] + a[i * n + 1] * x[1] + ...)}.
+   * The matrix is stored row by row.
+   *
+   * 4 rows of {@code a} are multiplied at once so each vector of {@code x} is loaded once for 4 rows,
+   * the sums are done lane by lane using fused multiply-add operations then reduced,
+   * the epilogue is applied on the resulting vector.
+   *
+   * @param y the destination vector.
+   * @param a the matrix.
+   * @param x the vector.
+   * @param m the number of rows of {@code a}.
+   * @param n the number of columns of {@code a}.
+   * @param epilogue a lambda that specify the operator applied on each value of the result.
+   * @throws IllegalArgumentException if a dimension is negative or if the length of an array is not
+   *         the number of values of its matrix or vector or if {@code y} is the same array as {@code a} or {@code x}.
+   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   */
+  default void matrixVectorMultiply(double[] y, double[] a, double[] x, int m, int n, DDOp epilogue) {
+    requireNonNull(epilogue);
+    multiplyMatrixVector(y, a, x, m, n);
+    apply(y, y, epilogue);
+  }
+
+  private void multiplyMatrixVector(double[] y, double[] a, double[] x, int m, int n) {
+    Impl.checkMatrix(a.length, m, n);
+    Impl.checkMatrix(x.length, n, 1);
+    Impl.checkMatrix(y.length, m, 1);
+    Impl.checkNotAliased(y, a, x);
+    var length = DOUBLE_SPECIES.length();
+    int bound = DOUBLE_SPECIES.loopBound(n);
+    var i = 0;
+    for (; i + 4 <= m; i += 4) {
+      var a0 = i * n;
+      var a1 = a0 + n;
+      var a2 = a1 + n;
+      var a3 = a2 + n;
+      var s0 = DoubleVector.zero(DOUBLE_SPECIES);
+      var s1 = s0;
+      var s2 = s0;
+      var s3 = s0;
+      int j = 0;
+      for (; j < bound; j += length) {
+        var vx = DoubleVector.fromArray(DOUBLE_SPECIES, x, j);
+        s0 = DoubleVector.fromArray(DOUBLE_SPECIES, a, a0 + j).fma(vx, s0);
+        s1 = DoubleVector.fromArray(DOUBLE_SPECIES, a, a1 + j).fma(vx, s1);
+        s2 = DoubleVector.fromArray(DOUBLE_SPECIES, a, a2 + j).fma(vx, s2);
+        s3 = DoubleVector.fromArray(DOUBLE_SPECIES, a, a3 + j).fma(vx, s3);
+      }
+      var r0 = s0.reduceLanes(VectorOperators.ADD);
+      var r1 = s1.reduceLanes(VectorOperators.ADD);
+      var r2 = s2.reduceLanes(VectorOperators.ADD);
+      var r3 = s3.reduceLanes(VectorOperators.ADD);
+      for (; j < n; j++) {
+        r0 = Math.fma(a[a0 + j], x[j], r0);
+        r1 = Math.fma(a[a1 + j], x[j], r1);
+        r2 = Math.fma(a[a2 + j], x[j], r2);
+        r3 = Math.fma(a[a3 + j], x[j], r3);
+      }
+      y[i] = r0;
+      y[i + 1] = r1;
+      y[i + 2] = r2;
+      y[i + 3] = r3;
+    }
+    for (; i < m; i++) {
+      var a0 = i * n;
+      var s0 = DoubleVector.zero(DOUBLE_SPECIES);
+      int j = 0;
+      for (; j < bound; j += length) {
+        s0 = DoubleVector.fromArray(DOUBLE_SPECIES, a, a0 + j).fma(DoubleVector.fromArray(DOUBLE_SPECIES, x, j), s0);
+      }
+      var r0 = s0.reduceLanes(VectorOperators.ADD);
+      for (; j < n; j++) {
+        r0 = Math.fma(a[a0 + j], x[j], r0);
+      }
+      y[i] = r0;
+    }
+  }
+
+  /**
+   * Returns the index of the minimum value of the array {@code a}.
+   * If there are several minimum values, the index of the first one is returned.
+   *
+   * The minimum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the minimum value or -1 if the array is empty.
+   */
+  default int argMin(int[] a) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Integer.MAX_VALUE;
+    if (bound != 0) {
+      var vvalue = IntVector.broadcast(INT_SPECIES, Integer.MAX_VALUE);
+      var vindex = IntVector.broadcast(INT_SPECIES, -1);
+      var vcurrent = IntVector.zero(INT_SPECIES).addIndex(1);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.LT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask);
+        vcurrent = vcurrent.add(INT_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MIN);
+      // lanes that are not the minimum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Integer.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Integer.MAX_VALUE) {
+        index = found;
+      } else {
+        // no lane was updated, all the values are Integer.MAX_VALUE
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Integer.MAX_VALUE) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] < value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the maximum value of the array {@code a}.
+   * If there are several maximum values, the index of the first one is returned.
+   *
+   * The maximum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the maximum value or -1 if the array is empty.
+   */
+  default int argMax(int[] a) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Integer.MIN_VALUE;
+    if (bound != 0) {
+      var vvalue = IntVector.broadcast(INT_SPECIES, Integer.MIN_VALUE);
+      var vindex = IntVector.broadcast(INT_SPECIES, -1);
+      var vcurrent = IntVector.zero(INT_SPECIES).addIndex(1);
+      for (; i < bound; i += INT_SPECIES.length()) {
+        var va = IntVector.fromArray(INT_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.GT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask);
+        vcurrent = vcurrent.add(INT_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MAX);
+      // lanes that are not the maximum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Integer.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Integer.MAX_VALUE) {
+        index = found;
+      } else {
+        // no lane was updated, all the values are Integer.MIN_VALUE
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Integer.MIN_VALUE) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] > value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the minimum value of the array {@code a}.
+   * If there are several minimum values, the index of the first one is returned.
+   *
+   * The minimum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the minimum value or -1 if the array is empty.
+   */
+  default int argMin(long[] a) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Long.MAX_VALUE;
+    if (bound != 0) {
+      var vvalue = LongVector.broadcast(LONG_SPECIES, Long.MAX_VALUE);
+      var vindex = LongVector.broadcast(LONG_SPECIES, -1);
+      var vcurrent = LongVector.zero(LONG_SPECIES).addIndex(1);
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        var va = LongVector.fromArray(LONG_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.LT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask);
+        vcurrent = vcurrent.add(LONG_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MIN);
+      // lanes that are not the minimum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Long.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Long.MAX_VALUE) {
+        index = (int) found;
+      } else {
+        // no lane was updated, all the values are Long.MAX_VALUE
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Long.MAX_VALUE) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] < value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the maximum value of the array {@code a}.
+   * If there are several maximum values, the index of the first one is returned.
+   *
+   * The maximum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the maximum value or -1 if the array is empty.
+   */
+  default int argMax(long[] a) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Long.MIN_VALUE;
+    if (bound != 0) {
+      var vvalue = LongVector.broadcast(LONG_SPECIES, Long.MIN_VALUE);
+      var vindex = LongVector.broadcast(LONG_SPECIES, -1);
+      var vcurrent = LongVector.zero(LONG_SPECIES).addIndex(1);
+      for (; i < bound; i += LONG_SPECIES.length()) {
+        var va = LongVector.fromArray(LONG_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.GT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask);
+        vcurrent = vcurrent.add(LONG_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MAX);
+      // lanes that are not the maximum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Long.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Long.MAX_VALUE) {
+        index = (int) found;
+      } else {
+        // no lane was updated, all the values are Long.MIN_VALUE
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Long.MIN_VALUE) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] > value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the minimum value of the array {@code a}.
+   * If there are several minimum values, the index of the first one is returned.
+   * The NaN values are ignored.
+   *
+   * The minimum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the minimum value or -1 if the array is empty.
+   */
+  default int argMin(float[] a) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Float.POSITIVE_INFINITY;
+    if (bound != 0) {
+      var vvalue = FloatVector.broadcast(FLOAT_SPECIES, Float.POSITIVE_INFINITY);
+      var vindex = IntVector.broadcast(INT_SPECIES, -1);
+      var vcurrent = IntVector.zero(INT_SPECIES).addIndex(1);
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.LT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask.cast(INT_SPECIES));
+        vcurrent = vcurrent.add(FLOAT_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MIN);
+      // lanes that are not the minimum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).cast(INT_SPECIES).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Integer.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Integer.MAX_VALUE) {
+        index = found;
+      } else {
+        // no lane was updated, all the values are Float.POSITIVE_INFINITY or NaN
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Float.POSITIVE_INFINITY) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] < value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the maximum value of the array {@code a}.
+   * If there are several maximum values, the index of the first one is returned.
+   * The NaN values are ignored.
+   *
+   * The maximum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the maximum value or -1 if the array is empty.
+   */
+  default int argMax(float[] a) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Float.NEGATIVE_INFINITY;
+    if (bound != 0) {
+      var vvalue = FloatVector.broadcast(FLOAT_SPECIES, Float.NEGATIVE_INFINITY);
+      var vindex = IntVector.broadcast(INT_SPECIES, -1);
+      var vcurrent = IntVector.zero(INT_SPECIES).addIndex(1);
+      for (; i < bound; i += FLOAT_SPECIES.length()) {
+        var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.GT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask.cast(INT_SPECIES));
+        vcurrent = vcurrent.add(FLOAT_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MAX);
+      // lanes that are not the maximum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).cast(INT_SPECIES).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Integer.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Integer.MAX_VALUE) {
+        index = found;
+      } else {
+        // no lane was updated, all the values are Float.NEGATIVE_INFINITY or NaN
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Float.NEGATIVE_INFINITY) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] > value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the minimum value of the array {@code a}.
+   * If there are several minimum values, the index of the first one is returned.
+   * The NaN values are ignored.
+   *
+   * The minimum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the minimum value or -1 if the array is empty.
+   */
+  default int argMin(double[] a) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Double.POSITIVE_INFINITY;
+    if (bound != 0) {
+      var vvalue = DoubleVector.broadcast(DOUBLE_SPECIES, Double.POSITIVE_INFINITY);
+      var vindex = LongVector.broadcast(LONG_SPECIES, -1);
+      var vcurrent = LongVector.zero(LONG_SPECIES).addIndex(1);
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.LT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask.cast(LONG_SPECIES));
+        vcurrent = vcurrent.add(DOUBLE_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MIN);
+      // lanes that are not the minimum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).cast(LONG_SPECIES).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Long.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Long.MAX_VALUE) {
+        index = (int) found;
+      } else {
+        // no lane was updated, all the values are Double.POSITIVE_INFINITY or NaN
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Double.POSITIVE_INFINITY) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] < value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the maximum value of the array {@code a}.
+   * If there are several maximum values, the index of the first one is returned.
+   * The NaN values are ignored.
+   *
+   * The maximum values and their indexes are tracked lane by lane, the lanes are only
+   * reduced at the end.
+   *
+   * @param a an array.
+   * @return the index of the maximum value or -1 if the array is empty.
+   */
+  default int argMax(double[] a) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    var index = -1;
+    var value = Double.NEGATIVE_INFINITY;
+    if (bound != 0) {
+      var vvalue = DoubleVector.broadcast(DOUBLE_SPECIES, Double.NEGATIVE_INFINITY);
+      var vindex = LongVector.broadcast(LONG_SPECIES, -1);
+      var vcurrent = LongVector.zero(LONG_SPECIES).addIndex(1);
+      for (; i < bound; i += DOUBLE_SPECIES.length()) {
+        var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+        var mask = va.compare(VectorOperators.GT, vvalue);
+        vvalue = vvalue.blend(va, mask);
+        vindex = vindex.blend(vcurrent, mask.cast(LONG_SPECIES));
+        vcurrent = vcurrent.add(DOUBLE_SPECIES.length());
+      }
+      value = vvalue.reduceLanes(VectorOperators.MAX);
+      // lanes that are not the maximum or that were never updated
+      var others = vvalue.compare(VectorOperators.NE, value).cast(LONG_SPECIES).or(vindex.compare(VectorOperators.EQ, -1));
+      var found = vindex.blend(Long.MAX_VALUE, others).reduceLanes(VectorOperators.MIN);
+      if (found != Long.MAX_VALUE) {
+        index = (int) found;
+      } else {
+        // no lane was updated, all the values are Double.NEGATIVE_INFINITY or NaN
+        for (var j = 0; j < bound; j++) {
+          if (a[j] == Double.NEGATIVE_INFINITY) {
+            index = j;
+            break;
+          }
+        }
+      }
+    }
+    for (; i < a.length; i++) {
+      if (a[i] > value || (index == -1 && a[i] == value)) {
+        value = a[i];
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(int[] a, IZOp predicate) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(int[] a, IZOp predicate) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(int[] a, IZOp predicate) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(int[] a, IZOp predicate) {
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(long[] a, LZOp predicate) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(long[] a, LZOp predicate) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(long[] a, LZOp predicate) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(long[] a, LZOp predicate) {
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(float[] a, FZOp predicate) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(float[] a, FZOp predicate) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(float[] a, FZOp predicate) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(float[] a, FZOp predicate) {
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(double[] a, DZOp predicate) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(double[] a, DZOp predicate) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(double[] a, DZOp predicate) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(double[] a, DZOp predicate) {
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(byte[] a, BZOp predicate) {
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(byte[] a, BZOp predicate) {
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(byte[] a, BZOp predicate) {
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(byte[] a, BZOp predicate) {
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of values of the array {@code a} for which the predicate is true.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the number of values that satisfy the predicate.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int count(short[] a, SZOp predicate) {
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var count = 0;
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      count += mask.trueCount();
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the first value of the array {@code a} for which the predicate is true.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return the index of the first value that satisfy the predicate or -1.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default int indexOf(short[] a, SZOp predicate) {
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return i + mask.firstTrue();
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the predicate is true for at least one value of the array {@code a}.
+   * The search stops at the first vector containing a value that satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if at least one value satisfy the predicate, false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean anyMatch(short[] a, SZOp predicate) {
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (mask.anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the predicate is true for all the values of the array {@code a}.
+   * The search stops at the first vector containing a value that does not satisfy the predicate.
+   * @param a an array.
+   * @param predicate a lambda that specify the predicate.
+   * @return true if all the values satisfy the predicate (or the array is empty), false otherwise.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default boolean allMatch(short[] a, SZOp predicate) {
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      if (!mask.allTrue()) {
+        return false;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (!predicate.apply(a[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, int[] a, Selection selection, IZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + INT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
     }
   }
 
   /**
-   * Apply the operator on each values of the array {@code a} and {@code b} and store
-   * each result in the array {@code dest}.
-   * @param dest the destination array.
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, int[] a, int[] b, Selection selection, IIZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = INT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
+    for (; i < bound; i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = IntVector.fromArray(INT_SPECIES, b, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + INT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
    * @param a the array of parameters.
-   * @param operator a lambda that specify the operator.
-   * @throws IllegalArgumentException if the arrays does not have the same length.
-   * @throws IllegalStateException if the lambda can not be converted to an operator.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
    */
-  default void apply(double[] dest, double[] a, double[] b, DDDOp operator) {
-    var length = dest.length;
-    if (a.length != length || b.length != length) {
+  default void select(long[] bitmap, long[] a, Selection selection, LZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + LONG_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, long[] a, long[] b, Selection selection, LLZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = LONG_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
+    for (; i < bound; i += LONG_SPECIES.length()) {
+      var va = LongVector.fromArray(LONG_SPECIES, a, i);
+      var vb = LongVector.fromArray(LONG_SPECIES, b, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + LONG_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, float[] a, Selection selection, FZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + FLOAT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, float[] a, float[] b, Selection selection, FFZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = FLOAT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
+    for (; i < bound; i += FLOAT_SPECIES.length()) {
+      var va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+      var vb = FloatVector.fromArray(FLOAT_SPECIES, b, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + FLOAT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, double[] a, Selection selection, DZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
       throw new IllegalArgumentException("wrong length");
     }
     int i = 0;
     int bound = DOUBLE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += DOUBLE_SPECIES.length()) {
+      var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + DOUBLE_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, double[] a, double[] b, Selection selection, DDZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = DOUBLE_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
     for (; i < bound; i += DOUBLE_SPECIES.length()) {
       var va = DoubleVector.fromArray(DOUBLE_SPECIES, a, i);
       var vb = DoubleVector.fromArray(DOUBLE_SPECIES, b, i);
-      var vc = (DoubleVector) invoke(operator, va, vb, null, null);
-      vc.intoArray(dest, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + DOUBLE_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, byte[] a, Selection selection, BZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + BYTE_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
     }
     for (; i < a.length; i++) {
-      dest[i] = operator.apply(a[i], b[i]);
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, byte[] a, byte[] b, Selection selection, BBZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = BYTE_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
+    for (; i < bound; i += BYTE_SPECIES.length()) {
+      var va = ByteVector.fromArray(BYTE_SPECIES, a, i);
+      var vb = ByteVector.fromArray(BYTE_SPECIES, b, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + BYTE_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the array {@code a} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, short[] a, Selection selection, SZOp predicate) {
+    if (bitmap.length != (a.length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(a.length);
+    Impl.recordCall(a.length, a.length - bound);
+    var bits = 0L;
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, null, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + SHORT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
     }
+    for (; i < a.length; i++) {
+      if (predicate.apply(a[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  /**
+   * Tests the predicate on each values of the arrays {@code a} and {@code b} and stores the results as bits
+   * in the {@code bitmap}, the bit {@code i} is stored in the bit {@code i % 64} of {@code bitmap[i / 64]}.
+   * The bits are combined with the existing bits of the bitmap as specified by {@code selection}.
+   * The masks computed for each vector are converted to bits using {@code VectorMask.toLong()}.
+   * @param bitmap the bitmap.
+   * @param a the array of first parameters.
+   * @param b the array of second parameters.
+   * @param selection how the bits are combined with the existing bits of the bitmap.
+   * @param predicate a lambda that specify the predicate.
+   * @throws IllegalArgumentException if the arrays does not have the same length or
+   *   if the length of the bitmap is not {@code (a.length + 63) / 64}.
+   * @throws IllegalStateException if the lambda can not be converted to a predicate.
+   */
+  default void select(long[] bitmap, short[] a, short[] b, Selection selection, SSZOp predicate) {
+    var length = a.length;
+    if (b.length != length || bitmap.length != (length + 63) >>> 6) {
+      throw new IllegalArgumentException("wrong length");
+    }
+    int i = 0;
+    int bound = SHORT_SPECIES.loopBound(length);
+    Impl.recordCall(length, length - bound);
+    var bits = 0L;
+    for (; i < bound; i += SHORT_SPECIES.length()) {
+      var va = ShortVector.fromArray(SHORT_SPECIES, a, i);
+      var vb = ShortVector.fromArray(SHORT_SPECIES, b, i);
+      var mask = (VectorMask<?>) invoke(predicate, va, vb, null, null);
+      bits |= mask.toLong() << i;  // the number of lanes divides 64
+      if (((i + SHORT_SPECIES.length()) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    for (; i < length; i++) {
+      if (predicate.apply(a[i], b[i])) {
+        bits |= 1L << i;
+      }
+      if (((i + 1) & 63) == 0) {
+        bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+        bits = 0;
+      }
+    }
+    if ((i & 63) != 0) {
+      bitmap[i >>> 6] = combine(selection, bitmap[i >>> 6], bits);
+    }
+  }
+
+  private static long combine(Selection selection, long word, long bits) {
+    return switch (selection) {
+      case SET -> bits;
+      case AND -> word & bits;
+      case OR -> word | bits;
+    };
+  }
+
+  /**
+   * Adds two bytes, the result is clamped to [{@link Byte#MIN_VALUE}, {@link Byte#MAX_VALUE}]
+   * instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a a byte.
+   * @param b a byte.
+   * @return the saturated sum of {@code a} and {@code b}.
+   */
+  static byte saturatedAdd(byte a, byte b) {
+    return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, a + b));
+  }
+
+  /**
+   * Subtracts two bytes, the result is clamped to [{@link Byte#MIN_VALUE}, {@link Byte#MAX_VALUE}]
+   * instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a a byte.
+   * @param b a byte.
+   * @return the saturated difference of {@code a} and {@code b}.
+   */
+  static byte saturatedSub(byte a, byte b) {
+    return (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, a - b));
+  }
+
+  /**
+   * Adds two bytes seen as unsigned values (by example pixel components),
+   * the result is clamped to [0, 255] instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a an unsigned byte.
+   * @param b an unsigned byte.
+   * @return the saturated unsigned sum of {@code a} and {@code b}.
+   */
+  static byte unsignedSaturatedAdd(byte a, byte b) {
+    return (byte) Math.min(0xFF, Byte.toUnsignedInt(a) + Byte.toUnsignedInt(b));
+  }
+
+  /**
+   * Subtracts two bytes seen as unsigned values (by example pixel components),
+   * the result is clamped to [0, 255] instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a an unsigned byte.
+   * @param b an unsigned byte.
+   * @return the saturated unsigned difference of {@code a} and {@code b}.
+   */
+  static byte unsignedSaturatedSub(byte a, byte b) {
+    return (byte) Math.max(0, Byte.toUnsignedInt(a) - Byte.toUnsignedInt(b));
+  }
+
+  /**
+   * Adds two shorts, the result is clamped to [{@link Short#MIN_VALUE}, {@link Short#MAX_VALUE}]
+   * instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a a short.
+   * @param b a short.
+   * @return the saturated sum of {@code a} and {@code b}.
+   */
+  static short saturatedAdd(short a, short b) {
+    return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, a + b));
+  }
+
+  /**
+   * Subtracts two shorts, the result is clamped to [{@link Short#MIN_VALUE}, {@link Short#MAX_VALUE}]
+   * instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a a short.
+   * @param b a short.
+   * @return the saturated difference of {@code a} and {@code b}.
+   */
+  static short saturatedSub(short a, short b) {
+    return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, a - b));
+  }
+
+  /**
+   * Adds two shorts seen as unsigned values, the result is clamped to [0, 65535] instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a an unsigned short.
+   * @param b an unsigned short.
+   * @return the saturated unsigned sum of {@code a} and {@code b}.
+   */
+  static short unsignedSaturatedAdd(short a, short b) {
+    return (short) Math.min(0xFFFF, Short.toUnsignedInt(a) + Short.toUnsignedInt(b));
+  }
+
+  /**
+   * Subtracts two shorts seen as unsigned values, the result is clamped to [0, 65535] instead of overflowing.
+   * This method can be used inside a lambda, it is converted to the equivalent vector operations.
+   * @param a an unsigned short.
+   * @param b an unsigned short.
+   * @return the saturated unsigned difference of {@code a} and {@code b}.
+   */
+  static short unsignedSaturatedSub(short a, short b) {
+    return (short) Math.max(0, Short.toUnsignedInt(a) - Short.toUnsignedInt(b));
+  }
+
+  /**
+   * Creates an empty pipeline of operators on ints using this {@link VectorHandle}.
+   * The operators added to the pipeline are fused into one operation on vectors.
+   * @return a new empty pipeline.
+   * @see IntPipeline
+   */
+  default IntPipeline intPipeline() {
+    return new IntPipeline(this);
+  }
+
+  /**
+   * Creates an empty pipeline of operators on longs using this {@link VectorHandle}.
+   * The operators added to the pipeline are fused into one operation on vectors.
+   * @return a new empty pipeline.
+   * @see LongPipeline
+   */
+  default LongPipeline longPipeline() {
+    return new LongPipeline(this);
+  }
+
+  /**
+   * Creates an empty pipeline of operators on floats using this {@link VectorHandle}.
+   * The operators added to the pipeline are fused into one operation on vectors.
+   * @return a new empty pipeline.
+   * @see FloatPipeline
+   */
+  default FloatPipeline floatPipeline() {
+    return new FloatPipeline(this);
+  }
+
+  /**
+   * Creates an empty pipeline of operators on doubles using this {@link VectorHandle}.
+   * The operators added to the pipeline are fused into one operation on vectors.
+   * @return a new empty pipeline.
+   * @see DoublePipeline
+   */
+  default DoublePipeline doublePipeline() {
+    return new DoublePipeline(this);
+  }
+
+  /**
+   * Creates an empty table of {@code rowCount} rows using this {@link VectorHandle}.
+   * The projections and the filters of the table are executed by batches of rows using vectors.
+   * @param rowCount the number of rows of the table.
+   * @return a new table with no column.
+   * @throws IllegalArgumentException if {@code rowCount} is negative.
+   * @see Table
+   */
+  default Table table(int rowCount) {
+    return new Table(this, rowCount);
+  }
+
+  /**
+   * Cumulative counters of all the {@link VectorHandle}s.
+   *
+   * @param calls number of loops executed using a kernel, a parallel method counts one loop per block.
+   * @param elements number of elements processed by those loops.
+   * @param tailElements number of elements processed one by one after the vector loop.
+   * @param compilations number of kernels compiled.
+   * @param compilationFailures number of operator lambdas that can not be compiled.
+   *
+   * @see #metrics()
+   */
+  record Metrics(long calls, long elements, long tailElements, long compilations, long compilationFailures) { }
+
+  /**
+   * Returns a snapshot of the counters of all the {@link VectorHandle}s.
+   * The same values are recorded each second by the JFR event
+   * {@code com.github.forax.vectorhandle.KernelMetrics}, and each compilation of a kernel
+   * is recorded by the JFR event {@code com.github.forax.vectorhandle.KernelCompilation}.
+   * One loop in 1024 is recorded by the JFR event {@code com.github.forax.vectorhandle.KernelExecution}.
+   *
+   * The loops are only counted (and sampled) if the system property
+   * {@code com.github.forax.vectorhandle.metrics} is set to true, otherwise the counters
+   * of the calls, the elements and the tail elements stay at zero.
+   *
+   * @return the current values of the counters.
+   */
+  static Metrics metrics() {
+    return Impl.metrics();
+  }
+
+  /**
+   * Returns a textual description of the kernel derived from an operator lambda,
+   * the lambda method, the species, the tree of expressions, the bytecode of the generated method
+   * and a self-check comparing the time of the kernel with the time of the operator lambda on a sample
+   * (if all the values of the lambda have the same type).
+   *
+   * The description contains a warning if the kernel is several times slower than the operator lambda,
+   * usually because the Vector API is not intrinsified by the JIT, nothing is logged.
+   *
+   * The same description without the self-check is logged each time a kernel is compiled
+   * if the system property {@code com.github.forax.vectorhandle.dump} is set to true.
+   *
+   * This method is slow and should only be used for diagnostic.
+   *
+   * @param lookup a lookup used to access the lambda, see {@link #of(Lookup)}.
+   * @param operator an operator lambda.
+   * @return a textual description of the kernel.
+   * @throws IllegalStateException if the operator lambda can not be transformed to a kernel.
+   */
+  static String describe(Lookup lookup, Serializable operator) {
+    return Impl.describe(lookup, operator);
   }
 
   /**
@@ -400,19 +5817,15 @@ public interface VectorHandle {
    *  private static final VectorHandle VH = VectorHandle.of(lookup());
    * </pre>
    *
+   * A {@link VectorHandle} caches the code generated for at most 8 different lambdas,
+   * calling it with more lambdas throws an {@link IllegalStateException},
+   * the lambdas of a {@link Table} are not taken into account.
+   *
    * @param lookup a lookup used to access the lambda passed to the method {@code apply}.
    * @return a new {@link VectorHandle}
    */
   static VectorHandle of(Lookup lookup) {
-    var target = Impl.createMH(lookup);
-    return (operator, va, vb, vc, vd) -> {
-      try {
-        return target.invokeExact(operator, va, vb, vc, vd);
-      } catch(RuntimeException | Error e) {
-        throw e;
-      } catch (Throwable t) {
-        throw new AssertionError(t);
-      }
-    };
+    return new Impl.VectorHandleImpl(lookup);
   }
+
 }
@@ -8,15 +8,28 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.invoke.MethodHandles.lookup;
 
+/**
+ * Benchmarks of the dispatch path, a small size mostly measures the cost of calling the kernel.
+ *
+ * The other benchmarks of the suite are {@link IntOperatorPerfTest}, {@link LongOperatorPerfTest},
+ * {@link FloatOperatorPerfTest}, {@link DoubleOperatorPerfTest}, {@link FirstCallPerfTest} and {@link MetricsPerfTest},
+ * the method {@link #main(String[])} runs all of them with the gc profiler.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
 @Warmup(iterations = 5, time = 5)
@@ -26,51 +39,87 @@ import static java.lang.invoke.MethodHandles.lookup;
 public class VectorHandlePerfTest {
   private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
   private static final VectorHandle VH = VectorHandle.of(lookup());
+  private static final VectorHandle POLYMORPHIC_VH = VectorHandle.of(lookup());
 
-  private static final int SIZE = 100_000;
+  @Param({"7", "100", "1003", "100000", "10000000"})
+  private int size;
 
-  private static final int[] DEST;
-  private static final int[] A;
-  private static final int[] B;
-  static {
+  private int[] dest;
+  private int[] a;
+  private int[] b;
+  private int counter;
+
+  @Setup
+  public void setup() {
     var random = new Random(0);
-    A = random.ints(SIZE, 0, 100).toArray();
-    B = random.ints(SIZE, 0, 100).toArray();
-    DEST = new int[SIZE];
+    a = random.ints(size, 0, 100).toArray();
+    b = random.ints(size, 0, 100).toArray();
+    dest = new int[size];
   }
 
   @Benchmark
   public int[] vector_handle() {
-    VH.apply(DEST, A, B, (x, y) -> x + y * 2);
-    return DEST;
+    VH.apply(dest, a, b, (x, y) -> x + y * 2);
+    return dest;
+  }
+
+  // the call site of the vector handle has to check 4 lambda classes
+  @Benchmark
+  public int[] vector_handle_polymorphic() {
+    switch (counter++ & 3) {
+      case 0 -> POLYMORPHIC_VH.apply(dest, a, b, (x, y) -> x + y * 2);
+      case 1 -> POLYMORPHIC_VH.apply(dest, a, b, (x, y) -> x - y * 2);
+      case 2 -> POLYMORPHIC_VH.apply(dest, a, b, (x, y) -> x * 2 + y);
+      default -> POLYMORPHIC_VH.apply(dest, a, b, (x, y) -> x * 2 - y);
+    }
+    return dest;
   }
 
-  //@Benchmark
+  @Benchmark
   public int[] handwritten() {
     int i = 0;
-    for (; i < INT_SPECIES.loopBound(A.length); i += INT_SPECIES.length()) {
-      var va = IntVector.fromArray(INT_SPECIES, A, i);
-      var vb = IntVector.fromArray(INT_SPECIES, B, i);
+    for (; i < INT_SPECIES.loopBound(a.length); i += INT_SPECIES.length()) {
+      var va = IntVector.fromArray(INT_SPECIES, a, i);
+      var vb = IntVector.fromArray(INT_SPECIES, b, i);
       var vc = va.add(vb.mul(2));
-      vc.intoArray(DEST, i);
+      vc.intoArray(dest, i);
     }
-    for (; i < A.length; i++) {
-      var a = A[i];
-      var b = B[i];
-      DEST[i] = a + b * 2;
+    for (; i < a.length; i++) {
+      var x = a[i];
+      var y = b[i];
+      dest[i] = x + y * 2;
     }
-    return DEST;
+    return dest;
   }
 
-  //@Benchmark
+  @Benchmark
   public int[] no_vector() {
-    int length = A.length;
+    int length = a.length;
     for (int i = 0; i < length; i++) {
-      var a = A[i];
-      var b = B[i];
-      var c = a + b * 2;
-      DEST[i] = c;
+      var x = a[i];
+      var y = b[i];
+      var z = x + y * 2;
+      dest[i] = z;
+    }
+    return dest;
+  }
+
+  /**
+   * Runs all the benchmarks of the suite with the gc profiler,
+   * the arguments are regexes selecting the benchmarks (all the benchmarks if there is no argument).
+   *
+   * @param args regexes selecting the benchmarks.
+   * @throws RunnerException if a benchmark fails.
+   */
+  public static void main(String[] args) throws RunnerException {
+    var options = new OptionsBuilder()
+        .addProfiler(GCProfiler.class);
+    if (args.length == 0) {
+      options.include(VectorHandlePerfTest.class.getPackageName() + ".*PerfTest");
+    }
+    for(var arg: args) {
+      options.include(arg);
     }
-    return DEST;
+    new Runner(options.build()).run();
   }
 }
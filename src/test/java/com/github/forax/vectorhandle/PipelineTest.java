@@ -0,0 +1,270 @@
+package com.github.forax.vectorhandle;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PipelineTest {
+  @Test
+  public void intPipelineInto() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_003];
+    var a = new int[10_003];
+    Arrays.fill(a, 3);
+    vh.intPipeline()
+        .map(x -> x * 2)
+        .map(x -> Math.min(x, 5))
+        .map(x -> x + 10)
+        .into(dest, a);
+    var expected = new int[10_003];
+    Arrays.fill(expected, 15);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void longPipelineInto() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[10_003];
+    var a = new long[10_003];
+    Arrays.fill(a, 3);
+    vh.longPipeline()
+        .map(x -> - x)
+        .map(x -> x * x)
+        .into(dest, a);
+    var expected = new long[10_003];
+    Arrays.fill(expected, 9);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void floatPipelineInto() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[10_003];
+    var a = new float[10_003];
+    Arrays.fill(a, 8);
+    vh.floatPipeline()
+        .map(x -> x / 4)
+        .map(x -> x * 3)
+        .map(x -> Math.max(0, Math.min(x, 5)))
+        .map(x -> x + 1)
+        .into(dest, a);
+    var expected = new float[10_003];
+    Arrays.fill(expected, 6);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void doublePipelineInto() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new double[3];
+    var a = new double[] { 1, 2, 3 };
+    vh.doublePipeline()
+        .map(x -> x * 2)
+        .into(dest, a);
+    assertArrayEquals(new double[] { 2, 4, 6 }, dest);
+  }
+  @Test
+  public void emptyPipelineInto() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_003];
+    var a = new int[10_003];
+    Arrays.fill(a, 3);
+    vh.intPipeline().into(dest, a);
+    assertArrayEquals(a, dest);
+  }
+
+  @Test
+  public void intPipelineSum() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[10_003];
+    Arrays.fill(a, 3);
+    assertEquals(10_003 * 7, vh.intPipeline().map(x -> x * 2).map(x -> x + 1).sum(a));
+  }
+  @Test
+  public void longPipelineMinMax() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new long[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    var pipeline = vh.longPipeline().map(x -> x - 5_000);
+    assertEquals(-5_000, pipeline.min(a));
+    assertEquals(5_002, pipeline.max(a));
+  }
+  @Test
+  public void floatPipelineSum() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[10_003];
+    Arrays.fill(a, 0.5f);
+    assertEquals(10_003f, vh.floatPipeline().map(x -> x * 2).sum(a));
+  }
+  @Test
+  public void doublePipelineMax() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    assertEquals(-1.0, vh.doublePipeline().map(x -> - x).map(x -> x - 1).max(a));
+  }
+  @Test
+  public void pipelineRecreatedAtEachCall() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_003];
+    var a = new int[10_003];
+    Arrays.fill(a, 3);
+    for(var i = 0; i < 100; i++) {
+      vh.intPipeline().map(x -> x + 1).map(x -> x * 2).into(dest, a);
+    }
+    var expected = new int[10_003];
+    Arrays.fill(expected, 8);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void floatPipelineCapturedValues() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[10_003];
+    var a = new float[10_003];
+    Arrays.fill(a, 3f);
+    for(var i = 0; i < 20; i++) {
+      var scale = (float) i;
+      var max = 10f;
+      var pipeline = vh.floatPipeline()
+          .map(x -> x * scale)
+          .map(x -> Math.min(x, max) + scale);
+      pipeline.into(dest, a);
+      var expected = new float[10_003];
+      Arrays.fill(expected, Math.min(3f * scale, max) + scale);
+      assertArrayEquals(expected, dest);
+    }
+  }
+  @Test
+  public void intPipelineSumAsLong() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[10_003];
+    Arrays.fill(a, Integer.MAX_VALUE / 2);
+    assertEquals(10_003L * (Integer.MAX_VALUE / 2), vh.intPipeline().sumAsLong(a));
+    assertEquals(10_003L * (Integer.MAX_VALUE / 2 - 1), vh.intPipeline().map(x -> x - 1).sumAsLong(a));
+    assertEquals(0L, vh.intPipeline().sumAsLong(new int[0]));
+  }
+  @Test
+  public void floatPipelineSumAsDouble() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i + .1f;
+    }
+    var expected = 0.0;
+    for(var value: a) {
+      expected += value * 2f;
+    }
+    assertEquals(expected, vh.floatPipeline().map(x -> x * 2f).sumAsDouble(a), 1e-6);
+  }
+  @Test
+  public void floatPipelineIntoChannel() throws IOException {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    var input = ByteBuffer.allocate(a.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    input.asFloatBuffer().put(a);
+    var output = new ByteArrayOutputStream();
+    vh.floatPipeline()
+        .map(x -> x * 2f)
+        .into(Channels.newChannel(output), Channels.newChannel(trickle(input.array())));
+    var result = new float[10_003];
+    ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(result);
+    var expected = new float[10_003];
+    for(var i = 0; i < expected.length; i++) {
+      expected[i] = i * 2f;
+    }
+    assertArrayEquals(expected, result);
+  }
+  @Test
+  public void intPipelineSumChannel() throws IOException {
+    var vh = VectorHandle.of(lookup());
+
+    var input = ByteBuffer.allocate(10_003 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    for(var i = 0; i < 10_003; i++) {
+      input.putInt(i);
+    }
+    var pipeline = vh.intPipeline().map(x -> x + 1);
+    assertAll(
+        () -> assertEquals(10_003 * 10_004 / 2, pipeline.sum(Channels.newChannel(trickle(input.array())))),
+        () -> assertEquals(1, pipeline.min(Channels.newChannel(new ByteArrayInputStream(input.array())))),
+        () -> assertEquals(10_003, pipeline.max(Channels.newChannel(new ByteArrayInputStream(input.array())))),
+        () -> assertEquals(0, pipeline.sum(Channels.newChannel(new ByteArrayInputStream(new byte[0])))),
+        () -> assertThrows(EOFException.class, () -> pipeline.sum(Channels.newChannel(new ByteArrayInputStream(new byte[7]))))
+    );
+  }
+  @Test
+  public void intPipelineChannelReuseBuffer() throws IOException {
+    var vh = VectorHandle.of(lookup());
+
+    var input = ByteBuffer.allocate(10_003 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    for(var i = 0; i < 10_003; i++) {
+      input.putInt(i);
+    }
+    var pipeline = vh.intPipeline().map(x -> x + 1);
+    // the buffer of a call that fails is reused by the next call
+    assertThrows(EOFException.class, () -> pipeline.sum(Channels.newChannel(new ByteArrayInputStream(new byte[7]))));
+    assertEquals(10_003 * 10_004 / 2, pipeline.sum(Channels.newChannel(trickle(input.array()))));
+
+    // a channel that uses the pipeline when it is read
+    var nested = new int[1];
+    var outer = new ByteArrayInputStream(input.array()) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        try {
+          nested[0] = pipeline.sum(Channels.newChannel(new ByteArrayInputStream(input.array())));
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+        return super.read(b, off, len);
+      }
+    };
+    assertEquals(10_003 * 10_004 / 2, pipeline.sum(Channels.newChannel(outer)));
+    assertEquals(10_003 * 10_004 / 2, nested[0]);
+  }
+
+  // an input stream that returns the bytes by small pieces, so the values are split between two reads
+  private static InputStream trickle(byte[] bytes) {
+    return new ByteArrayInputStream(bytes) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 1_001));
+      }
+
+      @Override
+      public synchronized int available() {
+        return 0;
+      }
+    };
+  }
+}
@@ -0,0 +1,168 @@
+package com.github.forax.vectorhandle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TableTest {
+  private static int[] quantities(int length) {
+    return IntStream.range(0, length).map(i -> i % 20).toArray();
+  }
+
+  private static float[] prices(int length) {
+    var prices = new float[length];
+    for(var i = 0; i < length; i++) {
+      prices[i] = i % 7 + .5f;
+    }
+    return prices;
+  }
+
+  @Test
+  public void tableFilterProjectSum() {
+    var vh = VectorHandle.of(lookup());
+
+    var qty = quantities(10_003);
+    var price = prices(10_003);
+    var table = vh.table(10_003)
+        .with("qty", qty)
+        .with("price", price)
+        .filterInt("qty", x -> x >= 10)
+        .projectFloat("discount", "price", x -> x * 0.5f);
+    var expected = 0.0;
+    for(var i = 0; i < qty.length; i++) {
+      if (qty[i] >= 10) {
+        expected += price[i] * 0.5f;
+      }
+    }
+    assertEquals(expected, table.sumAsDouble("discount"), 1e-6);
+  }
+  @Test
+  public void tableCount() {
+    var vh = VectorHandle.of(lookup());
+
+    var qty = quantities(10_003);
+    var table = vh.table(10_003)
+        .with("qty", qty)
+        .projectInt("twice", "qty", x -> x * 2)
+        .filterInt("qty", x -> x >= 5)
+        .filterInt("twice", x -> x < 30);
+    assertAll(
+        () -> assertEquals(10_003, table.rowCount()),
+        () -> assertEquals((int) IntStream.of(qty).filter(x -> x >= 5 && x < 15).count(), table.count()),
+        () -> assertEquals(10_003, vh.table(10_003).with("qty", qty).count()),
+        () -> assertEquals(0, vh.table(0).with("qty", new int[0]).filterInt("qty", x -> x > 0).count())
+    );
+  }
+  @Test
+  public void tableColumn() {
+    var vh = VectorHandle.of(lookup());
+
+    var qty = quantities(10_003);
+    var table = vh.table(10_003)
+        .with("qty", qty)
+        .projectInt("sum", "qty", "qty", (x, y) -> x + y)
+        .filterInt("qty", x -> x % 3 == 0);
+    assertAll(
+        () -> assertArrayEquals(IntStream.of(qty).filter(x -> x % 3 == 0).map(x -> 2 * x).toArray(), table.intColumn("sum")),
+        () -> assertArrayEquals(qty, vh.table(10_003).with("qty", qty).intColumn("qty"))
+    );
+  }
+  @Test
+  public void tableSumAsLong() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[10_003];
+    Arrays.fill(a, Integer.MAX_VALUE);
+    var b = new long[10_003];
+    Arrays.fill(b, 3L);
+    var table = vh.table(10_003)
+        .with("a", a)
+        .with("b", b)
+        .filterLong("b", x -> x == 3L);
+    assertAll(
+        () -> assertEquals(10_003L * Integer.MAX_VALUE, table.sumAsLong("a")),
+        () -> assertEquals(3 * 10_003L, table.sumAsLong("b"))
+    );
+  }
+  @Test
+  public void tableMinMax() {
+    var vh = VectorHandle.of(lookup());
+
+    var qty = quantities(10_003);
+    var ts = new long[10_003];
+    var weight = new double[10_003];
+    for(var i = 0; i < ts.length; i++) {
+      ts[i] = 1_000_000L * i;
+      weight[i] = i / 4.0;
+    }
+    var table = vh.table(10_003)
+        .with("qty", qty)
+        .with("ts", ts)
+        .with("weight", weight)
+        .filterLong("ts", x -> x >= 1_000_000_000L)
+        .filterDouble("weight", x -> x < 2_000.0);
+    assertAll(
+        () -> assertEquals(1_000_000_000L, table.minAsLong("ts")),
+        () -> assertEquals(7_999_000_000L, table.maxAsLong("ts")),
+        () -> assertEquals(0L, table.minAsLong("qty")),
+        () -> assertEquals(19L, table.maxAsLong("qty")),
+        () -> assertEquals(250.0, table.minAsDouble("weight")),
+        () -> assertEquals(1_999.75, table.maxAsDouble("weight")),
+        () -> assertEquals(Double.POSITIVE_INFINITY, table.filterDouble("weight", x -> x < 0.0).minAsDouble("weight"))
+    );
+  }
+  private static Table manySteps(VectorHandle vh, int[] qty) {
+    return vh.table(qty.length)
+        .with("qty", qty)
+        .projectInt("a", "qty", x -> x + 1)
+        .projectInt("b", "a", x -> x * 2)
+        .projectInt("c", "b", x -> x - 3)
+        .projectInt("d", "c", x -> x * x)
+        .projectInt("e", "qty", "d", (x, y) -> x + y)
+        .filterInt("a", x -> x > 2)
+        .filterInt("b", x -> x < 36)
+        .filterInt("c", x -> x != 7)
+        .filterInt("e", x -> x % 2 == 0);
+  }
+  @Test
+  public void tableManySteps() {
+    var vh = VectorHandle.of(lookup());
+
+    var qty = quantities(10_003);
+    var expected = 0L;
+    for(var x: qty) {
+      var a = x + 1;
+      var b = a * 2;
+      var c = b - 3;
+      var e = x + c * c;
+      if (a > 2 && b < 36 && c != 7 && e % 2 == 0) {
+        expected += e;
+      }
+    }
+    // more lambdas than the cache of the vector handle, the table is created twice
+    for(var i = 0; i < 2; i++) {
+      assertEquals(expected, manySteps(vh, qty).sumAsLong("e"));
+    }
+  }
+  @Test
+  public void tableErrors() {
+    var vh = VectorHandle.of(lookup());
+
+    var table = vh.table(16).with("qty", new int[16]);
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.table(-1)),
+        () -> assertThrows(IllegalArgumentException.class, () -> table.with("price", new float[15])),
+        () -> assertThrows(IllegalArgumentException.class, () -> table.with("qty", new int[16])),
+        () -> assertThrows(IllegalArgumentException.class, () -> table.filterFloat("price", x -> x > 0)),
+        () -> assertThrows(IllegalArgumentException.class, () -> table.projectFloat("twice", "qty", x -> x * 2f)),
+        () -> assertThrows(IllegalArgumentException.class, () -> table.sumAsDouble("qty"))
+    );
+  }
+}
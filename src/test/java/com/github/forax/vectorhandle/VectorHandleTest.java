@@ -1,11 +1,31 @@
 package com.github.forax.vectorhandle;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import static java.lang.invoke.MethodHandles.lookup;
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class VectorHandleTest {
   @Test
@@ -189,4 +209,1617 @@ public class VectorHandleTest {
     Arrays.fill(expected, 2);
     assertArrayEquals(expected, dest);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void applyBB() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[3];
+    var a = new byte[] { 1, 2, 3 };
+    vh.apply(dest, a, x -> (byte) - x);
+    assertArrayEquals(new byte[] { -1, -2, -3 }, dest);
+  }
+  @Test
+  public void applySS() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[3];
+    var a = new short[] { 1, 2, 3 };
+    vh.apply(dest, a, x -> (short) - x);
+    assertArrayEquals(new short[] { -1, -2, -3 }, dest);
+  }
+  @Test
+  public void applyBBHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_000];
+    var a = new byte[10_000];
+    Arrays.fill(a, (byte) 100);
+    vh.apply(dest, a, x -> (byte) (x * 3 + 10));
+    var expected = new byte[10_000];
+    Arrays.fill(expected, (byte) (100 * 3 + 10));
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applySSHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[10_000];
+    var a = new short[10_000];
+    Arrays.fill(a, (short) 30_000);
+    vh.apply(dest, a, x -> (short) (x * 3 + 1_000));
+    var expected = new short[10_000];
+    Arrays.fill(expected, (short) (30_000 * 3 + 1_000));
+    assertArrayEquals(expected, dest);
+  }
+
+  @Test
+  public void applyBBB() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[4];
+    var a = new byte[] { 1, 2, 3, 4 };
+    var b = new byte[] { 4, 4, 4, 4 };
+    vh.apply(dest, a, b, (x, y) -> (byte) (x + y * 2));
+    assertArrayEquals(new byte[] { 9, 10, 11, 12 }, dest);
+  }
+  @Test
+  public void applySSS() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[4];
+    var a = new short[] { 1, 2, 3, 4 };
+    var b = new short[] { 4, 4, 4, 4 };
+    vh.apply(dest, a, b, (x, y) -> (short) (x + y * 2));
+    assertArrayEquals(new short[] { 9, 10, 11, 12 }, dest);
+  }
+  @Test
+  public void applyBBBHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_000];
+    var a = new byte[10_000];
+    Arrays.fill(a, (byte) 2);
+    var b = new byte[10_000];
+    Arrays.fill(b, (byte) -3);
+    vh.apply(dest, a, b, (x, y) -> (byte) Math.min(x, y));
+    var expected = new byte[10_000];
+    Arrays.fill(expected, (byte) -3);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applySSSHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[10_000];
+    var a = new short[10_000];
+    Arrays.fill(a, (short) 2);
+    var b = new short[10_000];
+    Arrays.fill(b, (short) -3);
+    vh.apply(dest, a, b, (x, y) -> (short) Math.max(x, y));
+    var expected = new short[10_000];
+    Arrays.fill(expected, (short) 2);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyBBBSaturated() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_000];
+    var a = new byte[10_000];
+    var b = new byte[10_000];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+      b[i] = (byte) (i * 7);
+    }
+    vh.apply(dest, a, b, (x, y) -> VectorHandle.saturatedSub(VectorHandle.saturatedAdd(x, y), (byte) 3));
+    var expected = new byte[10_000];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = (byte) Math.max(-128, Math.min(127, Math.max(-128, Math.min(127, a[i] + b[i])) - 3));
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyBBBUnsignedSaturated() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_000];
+    var a = new byte[10_000];
+    var b = new byte[10_000];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+      b[i] = (byte) (i * 7);
+    }
+    vh.apply(dest, a, b, (x, y) -> VectorHandle.unsignedSaturatedSub(VectorHandle.unsignedSaturatedAdd(x, y), (byte) 30));
+    var expected = new byte[10_000];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = (byte) Math.max(0, Math.min(255, (a[i] & 0xFF) + (b[i] & 0xFF)) - 30);
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applySSSSaturated() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[10_000];
+    var a = new short[10_000];
+    var b = new short[10_000];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (short) (i * 1_000);
+      b[i] = (short) (i * 7_000);
+    }
+    vh.apply(dest, a, b, (x, y) -> VectorHandle.unsignedSaturatedAdd(VectorHandle.saturatedAdd(x, y), (short) 1));
+    var expected = new short[10_000];
+    for(var i = 0; i < a.length; i++) {
+      var sum = Math.max(-32_768, Math.min(32_767, a[i] + b[i]));
+      expected[i] = (short) Math.min(0xFFFF, (sum & 0xFFFF) + 1);
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyBBBOverflowWithoutCast() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_000];
+    var a = new byte[10_000];
+    var b = new byte[10_000];
+    assertThrows(IllegalStateException.class, () -> vh.apply(dest, a, b, (x, y) -> (byte) ((x + y) / 2)));
+  }
+
+  @Test
+  public void applySeveralLambdas() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_000];
+    var a = new int[10_000];
+    Arrays.fill(a, 3);
+    vh.apply(dest, a, x -> x + 1);
+    var expected = new int[10_000];
+    Arrays.fill(expected, 4);
+    assertArrayEquals(expected, dest);
+    vh.apply(dest, a, x -> x * 2);
+    Arrays.fill(expected, 6);
+    assertArrayEquals(expected, dest);
+  }
+
+  @Test
+  public void applyMultiII() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new int[2][10_000];
+    var a = new int[10_000];
+    Arrays.fill(a, 3);
+    vh.apply(dests, a, x -> - x, x -> x * 2);
+    var expected1 = new int[10_000];
+    Arrays.fill(expected1, -3);
+    var expected2 = new int[10_000];
+    Arrays.fill(expected2, 6);
+    assertArrayEquals(expected1, dests[0]);
+    assertArrayEquals(expected2, dests[1]);
+  }
+  @Test
+  public void applyMultiIII() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new int[3][10_003];
+    var a = new int[10_003];
+    Arrays.fill(a, 7);
+    var b = new int[10_003];
+    Arrays.fill(b, 2);
+    vh.apply(dests, a, b, (x, y) -> x + y, (x, y) -> x - y, (x, y) -> x * y);
+    var expected1 = new int[10_003];
+    Arrays.fill(expected1, 9);
+    var expected2 = new int[10_003];
+    Arrays.fill(expected2, 5);
+    var expected3 = new int[10_003];
+    Arrays.fill(expected3, 14);
+    assertArrayEquals(expected1, dests[0]);
+    assertArrayEquals(expected2, dests[1]);
+    assertArrayEquals(expected3, dests[2]);
+  }
+  @Test
+  public void applyMultiDDD() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new double[2][10_003];
+    var a = new double[10_003];
+    Arrays.fill(a, 7);
+    var b = new double[10_003];
+    Arrays.fill(b, 2);
+    vh.apply(dests, a, b, (x, y) -> Math.min(x, y), (x, y) -> x / y);
+    var expected1 = new double[10_003];
+    Arrays.fill(expected1, 2);
+    var expected2 = new double[10_003];
+    Arrays.fill(expected2, 3.5);
+    assertArrayEquals(expected1, dests[0]);
+    assertArrayEquals(expected2, dests[1]);
+  }
+  @Test
+  public void applyMultiOneKernel() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new int[9][1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    for(var k = 0; k < 20; k++) {  // more than the number of lambdas cached
+      var scale = k;
+      vh.apply(dests, a, x -> x + 1, x -> x + 2, x -> x + 3, x -> x + 4, x -> x + 5,
+          x -> x + 6, x -> x + 7, x -> x + 8, x -> x * scale);
+      for(var i = 0; i < a.length; i++) {
+        for(var j = 0; j < 8; j++) {
+          assertEquals(a[i] + j + 1, dests[j][i]);
+        }
+        assertEquals(a[i] * scale, dests[8][i]);
+      }
+    }
+  }
+  @Test
+  public void applyMultiBB() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new byte[2][1_003];
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    vh.apply(dests, a, x -> (byte) (x + 1), x -> (byte) (x ^ 0x0F));
+    for(var i = 0; i < a.length; i++) {
+      assertEquals((byte) (a[i] + 1), dests[0][i]);
+      assertEquals((byte) (a[i] ^ 0x0F), dests[1][i]);
+    }
+  }
+  @Test
+  public void applyMultiWrongNumberOfDestinations() {
+    var vh = VectorHandle.of(lookup());
+
+    var dests = new float[1][4];
+    var a = new float[4];
+    var b = new float[4];
+    assertThrows(IllegalArgumentException.class, () -> vh.apply(dests, a, b, (x, y) -> x + y, (x, y) -> x - y));
+  }
+
+  @Test
+  public void stencilIIII() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[4];
+    var a = new int[] { 1, 2, 3, 4 };
+    vh.stencil(dest, a, VectorHandle.Padding.ZERO, (x, y, z) -> x + 2 * y + z);
+    assertArrayEquals(new int[] { 4, 8, 12, 11 }, dest);
+  }
+  @Test
+  public void stencilIIIIHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    for(var padding: VectorHandle.Padding.values()) {
+      var dest = new int[10_003];
+      var a = new int[10_003];
+      for(var i = 0; i < a.length; i++) {
+        a[i] = i * i;
+      }
+      vh.stencil(dest, a, padding, (x, y, z) -> x + 2 * y + z);
+      var expected = new int[10_003];
+      for(var i = 0; i < a.length; i++) {
+        var left = i != 0? a[i - 1]: switch (padding) { case ZERO -> 0; case REPLICATE -> a[0]; case WRAP -> a[a.length - 1]; };
+        var right = i != a.length - 1? a[i + 1]: switch (padding) { case ZERO -> 0; case REPLICATE -> a[a.length - 1]; case WRAP -> a[0]; };
+        expected[i] = left + 2 * a[i] + right;
+      }
+      assertArrayEquals(expected, dest);
+    }
+  }
+  @Test
+  public void stencilFFFFHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[10_003];
+    var a = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    vh.stencil(dest, a, VectorHandle.Padding.REPLICATE, (x, y, z) -> (z - x) / 2);
+    var expected = new float[10_003];
+    Arrays.fill(expected, 1);
+    expected[0] = 0.5f;
+    expected[a.length - 1] = 0.5f;
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void stencilDDDDHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new double[10_003];
+    var a = new double[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    vh.stencil(dest, a, VectorHandle.Padding.WRAP, (x, y, z) -> Math.max(x, z));
+    var expected = new double[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = i + 1;
+    }
+    expected[0] = a.length - 1;
+    expected[a.length - 1] = a.length - 2;
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void stencilBBBBHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[10_003];
+    var a = new byte[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    vh.stencil(dest, a, VectorHandle.Padding.ZERO, (x, y, z) -> (byte) (x - z));
+    var expected = new byte[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = (byte) ((i == 0? 0: a[i - 1]) - (i == a.length - 1? 0: a[i + 1]));
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void stencilSameArray() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new long[16];
+    assertThrows(IllegalArgumentException.class, () -> vh.stencil(a, a, VectorHandle.Padding.ZERO, (x, y, z) -> x + z));
+  }
+
+  @Test
+  public void scanIII() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[4];
+    var a = new int[] { 1, 2, 3, 4 };
+    vh.scan(dest, a, (x, y) -> x + y);
+    assertArrayEquals(new int[] { 1, 3, 6, 10 }, dest);
+  }
+  @Test
+  public void scanIIIHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_003];
+    var a = new int[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i % 17;
+    }
+    vh.scan(dest, a, (x, y) -> x + y);
+    var expected = new int[10_003];
+    expected[0] = a[0];
+    for(var i = 1; i < a.length; i++) {
+      expected[i] = expected[i - 1] + a[i];
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void scanLLLHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[10_003];
+    var a = new long[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (i * 31) % 1_001;
+    }
+    vh.scan(dest, a, (x, y) -> Math.max(x, y));
+    var expected = a.clone();
+    Arrays.parallelPrefix(expected, Math::max);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void scanFFFHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[10_003];
+    var a = new float[10_003];
+    Arrays.fill(a, 1);
+    vh.scan(dest, a, (x, y) -> x + y);
+    var expected = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = i + 1;
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void scanDDDHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new double[10_003];
+    var a = new double[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = a.length - i;
+    }
+    vh.scan(dest, a, (x, y) -> Math.min(x, y));
+    assertArrayEquals(a, dest);
+  }
+  @Test
+  public void parallelScanIIIHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_000_003];
+    var a = new int[1_000_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i % 7;
+    }
+    vh.parallelScan(dest, a, (x, y) -> x + y);
+    var expected = a.clone();
+    Arrays.parallelPrefix(expected, Integer::sum);
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void parallelScanLLLHuge() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[1_000_003];
+    var a = new long[1_000_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (i * 31L) % 1_000_001;
+    }
+    vh.parallelScan(dest, a, (x, y) -> Math.max(x, y));
+    var expected = a.clone();
+    Arrays.parallelPrefix(expected, Math::max);
+    assertArrayEquals(expected, dest);
+  }
+
+  @Test
+  public void applyWithIndexIII() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[10_003];
+    var a = new int[10_003];
+    Arrays.fill(a, 3);
+    vh.applyWithIndex(dest, a, (x, i) -> x * i + 1);
+    var expected = new int[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = 3 * i + 1;
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyWithIndexLLL() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[10_003];
+    var a = new long[10_003];
+    Arrays.fill(a, 3);
+    vh.applyWithIndex(dest, a, (x, i) -> x - i);
+    var expected = new long[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = 3 - i;
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyWithIndexFIF() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[10_003];
+    var a = new float[10_003];
+    Arrays.fill(a, 0.5f);
+    vh.applyWithIndex(dest, a, (x, i) -> x * i);
+    var expected = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = 0.5f * i;
+    }
+    assertArrayEquals(expected, dest);
+  }
+  @Test
+  public void applyWithIndexDLD() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new double[10_003];
+    var a = new double[10_003];
+    Arrays.fill(a, 2);
+    vh.applyWithIndex(dest, a, (x, i) -> x + i * 2);
+    var expected = new double[10_003];
+    for(var i = 0; i < a.length; i++) {
+      expected[i] = 2 + i * 2;
+    }
+    assertArrayEquals(expected, dest);
+  }
+
+  @Test
+  public void argMinArgMaxInt() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (i * 7_919) % 10_007;
+    }
+    a[5_000] = -1;
+    a[6_000] = -1;
+    a[7_000] = 20_000;
+    assertEquals(5_000, vh.argMin(a));
+    assertEquals(7_000, vh.argMax(a));
+  }
+  @Test
+  public void argMinArgMaxLong() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new long[10_003];
+    a[10_002] = -1;
+    a[3] = 1;
+    assertEquals(10_002, vh.argMin(a));
+    assertEquals(3, vh.argMax(a));
+  }
+  @Test
+  public void argMinArgMaxFloat() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[10_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (float) Math.sin(i);
+    }
+    a[17] = Float.NaN;
+    var min = 0;
+    var max = 0;
+    for(var i = 0; i < a.length; i++) {
+      if (a[i] < a[min]) {
+        min = i;
+      }
+      if (a[i] > a[max]) {
+        max = i;
+      }
+    }
+    assertEquals(min, vh.argMin(a));
+    assertEquals(max, vh.argMax(a));
+  }
+  @Test
+  public void argMinArgMaxDouble() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[10_003];
+    Arrays.fill(a, Double.NEGATIVE_INFINITY);
+    a[42] = Double.NaN;
+    assertEquals(0, vh.argMin(a));
+    assertEquals(0, vh.argMax(a));
+    Arrays.fill(a, Double.NaN);
+    assertEquals(-1, vh.argMin(a));
+    assertEquals(-1, vh.argMax(a));
+  }
+  @Test
+  public void argMinArgMaxEmpty() {
+    var vh = VectorHandle.of(lookup());
+
+    assertEquals(-1, vh.argMin(new int[0]));
+    assertEquals(-1, vh.argMax(new double[0]));
+  }
+  @Test
+  public void argMaxAllMinValue() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[10_003];
+    Arrays.fill(a, Integer.MIN_VALUE);
+    assertEquals(0, vh.argMax(a));
+    a[9_000] = Integer.MAX_VALUE;
+    assertEquals(0, vh.argMin(a));
+    assertEquals(9_000, vh.argMax(a));
+  }
+  @Test
+  public void countInt() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    assertEquals(500, vh.count(a, x -> x > 502));
+    assertEquals(1_003, vh.count(a, x -> x >= 0));
+    assertEquals(0, vh.count(a, x -> x < 0));
+    assertEquals(3, vh.count(a, x -> x == 10 || x == 20 || x == 1_002));
+  }
+  @Test
+  public void countLongAndShort() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new long[1_003];
+    Arrays.setAll(a, i -> i);
+    assertEquals(100, vh.count(a, x -> x >= 100 && x < 200));
+    var b = new short[1_003];
+    for(var i = 0; i < b.length; i++) {
+      b[i] = (short) (i - 500);
+    }
+    assertEquals(500, vh.count(b, x -> x < 0));
+  }
+  @Test
+  public void countFloatNaN() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    a[0] = Float.NaN;
+    a[1_002] = Float.NaN;
+    assertEquals(500, vh.count(a, x -> x > 501f));
+    assertEquals(501, vh.count(a, x -> x <= 501f));
+    assertEquals(503, vh.count(a, x -> !(x > 501f)));
+    assertEquals(2, vh.count(a, x -> x != x));
+  }
+  @Test
+  public void indexOf() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[1_003];
+    Arrays.setAll(a, i -> i);
+    assertEquals(42, vh.indexOf(a, x -> x >= 42.0));
+    assertEquals(1_001, vh.indexOf(a, x -> x > 1_000.5));
+    assertEquals(-1, vh.indexOf(a, x -> x < 0.0));
+    var b = new byte[1_003];
+    b[777] = 3;
+    assertEquals(777, vh.indexOf(b, x -> x == 3));
+    assertEquals(-1, vh.indexOf(new int[0], x -> true));
+  }
+  @Test
+  public void anyMatchAllMatch() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    assertTrue(vh.anyMatch(a, x -> x == 1_002));
+    assertFalse(vh.anyMatch(a, x -> x > 1_002));
+    assertTrue(vh.allMatch(a, x -> x < 1_003));
+    assertFalse(vh.allMatch(a, x -> x != 500));
+    assertTrue(vh.allMatch(new float[0], x -> false));
+  }
+  @Test
+  public void conditional() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i - 500);
+    vh.apply(dest, a, x -> x < 0? -x: x * 2);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] < 0? -a[i]: a[i] * 2, dest[i]);
+    }
+  }
+  @Test
+  public void conditionalFloat() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[1_003];
+    var a = new float[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i - 500;
+    }
+    a[3] = Float.NaN;
+    vh.apply(dest, a, x -> x >= 0f? x: 0f);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] >= 0f? a[i]: 0f, dest[i]);
+    }
+  }
+  @Test
+  public void conditionalGuardedDivision() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    var b = new int[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i * 7;
+      b[i] = i % 5;
+    }
+    vh.apply(dest, a, b, (x, y) -> y != 0? x / y: 0);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(b[i] != 0? a[i] / b[i]: 0, dest[i]);
+    }
+    vh.apply(dest, a, b, (x, y) -> y == 0? -1: x % y);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(b[i] == 0? -1: a[i] % b[i], dest[i]);
+    }
+  }
+  @Test
+  public void conditionalGuardedDivisionLong() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[1_003];
+    var a = new long[1_003];
+    var b = new long[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i * 7L;
+      b[i] = i % 3;
+    }
+    vh.apply(dest, a, b, (x, y) -> y > 0? x / y: x);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(b[i] > 0? a[i] / b[i]: a[i], dest[i]);
+    }
+  }
+  private static boolean ratioAbove(int x, int y) {
+    return y != 0 && x / y > 2;
+  }
+  @Test
+  public void predicateGuardedDivision() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i % 4 == 0? 0: i);
+    assertEquals((int) IntStream.of(a).filter(x -> x != 0 && 1_000 / x > 2).count(), vh.count(a, x -> x != 0 && 1_000 / x > 2));
+    assertEquals((int) IntStream.of(a).filter(x -> ratioAbove(1_000, x)).count(), vh.count(a, x -> ratioAbove(1_000, x)));
+  }
+  @Test
+  public void selectInt() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i % 7);
+    var bitmap = new long[(a.length + 63) / 64];
+    vh.select(bitmap, a, VectorHandle.Selection.SET, x -> x == 3);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] == 3, (bitmap[i / 64] & (1L << i)) != 0);
+    }
+    vh.select(bitmap, a, VectorHandle.Selection.OR, x -> x == 5);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] == 3 || a[i] == 5, (bitmap[i / 64] & (1L << i)) != 0);
+    }
+    vh.select(bitmap, a, VectorHandle.Selection.AND, x -> x > 4);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] == 5, (bitmap[i / 64] & (1L << i)) != 0);
+    }
+  }
+  @Test
+  public void selectByte() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    var bitmap = new long[(a.length + 63) / 64];
+    vh.select(bitmap, a, VectorHandle.Selection.SET, x -> x < 0);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] < 0, (bitmap[i / 64] & (1L << i)) != 0);
+    }
+  }
+  @Test
+  public void selectTwoInputs() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[1_003];
+    var b = new double[1_003];
+    Arrays.setAll(a, i -> i);
+    Arrays.setAll(b, i -> 1_003 - i);
+    var bitmap = new long[(a.length + 63) / 64];
+    Arrays.fill(bitmap, -1L);
+    vh.select(bitmap, a, b, VectorHandle.Selection.AND, (x, y) -> x < y);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] < b[i], (bitmap[i / 64] & (1L << i)) != 0);
+    }
+  }
+  @Test
+  public void selectWrongLength() {
+    var vh = VectorHandle.of(lookup());
+
+    assertThrows(IllegalArgumentException.class, () -> vh.select(new long[1], new int[65], VectorHandle.Selection.SET, x -> true));
+    assertThrows(IllegalArgumentException.class, () -> vh.select(new long[1], new long[3], new long[4], VectorHandle.Selection.SET, (x, y) -> true));
+  }
+  private static final long LONG_CONSTANT = 1L << 40;
+  private static final int[] SQUARES = IntStream.range(0, 256).map(x -> x * x).toArray();
+  private static final float[] HALVES = { 0f, .5f, 1f, 1.5f };
+  private static final byte[] NIBBLES = { 0, 1, 1, 2, 1, 2, 2, 3, 1, 2, 2, 3, 2, 3, 3, 4 };
+  private static final long[] LONG_SQUARES = LongStream.range(0, 256).map(x -> x * x).toArray();
+  private static final double[] DOUBLE_HALVES = { 0.0, .5, 1.0, 1.5 };
+  private static final byte[] BYTE_DECODER = new byte[256];
+  private static final short[] SHORT_DECODER = new short[256];
+  static {
+    for(var i = 0; i < 256; i++) {
+      BYTE_DECODER[i] = (byte) (i ^ 0x5A);
+      SHORT_DECODER[i] = (short) (i * 100);
+    }
+  }
+
+  @Test
+  public void longConstant() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[3];
+    var a = new long[] { 1, 2, 3 };
+    vh.apply(dest, a, x -> x + LONG_CONSTANT);
+    assertArrayEquals(new long[] { LONG_CONSTANT + 1, LONG_CONSTANT + 2, LONG_CONSTANT + 3 }, dest);
+  }
+  @Test
+  public void bitwise() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i * 31);
+    vh.apply(dest, a, x -> (x & 0xF0) | 1 ^ x);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals((a[i] & 0xF0) | 1 ^ a[i], dest[i]);
+    }
+  }
+  @Test
+  public void gatherInt() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i * 7);
+    vh.apply(dest, a, x -> SQUARES[x & 0xFF] + 1);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(SQUARES[a[i] & 0xFF] + 1, dest[i]);
+    }
+  }
+  @Test
+  public void gatherFloat() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[1_003];
+    var a = new float[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    vh.apply(dest, a, x -> x * HALVES[Math.min((int) x, 3)]);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] * HALVES[Math.min((int) a[i], 3)], dest[i]);
+    }
+  }
+  @Test
+  public void gatherByte() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    vh.apply(dest, a, x -> NIBBLES[x & 0xF] + NIBBLES[(x / 16) & 0xF]);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(NIBBLES[a[i] & 0xF] + NIBBLES[(a[i] / 16) & 0xF], dest[i]);
+    }
+  }
+  @Test
+  public void gatherOutOfBounds() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    assertThrows(IndexOutOfBoundsException.class, () -> vh.apply(dest, a, x -> SQUARES[x]));
+  }
+  @Test
+  public void gatherLongDoubleNotSupported() {
+    var vh = VectorHandle.of(lookup());
+
+    var index = 3;
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> vh.apply(new int[16], new int[16], x -> (int) LONG_SQUARES[x & 0xFF])),
+        () -> assertThrows(IllegalStateException.class, () -> vh.apply(new long[16], new long[16], x -> x + LONG_SQUARES[index])),
+        () -> assertThrows(IllegalStateException.class, () -> vh.apply(new double[16], new double[16], x -> x * DOUBLE_HALVES[index]))
+    );
+  }
+  @Test
+  public void conditionalGuardedGather() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i - 500);
+    vh.apply(dest, a, x -> x >= 0 && x < 256? SQUARES[x]: -1);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] >= 0 && a[i] < 256? SQUARES[a[i]]: -1, dest[i]);
+    }
+  }
+  @Test
+  public void conditionalGuardedGatherByte() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    vh.apply(dest, a, x -> x < 16? NIBBLES[x]: 0);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] < 16? NIBBLES[a[i]]: 0, dest[i]);
+    }
+  }
+  @Test
+  public void gatherByteLanes() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[1_003];
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) (i * 7);
+    }
+    vh.apply(dest, a, x -> BYTE_DECODER[x & 0xFF]);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(BYTE_DECODER[a[i] & 0xFF], dest[i]);
+    }
+  }
+  @Test
+  public void gatherShortLanes() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[1_003];
+    var a = new short[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (short) (i * 301);
+    }
+    vh.apply(dest, a, x -> (short) (SHORT_DECODER[x & 0xFF] + 1));
+    for(var i = 0; i < a.length; i++) {
+      assertEquals((short) (SHORT_DECODER[a[i] & 0xFF] + 1), dest[i]);
+    }
+  }
+  @Test
+  public void conditionalGuardedGatherByteLanes() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[1_003];
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    vh.apply(dest, a, x -> x >= 0? BYTE_DECODER[x]: 0);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] >= 0? BYTE_DECODER[a[i]]: 0, dest[i]);
+    }
+  }
+  @Test
+  public void gatherLanesTableMismatch() {
+    var vh = VectorHandle.of(lookup());
+
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> vh.apply(new byte[1_003], new byte[1_003], x -> (byte) SQUARES[x & 0xFF])),
+        () -> assertThrows(IllegalStateException.class, () -> vh.apply(new short[1_003], new short[1_003], x -> BYTE_DECODER[x & 0xFF]))
+    );
+  }
+  @Test
+  public void predicateGuardedGather() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    assertEquals(16, vh.count(a, x -> x < 256 && SQUARES[x] < 256));
+  }
+  @Test
+  public void capturedValue() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[1_003];
+    var a = new float[1_003];
+    Arrays.fill(a, 2f);
+    for(var i = 0; i < 20; i++) {  // more than the number of lambdas cached
+      var scale = (float) i;
+      var bias = i * 10.0f;
+      vh.apply(dest, a, x -> x * scale + bias);
+      for(var value: dest) {
+        assertEquals(2f * scale + bias, value);
+      }
+    }
+  }
+  @Test
+  public void capturedValuePredicate() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new long[1_003];
+    Arrays.setAll(a, i -> i);
+    for(var threshold = 0L; threshold < 1_000L; threshold += 100) {
+      var t = threshold;
+      assertEquals(1_003 - threshold - 1, vh.count(a, x -> x > t));
+    }
+  }
+  @Test
+  public void capturedIntInByteLambda() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new byte[1_003];
+    var a = new byte[1_003];
+    Arrays.fill(a, (byte) 10);
+    for(var offset: new int[] { 1, 300 }) {
+      vh.apply(dest, a, x -> (byte) (x + offset));
+      for(var value: dest) {
+        assertEquals((byte) (10 + offset), value);
+      }
+    }
+  }
+  @Test
+  public void capturedIntComparedInByteLambda() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    for(var threshold = -100; threshold < 128; threshold += 50) {
+      var t = threshold;
+      var expected = IntStream.range(0, a.length).filter(i -> a[i] > t).count();
+      assertEquals(expected, vh.count(a, x -> x > t));
+    }
+    assertThrows(IllegalStateException.class, () -> vh.count(a, x -> x > 300));
+  }
+  @Test
+  public void capturedIntComparedInShortLambda() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new short[1_003];
+    var a = new short[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (short) (i * 100);
+    }
+    for(var limit: new int[] { -20_000, 0, 20_000 }) {
+      vh.apply(dest, a, x -> x < limit? (short) 1: 0);
+      for(var i = 0; i < a.length; i++) {
+        assertEquals(a[i] < limit? 1: 0, dest[i]);
+      }
+    }
+    var overflow = 40_000;
+    assertThrows(IllegalStateException.class, () -> vh.apply(dest, a, x -> x < overflow? (short) 1: 0));
+  }
+  static boolean isSmall(int value) {
+    return value < 10;
+  }
+  @Test
+  public void inlineIntComparisonInByteLambda() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new byte[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (byte) i;
+    }
+    var expected = IntStream.range(0, a.length).filter(i -> isSmall(a[i])).count();
+    assertEquals(expected, vh.count(a, x -> isSmall(x)));
+  }
+  @Test
+  public void capturedObject() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    var text = "hello";
+    assertThrows(IllegalStateException.class, () -> vh.apply(dest, a, x -> x + text.length()));
+  }
+  static float sigmoidApprox(float x) {
+    return 0.5f + x / (4f + 2f * abs(x));
+  }
+  static float abs(float x) {
+    return x < 0f? -x: x;
+  }
+  static int clamp(int x, int min, int max) {
+    return Math.max(min, Math.min(max, x));
+  }
+  static boolean inRange(int x) {
+    return x >= 10 && x < 20;
+  }
+  static int factorial(int n) {
+    return n <= 1? 1: n * factorial(n - 1);
+  }
+  static int twice(int x) {
+    return x + x;
+  }
+
+  @Test
+  public void inlineStaticMethod() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new float[1_003];
+    var a = new float[1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = (i - 500) / 100f;
+    }
+    vh.apply(dest, a, x -> sigmoidApprox(x) * 2f);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(sigmoidApprox(a[i]) * 2f, dest[i]);
+    }
+  }
+  @Test
+  public void inlineStaticMethodSeveralParameters() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i - 500);
+    vh.apply(dest, a, x -> clamp(x * 2, -100, Math.abs(x)));
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(clamp(a[i] * 2, -100, Math.abs(a[i])), dest[i]);
+    }
+  }
+  @Test
+  public void inlineStaticPredicate() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i);
+    assertEquals(10, vh.count(a, VectorHandleTest::inRange));
+    assertEquals(993, vh.count(a, x -> !inRange(x)));
+  }
+  @Test
+  public void inlineRecursiveStaticMethod() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    assertThrows(IllegalStateException.class, () -> vh.apply(dest, a, x -> factorial(x)));
+  }
+  @Test
+  public void inlineSharedArguments() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i - 500);
+    vh.apply(dest, a, x -> twice(twice(twice(twice(twice(twice(twice(twice(twice(twice(x)))))))))));
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] * 1_024, dest[i]);
+    }
+  }
+  private static final int BUCKET_SIZE = 100;
+
+  private static int[] dividends() {
+    var random = new Random(0);
+    var a = new int[1_003];
+    Arrays.setAll(a, i -> i < 500? i - 250: random.nextInt());
+    a[500] = Integer.MIN_VALUE;
+    a[501] = Integer.MAX_VALUE;
+    a[502] = Integer.MIN_VALUE + 1;
+    return a;
+  }
+  @Test
+  public void divideIntByConstant() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = dividends();
+    vh.apply(dest, a, x -> x / 3);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / 3, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / -7);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / -7, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / BUCKET_SIZE);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / BUCKET_SIZE, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / Integer.MAX_VALUE);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / Integer.MAX_VALUE, dest[i]);
+    }
+  }
+  @Test
+  public void divideIntByPowerOfTwo() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = dividends();
+    vh.apply(dest, a, x -> x / 16);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / 16, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / -2);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / -2, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / -1);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / -1, dest[i]);
+    }
+    vh.apply(dest, a, x -> x / Integer.MIN_VALUE);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / Integer.MIN_VALUE, dest[i]);
+    }
+  }
+  @Test
+  public void divideLongAndByteByPowerOfTwo() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new long[1_003];
+    var a = new long[1_003];
+    Arrays.setAll(a, i -> (i - 500) * 1_000_000_007L);
+    a[0] = Long.MIN_VALUE;
+    vh.apply(dest, a, x -> x / 64);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] / 64, dest[i]);
+    }
+    var dest2 = new byte[1_003];
+    var b = new byte[1_003];
+    for(var i = 0; i < b.length; i++) {
+      b[i] = (byte) i;
+    }
+    vh.apply(dest2, b, x -> (byte) (x / 8));
+    for(var i = 0; i < b.length; i++) {
+      assertEquals((byte) (b[i] / 8), dest2[i]);
+    }
+  }
+  @Test
+  public void remainder() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = dividends();
+    vh.apply(dest, a, x -> x % 10);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] % 10, dest[i]);
+    }
+    vh.apply(dest, a, x -> x % -32);
+    for(var i = 0; i < a.length; i++) {
+      assertEquals(a[i] % -32, dest[i]);
+    }
+  }
+  @Test
+  public void applyInterleavedComplex() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[2 * 1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i % 13 - 6;
+    }
+    var magnitudes = new float[1_003];
+    vh.applyInterleaved(magnitudes, a, (re, im) -> re * re + im * im);
+    for(var i = 0; i < magnitudes.length; i++) {
+      assertEquals(a[2 * i] * a[2 * i] + a[2 * i + 1] * a[2 * i + 1], magnitudes[i]);
+    }
+    var expected = new float[a.length];
+    for(var i = 0; i < magnitudes.length; i++) {
+      expected[2 * i] = - a[2 * i + 1];
+      expected[2 * i + 1] = a[2 * i];
+    }
+    vh.applyInterleaved(a, a, (re, im) -> - im, (re, im) -> re);  // multiply by i, in place
+    assertArrayEquals(expected, a);
+  }
+  @Test
+  public void applyInterleavedPoints() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[3 * 1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    var dest = new double[3 * 1_003];
+    vh.applyInterleaved(dest, a, (x, y, z) -> z, (x, y, z) -> x, (x, y, z) -> 2 * y);
+    for(var i = 0; i < 1_003; i++) {
+      assertEquals(a[3 * i + 2], dest[3 * i]);
+      assertEquals(a[3 * i], dest[3 * i + 1]);
+      assertEquals(2 * a[3 * i + 1], dest[3 * i + 2]);
+    }
+    var norms = new double[1_003];
+    vh.applyInterleaved(norms, a, (x, y, z) -> x * x + y * y + z * z);
+    for(var i = 0; i < norms.length; i++) {
+      assertEquals(a[3 * i] * a[3 * i] + a[3 * i + 1] * a[3 * i + 1] + a[3 * i + 2] * a[3 * i + 2], norms[i]);
+    }
+    var pairs = new double[2 * 1_003];
+    vh.applyInterleaved(pairs, a, (x, y, z) -> x + y, (x, y, z) -> z);
+    for(var i = 0; i < 1_003; i++) {
+      assertEquals(a[3 * i] + a[3 * i + 1], pairs[2 * i]);
+      assertEquals(a[3 * i + 2], pairs[2 * i + 1]);
+    }
+  }
+  @Test
+  public void applyInterleavedWidening() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new float[2 * 1_003];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    var dest = new float[3 * 1_003];
+    vh.applyInterleaved(dest, a, (re, im) -> re, (re, im) -> im, (re, im) -> re * im);
+    for(var i = 0; i < 1_003; i++) {
+      assertEquals(a[2 * i], dest[3 * i]);
+      assertEquals(a[2 * i + 1], dest[3 * i + 1]);
+      assertEquals(a[2 * i] * a[2 * i + 1], dest[3 * i + 2]);
+    }
+    assertThrows(IllegalArgumentException.class, () -> vh.applyInterleaved(new float[6], new float[6], (re, im) -> re, (re, im) -> im, (re, im) -> re));
+    assertThrows(IllegalArgumentException.class, () -> vh.applyInterleaved(new float[3], new float[7], (re, im) -> re));
+    assertThrows(IllegalArgumentException.class, () -> vh.applyInterleaved(new float[3], new float[6], new VectorHandle.FFFOp[0]));
+  }
+  @Test
+  public void apply2D() {
+    var vh = VectorHandle.of(lookup());
+
+    // a rectangle of 37 x 11 values inside an image of 40 x 12 values
+    var a = IntStream.range(0, 40 * 12).toArray();
+    var dest = new int[40 * 12];
+    Arrays.fill(dest, -1);
+    vh.apply2D(37, 11, dest, 41, 40, a, 41, 40, x -> x * 2);
+    for(var row = 0; row < 12; row++) {
+      for(var column = 0; column < 40; column++) {
+        var index = row * 40 + column;
+        var inside = row >= 1 && column >= 1 && column < 38;
+        assertEquals(inside? a[index] * 2: -1, dest[index]);
+      }
+    }
+  }
+  @Test
+  public void apply2DTwoArrays() {
+    var vh = VectorHandle.of(lookup());
+
+    // a and b have padded rows, dest is dense
+    var a = new float[21 * 32];
+    var b = new float[21 * 48];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    for(var i = 0; i < b.length; i++) {
+      b[i] = i % 5;
+    }
+    var dest = new float[21 * 29];
+    vh.apply2D(29, 21, dest, 0, 29, a, 0, 32, b, 0, 48, (x, y) -> x * y);
+    for(var row = 0; row < 21; row++) {
+      for(var column = 0; column < 29; column++) {
+        assertEquals(a[row * 32 + column] * b[row * 48 + column], dest[row * 29 + column]);
+      }
+    }
+  }
+  @Test
+  public void parallelApply2D() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new double[1_003 * 300];
+    for(var i = 0; i < a.length; i++) {
+      a[i] = i;
+    }
+    var dest = new double[1_003 * 300];
+    vh.parallelApply2D(1_001, 300, dest, 0, 1_003, a, 0, 1_003, x -> x + 1);
+    for(var row = 0; row < 300; row++) {
+      for(var column = 0; column < 1_003; column++) {
+        var index = row * 1_003 + column;
+        assertEquals(column < 1_001? a[index] + 1: 0.0, dest[index]);
+      }
+    }
+  }
+  @Test
+  public void apply2DWrongArguments() {
+    var vh = VectorHandle.of(lookup());
+
+    var a = new int[100];
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.apply2D(10, 10, new int[100], 0, 9, a, 0, 10, x -> x)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.apply2D(10, 10, new int[100], 1, 10, a, 0, 10, x -> x)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.apply2D(-1, 10, new int[100], 0, 10, a, 0, 10, x -> x)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.apply2D(10, 10, new int[100], 0, 10, a, -1, 10, x -> x))
+    );
+    vh.apply2D(0, 0, new int[0], 0, 0, new int[0], 0, 0, x -> x);
+  }
+  private static float[] matrix(int rows, int columns, int seed) {
+    var random = new Random(seed);
+    var matrix = new float[rows * columns];
+    for(var i = 0; i < matrix.length; i++) {
+      matrix[i] = random.nextInt(9) - 4;  // small integers, so the sums are exact
+    }
+    return matrix;
+  }
+
+  private static float[] multiply(float[] a, float[] b, int m, int n, int k) {
+    var c = new float[m * n];
+    for(var i = 0; i < m; i++) {
+      for(var j = 0; j < n; j++) {
+        var sum = 0f;
+        for(var p = 0; p < k; p++) {
+          sum += a[i * k + p] * b[p * n + j];
+        }
+        c[i * n + j] = sum;
+      }
+    }
+    return c;
+  }
+
+  @Test
+  public void matrixMultiply() {
+    var vh = VectorHandle.of(lookup());
+
+    // larger than a block in both directions, not a multiple of the vector length
+    int m = 37, n = 301, k = 263;
+    var a = matrix(m, k, 1);
+    var b = matrix(k, n, 2);
+    var c = new float[m * n];
+    vh.matrixMultiply(c, a, b, m, n, k);
+    assertArrayEquals(multiply(a, b, m, n, k), c);
+  }
+  @Test
+  public void matrixMultiplyEpilogue() {
+    var vh = VectorHandle.of(lookup());
+
+    int m = 13, n = 64, k = 64;
+    var a = matrix(m, k, 3);
+    var b = matrix(k, n, 4);
+    var c = new float[m * n];
+    var bias = 2f;
+    vh.matrixMultiply(c, a, b, m, n, k, x -> Math.max(x + bias, 0f));
+    var expected = multiply(a, b, m, n, k);
+    for(var i = 0; i < expected.length; i++) {
+      expected[i] = Math.max(expected[i] + bias, 0f);
+    }
+    assertArrayEquals(expected, c);
+  }
+  @Test
+  public void matrixMultiplyDouble() {
+    var vh = VectorHandle.of(lookup());
+
+    int m = 6, n = 19, k = 5;
+    var a = new double[m * k];
+    var b = new double[k * n];
+    Arrays.fill(a, 1.0);
+    Arrays.fill(b, 2.0);
+    var c = new double[m * n];
+    vh.matrixMultiply(c, a, b, m, n, k, x -> - x);
+    var expected = new double[m * n];
+    Arrays.fill(expected, -10.0);
+    assertArrayEquals(expected, c);
+    assertThrows(IllegalArgumentException.class, () -> vh.matrixMultiply(new double[m * n], a, b, m, n, k + 1));
+  }
+  @Test
+  public void matrixVectorMultiply() {
+    var vh = VectorHandle.of(lookup());
+
+    int m = 103, n = 77;
+    var a = matrix(m, n, 5);
+    var x = matrix(n, 1, 6);
+    var y = new float[m];
+    vh.matrixVectorMultiply(y, a, x, m, n);
+    var expected = multiply(a, x, m, 1, n);
+    assertArrayEquals(expected, y);
+    vh.matrixVectorMultiply(y, a, x, m, n, v -> Math.max(v, 0f));
+    for(var i = 0; i < expected.length; i++) {
+      expected[i] = Math.max(expected[i], 0f);
+    }
+    assertArrayEquals(expected, y);
+    assertThrows(IllegalArgumentException.class, () -> vh.matrixVectorMultiply(new float[m], a, new float[n + 1], m, n));
+  }
+  @Test
+  public void matrixMultiplyAliased() {
+    var vh = VectorHandle.of(lookup());
+
+    var n = 16;
+    var a = matrix(n, n, 7);
+    var b = matrix(n, n, 8);
+    var x = matrix(n, 1, 9);
+    var d = new double[1];
+    assertAll(
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.matrixMultiply(a, a, b, n, n, n)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.matrixMultiply(b, a, b, n, n, n)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.matrixMultiply(d, new double[1], d, 1, 1, 1, v -> v)),
+        () -> assertThrows(IllegalArgumentException.class, () -> vh.matrixVectorMultiply(x, a, x, n, n))
+    );
+  }
+  @Test
+  public void matrixMultiplyScalarTailFma() {
+    var vh = VectorHandle.of(lookup());
+
+    // a single column is computed by the scalar tail
+    var a = new double[] { 0.1, 0.2, 0.3 };
+    var b = new double[] { 0.7, 0.11, 0.13 };
+    var c = new double[1];
+    vh.matrixMultiply(c, a, b, 1, 1, 3);
+    assertEquals(Math.fma(0.3, 0.13, Math.fma(0.2, 0.11, 0.1 * 0.7)), c[0]);
+  }
+  @Test
+  public void concurrentFirstCalls() throws InterruptedException {
+    var vh = VectorHandle.of(lookup());
+
+    var a = IntStream.range(0, 1_003).toArray();
+    var threadCount = 16;
+    var results = new int[threadCount][1_003];
+    var errors = new ConcurrentLinkedQueue<Throwable>();
+    var start = new CountDownLatch(1);
+    var threads = IntStream.range(0, threadCount)
+        .mapToObj(i -> new Thread(() -> {
+          try {
+            start.await();
+            vh.apply(results[i], a, x -> x * 3 + 1);
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }))
+        .toList();
+    threads.forEach(Thread::start);
+    start.countDown();
+    for(var thread: threads) {
+      thread.join();
+    }
+    assertTrue(errors.isEmpty(), () -> "" + errors);
+    var expected = IntStream.of(a).map(x -> x * 3 + 1).toArray();
+    for(var result: results) {
+      assertArrayEquals(expected, result);
+    }
+  }
+  @Test
+  public void tooManyLambdas() {
+    var vh = VectorHandle.of(lookup());
+
+    var dest = new int[1_003];
+    var a = new int[1_003];
+    VectorHandle.IIOp[] operators = {
+        x -> x + 1, x -> x + 2, x -> x + 3, x -> x + 4, x -> x + 5, x -> x + 6, x -> x + 7, x -> x + 8
+    };
+    for(var operator: operators) {
+      vh.apply(dest, a, operator);
+    }
+    assertThrows(IllegalStateException.class, () -> vh.apply(dest, a, x -> x + 9));
+    vh.apply(dest, a, operators[0]);  // the cached kernels still work
+    assertEquals(1, dest[0]);
+  }
+  @Test
+  public void metrics() {
+    var vh = VectorHandle.of(lookup());
+
+    var before = VectorHandle.metrics();
+    var dest = new float[1_003];
+    var a = new float[1_003];
+    vh.apply(dest, a, x -> x * 3f);
+    var after = VectorHandle.metrics();
+    assertAll(
+        () -> assertTrue(after.calls() >= before.calls() + 1),
+        () -> assertTrue(after.elements() >= before.elements() + 1_003),
+        () -> assertTrue(after.tailElements() >= before.tailElements() + 1_003 % Impl.FLOAT_SPECIES.length()),
+        () -> assertTrue(after.compilations() >= before.compilations() + 1)
+    );
+  }
+  @Test
+  public void compilationEvent() throws IOException {
+    var vh = VectorHandle.of(lookup());
+
+    List<RecordedEvent> events;
+    try(var recording = new Recording()) {
+      recording.enable("com.github.forax.vectorhandle.KernelCompilation");
+      recording.start();
+      vh.apply(new double[1_003], new double[1_003], x -> x * 2.0 + 1.0);
+      recording.stop();
+      var file = Files.createTempFile("vectorhandle", ".jfr");
+      try {
+        recording.dump(file);
+        events = RecordingFile.readAllEvents(file);
+      } finally {
+        Files.delete(file);
+      }
+    }
+    var event = events.stream()
+        .filter(e -> e.getEventType().getName().equals("com.github.forax.vectorhandle.KernelCompilation"))
+        .findFirst().orElseThrow();
+    assertAll(
+        () -> assertTrue(event.getString("lambdas").contains("VectorHandleTest.lambda$compilationEvent$")),
+        () -> assertEquals(Impl.DOUBLE_SPECIES.toString(), event.getString("species")),
+        () -> assertEquals(5, event.getInt("exprSize")),
+        () -> assertTrue(event.getInt("bytecodeSize") > 0),
+        () -> assertNull(event.getString("failure"))
+    );
+  }
+  @Test
+  public void describe() {
+    var description = VectorHandle.describe(lookup(), (VectorHandle.IIIOp) (x, y) -> x + y * 2);
+    assertAll(
+        () -> assertTrue(description.contains("species " + Impl.INT_SPECIES)),
+        () -> assertTrue(description.contains("BinOp add INT")),
+        () -> assertTrue(description.contains("BinOp mul INT")),
+        () -> assertTrue(description.contains("INVOKEVIRTUAL jdk/incubator/vector/IntVector.add")),
+        () -> assertTrue(description.contains("self-check vector"))
+    );
+  }
+  @Test
+  public void describePredicate() {
+    var description = VectorHandle.describe(lookup(), (VectorHandle.FZOp) x -> x > 1f && x < 10f);
+    assertAll(
+        () -> assertTrue(description.contains("MaskOp and FLOAT")),
+        () -> assertTrue(description.contains("self-check vector"))
+    );
+  }
+  @Test
+  public void describeInlineSharedArguments() {
+    var description = VectorHandle.describe(lookup(), (VectorHandle.IIOp) x -> twice(twice(twice(twice(twice(twice(twice(twice(twice(twice(x)))))))))));
+    // each argument is computed once
+    assertEquals(10, description.lines().filter(line -> line.contains("INVOKEVIRTUAL jdk/incubator/vector/IntVector.add")).count());
+  }
+  @Test
+  public void describeDoesNotLog() {
+    var records = new ConcurrentLinkedQueue<LogRecord>();
+    var handler = new Handler() {
+      @Override
+      public void publish(LogRecord record) {
+        records.add(record);
+      }
+      @Override
+      public void flush() {}
+      @Override
+      public void close() {}
+    };
+    var logger = Logger.getLogger("com.github.forax.vectorhandle");
+    logger.addHandler(handler);
+    try {
+      VectorHandle.describe(lookup(), (VectorHandle.DDOp) x -> x * 3.0);
+    } finally {
+      logger.removeHandler(handler);
+    }
+    assertTrue(records.isEmpty());
+  }
+  @Test
+  public void describeNotSupported() {
+    var text = "hello";
+    assertThrows(IllegalStateException.class, () -> VectorHandle.describe(lookup(), (VectorHandle.IIOp) x -> x + text.length()));
+  }
+}